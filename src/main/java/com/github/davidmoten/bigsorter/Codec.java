@@ -0,0 +1,78 @@
+package com.github.davidmoten.bigsorter;
+
+import java.util.zip.Deflater;
+
+import com.github.davidmoten.bigsorter.internal.DeflateCodec;
+import com.github.davidmoten.bigsorter.internal.LzCodec;
+import com.github.davidmoten.guavamini.Preconditions;
+
+/**
+ * Compresses and decompresses blocks of bytes. Used to compress temporary files
+ * (see {@code tempFileCompression} on the sorter builder). Implementations
+ * must be thread safe because blocks are compressed on background threads.
+ */
+public interface Codec {
+
+    /**
+     * Returns the largest number of bytes that {@link #compress} can produce for
+     * an input of the given length.
+     * 
+     * @param length input length
+     * @return maximum compressed length
+     */
+    int maxCompressedLength(int length);
+
+    /**
+     * Compresses {@code input[0..length)} into {@code output} which has length at
+     * least {@link #maxCompressedLength(int)}.
+     * 
+     * @param input  bytes to compress
+     * @param length number of bytes of input to compress
+     * @param output destination of compressed bytes
+     * @return compressed length
+     */
+    int compress(byte[] input, int length, byte[] output);
+
+    /**
+     * Decompresses {@code input[0..length)} into {@code output}.
+     * 
+     * @param input              compressed bytes
+     * @param length             number of compressed bytes
+     * @param output             destination of decompressed bytes
+     * @param uncompressedLength the number of bytes expected after decompression
+     * @throws IllegalStateException if the input is corrupt
+     */
+    void decompress(byte[] input, int length, byte[] output, int uncompressedLength);
+
+    /**
+     * Returns a codec using {@link Deflater} with the default compression level.
+     * 
+     * @return deflate codec
+     */
+    static Codec deflate() {
+        return deflate(Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Returns a codec using {@link Deflater} with the given compression level.
+     * 
+     * @param level compression level 0-9 or -1 for the default level
+     * @return deflate codec
+     */
+    static Codec deflate(int level) {
+        Preconditions.checkArgument(level >= -1 && level <= 9, "level must be between -1 and 9");
+        return new DeflateCodec(level);
+    }
+
+    /**
+     * Returns a fast LZ77 codec (in the style of LZ4) that trades compression
+     * ratio for speed. Suits temporary files where disk bandwidth rather than
+     * disk space is the bottleneck.
+     * 
+     * @return fast LZ codec
+     */
+    static Codec lz() {
+        return LzCodec.INSTANCE;
+    }
+
+}
@@ -0,0 +1,161 @@
+package com.github.davidmoten.bigsorter;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.csv.BigSorterCsvRecords;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.commons.csv.DuplicateHeaderMode;
+
+import com.github.davidmoten.bigsorter.internal.VarInts;
+
+/**
+ * Compact binary encoding of {@link CSVRecord} values for temporary files. The
+ * stream is a sequence of items that start with a tag byte. A header item
+ * holds the header names of the records that follow it and a record item holds
+ * the values of a record. Every writer starts with a header item so the bytes
+ * of two writers can be concatenated.
+ */
+final class CsvBinarySerializer implements Serializer<CSVRecord> {
+
+    static final CsvBinarySerializer INSTANCE = new CsvBinarySerializer();
+
+    private static final int HEADER = 1;
+    private static final int RECORD = 2;
+
+    private CsvBinarySerializer() {
+    }
+
+    @Override
+    public boolean concatenable() {
+        return true;
+    }
+
+    @Override
+    public Reader<CSVRecord> createReader(InputStream in) {
+        DataInputStream dis = new DataInputStream(in);
+        return new Reader<CSVRecord>() {
+
+            // supplies the header names of the records read since the last header item
+            CSVParser parser;
+            long recordNumber;
+
+            @Override
+            public CSVRecord read() throws IOException {
+                while (true) {
+                    int tag = dis.read();
+                    if (tag == -1) {
+                        return null;
+                    } else if (tag == HEADER) {
+                        parser = parser(Arrays.asList(readStrings(dis)));
+                    } else if (tag == RECORD) {
+                        if (parser == null) {
+                            parser = parser(Collections.emptyList());
+                        }
+                        recordNumber++;
+                        return BigSorterCsvRecords.create(parser, readStrings(dis), recordNumber);
+                    } else {
+                        throw new IllegalStateException("unexpected tag " + tag);
+                    }
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                dis.close();
+            }
+        };
+    }
+
+    @Override
+    public Writer<CSVRecord> createWriter(OutputStream out) {
+        DataOutputStream dos = new DataOutputStream(out);
+        return new Writer<CSVRecord>() {
+
+            boolean first = true;
+            CSVParser lastParser;
+            List<String> lastNames;
+
+            @Override
+            public void write(CSVRecord record) throws IOException {
+                CSVParser p = record.getParser();
+                if (first || p != lastParser) {
+                    List<String> names = p == null ? Collections.emptyList() : p.getHeaderNames();
+                    if (first || !names.equals(lastNames)) {
+                        dos.write(HEADER);
+                        writeStrings(dos, names.toArray(new String[0]));
+                        lastNames = names;
+                    }
+                    lastParser = p;
+                    first = false;
+                }
+                dos.write(RECORD);
+                String[] values = new String[record.size()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = record.get(i);
+                }
+                writeStrings(dos, values);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                dos.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                dos.close();
+            }
+        };
+    }
+
+    private static void writeStrings(DataOutputStream dos, String[] values) throws IOException {
+        VarInts.writeUnsigned(dos, values.length);
+        for (String value : values) {
+            if (value == null) {
+                VarInts.writeUnsigned(dos, 0);
+            } else {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                // zero is reserved for null
+                VarInts.writeUnsigned(dos, bytes.length + 1);
+                dos.write(bytes);
+            }
+        }
+    }
+
+    private static String[] readStrings(DataInputStream dis) throws IOException {
+        String[] values = new String[(int) VarInts.readUnsigned(dis)];
+        for (int i = 0; i < values.length; i++) {
+            int length = (int) VarInts.readUnsigned(dis);
+            if (length > 0) {
+                byte[] bytes = new byte[length - 1];
+                dis.readFully(bytes);
+                values[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+        }
+        return values;
+    }
+
+    // a parser of no text that holds the header names for CSVRecord.get(String)
+    private static CSVParser parser(List<String> headerNames) throws IOException {
+        CSVFormat.Builder b = CSVFormat.DEFAULT //
+                .builder() //
+                .setAllowMissingColumnNames(true) //
+                .setDuplicateHeaderMode(DuplicateHeaderMode.ALLOW_ALL);
+        if (!headerNames.isEmpty()) {
+            b.setHeader(headerNames.toArray(new String[0]));
+        }
+        return b.get().parse(new StringReader(""));
+    }
+
+}
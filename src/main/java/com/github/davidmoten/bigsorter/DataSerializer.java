@@ -6,13 +6,75 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Optional;
+
+import com.github.davidmoten.guavamini.Preconditions;
 
 public abstract class DataSerializer<T> implements Serializer<T> {
 
 	public abstract T read(DataInputStream dis) throws IOException;
 
 	public abstract void write(DataOutputStream dos, T value) throws IOException;
+
+	/**
+	 * Reads the next value possibly into {@code reuse} (see
+	 * {@link Reader#readInto(Object)}). Override this for mutable values to avoid
+	 * allocating a value per read during merges. Default returns
+	 * {@link #read(DataInputStream)}.
+	 * 
+	 * @param dis   input
+	 * @param reuse value that may be overwritten, may be null
+	 * @return the next value or null if no more values
+	 * @throws IOException on IO problem
+	 */
+	public T readInto(DataInputStream dis, T reuse) throws IOException {
+		return read(dis);
+	}
 	
+	/**
+	 * Returns a serializer of the same values that writes them in blocks with a
+	 * header holding the number of values and the number of bytes in the block.
+	 * Readers of the framed form detect the end of the stream without relying on
+	 * {@link EOFException} and {@link Reader#skip(long)} skips whole blocks
+	 * without decoding them. The framed form is not the same as the unframed
+	 * form so it is intended for temporary files (see
+	 * {@code Sorter.Builder4Base.spillSerializer}) or for files that are only
+	 * read by a framed serializer.
+	 * 
+	 * @return framed serializer
+	 */
+	public Serializer<T> framed() {
+		return framed(FramedDataSerializer.DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * Returns a framed serializer (see {@link #framed()}) that starts a new block
+	 * once a block reaches the given number of bytes.
+	 * 
+	 * @param blockSize block size in bytes
+	 * @return framed serializer
+	 */
+	public Serializer<T> framed(int blockSize) {
+		Preconditions.checkArgument(blockSize > 0, "blockSize must be greater than 0");
+		return new FramedDataSerializer<T>(this, blockSize);
+	}
+
+	/**
+	 * Returns a more compact serializer for sorted runs of these values if one
+	 * exists. Used for temporary files when no spill serializer is set.
+	 * 
+	 * @return serializer for sorted runs
+	 */
+	Optional<Serializer<T>> sortedRunSerializer() {
+		return Optional.empty();
+	}
+
+	@Override
+	public boolean concatenable() {
+		// DataOutputStream writes no header or footer
+		return true;
+	}
+
 	@Override
 	public Reader<T> createReader(InputStream in) {
 		return new Reader<T>() {
@@ -27,6 +89,15 @@ public abstract class DataSerializer<T> implements Serializer<T> {
 					return null;
 				}
 			}
+
+			@Override
+			public T readInto(T reuse) throws IOException {
+				try {
+					return DataSerializer.this.readInto(dis, reuse);
+				} catch (EOFException e) {
+					return null;
+				}
+			}
 			
 			@Override
             public void close() throws IOException {
@@ -0,0 +1,112 @@
+package com.github.davidmoten.bigsorter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.function.LongFunction;
+
+import com.github.davidmoten.bigsorter.internal.VarInts;
+
+/**
+ * Encodes sorted integral values compactly. Values are written in blocks of a
+ * count followed by the difference of each value from the one before it
+ * (zig-zag encoded so descending order is compact too) as varints. Adjacent
+ * values in a sorted run are usually close so most differences take a byte or
+ * two rather than 4 or 8. The first value of a block is a difference from
+ * zero so the bytes of two writers can be concatenated.
+ *
+ * <pre>
+ * block = count:varint, delta:zigzag-varint * count
+ * </pre>
+ */
+final class DeltaVarIntSerializer<T extends Number> implements Serializer<T> {
+
+    private static final int BLOCK_SIZE = 1024;
+
+    private final LongFunction<T> fromLong;
+
+    DeltaVarIntSerializer(LongFunction<T> fromLong) {
+        this.fromLong = fromLong;
+    }
+
+    T fromLong(long value) {
+        return fromLong.apply(value);
+    }
+
+    @Override
+    public boolean concatenable() {
+        return true;
+    }
+
+    @Override
+    public Reader<T> createReader(InputStream in) {
+        return new Reader<T>() {
+
+            long remaining;
+            long previous;
+
+            @Override
+            public T read() throws IOException {
+                if (remaining == 0) {
+                    int b = in.read();
+                    if (b == -1) {
+                        return null;
+                    }
+                    remaining = VarInts.readUnsigned(in, b);
+                    previous = 0;
+                }
+                remaining--;
+                // wraps around for differences that overflow, as they were written
+                previous += VarInts.readSigned(in);
+                return fromLong.apply(previous);
+            }
+
+            @Override
+            public void close() throws IOException {
+                in.close();
+            }
+        };
+    }
+
+    @Override
+    public Writer<T> createWriter(OutputStream out) {
+        return new Writer<T>() {
+
+            final long[] block = new long[BLOCK_SIZE];
+            int count;
+
+            @Override
+            public void write(T value) throws IOException {
+                block[count++] = value.longValue();
+                if (count == block.length) {
+                    writeBlock();
+                }
+            }
+
+            private void writeBlock() throws IOException {
+                if (count > 0) {
+                    VarInts.writeUnsigned(out, count);
+                    long previous = 0;
+                    for (int i = 0; i < count; i++) {
+                        VarInts.writeSigned(out, block[i] - previous);
+                        previous = block[i];
+                    }
+                    count = 0;
+                }
+            }
+
+            @Override
+            public void flush() throws IOException {
+                writeBlock();
+                out.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                writeBlock();
+                out.close();
+            }
+        };
+    }
+
+}
@@ -0,0 +1,124 @@
+package com.github.davidmoten.bigsorter;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+final class DiskTempStorage implements TempStorage {
+
+    // prefix of the names of temporary files
+    static final String PREFIX = "big-sorter";
+
+    private final List<File> directories;
+    private final TempFilePlacement placement;
+    // directories on the same device share a file store
+    private final Map<File, FileStore> fileStores = new HashMap<>();
+    private int nextDirectoryIndex;
+
+    DiskTempStorage(List<File> directories, TempFilePlacement placement) {
+        this.directories = directories;
+        this.placement = placement;
+    }
+
+    @Override
+    public synchronized TempBlob create(List<? extends TempBlob> reading) throws IOException {
+        if (fileStores.isEmpty()) {
+            for (File directory : directories) {
+                directory.mkdirs();
+                fileStores.put(directory, Files.getFileStore(directory.toPath()));
+            }
+        }
+        return new FileBlob(Files.createTempFile(directory(reading).toPath(), PREFIX, "").toFile());
+    }
+
+    /**
+     * Returns a directory preferably on a device that none of the given blobs are
+     * on.
+     */
+    private File directory(List<? extends TempBlob> reading) {
+        if (directories.size() == 1) {
+            return directories.get(0);
+        }
+        Set<FileStore> busy = reading //
+                .stream() //
+                .map(blob -> blob.file().map(f -> fileStores.get(f.getParentFile())).orElse(null)) //
+                .filter(store -> store != null) //
+                .collect(Collectors.toSet());
+        List<File> candidates = directories //
+                .stream() //
+                .filter(dir -> !busy.contains(fileStores.get(dir))) //
+                .collect(Collectors.toList());
+        if (candidates.isEmpty()) {
+            candidates = directories;
+        }
+        if (placement == TempFilePlacement.MOST_FREE_SPACE) {
+            return candidates //
+                    .stream() //
+                    .max(Comparator.comparingLong(File::getUsableSpace)) //
+                    .get();
+        } else {
+            // next candidate in round robin order
+            for (int i = 0; i < directories.size(); i++) {
+                File dir = directories.get((nextDirectoryIndex + i) % directories.size());
+                if (candidates.contains(dir)) {
+                    nextDirectoryIndex = (nextDirectoryIndex + i + 1) % directories.size();
+                    return dir;
+                }
+            }
+            // unreachable because candidates is a non-empty subset of directories
+            throw new IllegalStateException();
+        }
+    }
+
+    static final class FileBlob implements TempBlob {
+
+        private final File file;
+
+        FileBlob(File file) {
+            this.file = file;
+        }
+
+        @Override
+        public OutputStream openOutput() throws IOException {
+            return new FileOutputStream(file);
+        }
+
+        @Override
+        public InputStream openInput() throws IOException {
+            return new FileInputStream(file);
+        }
+
+        @Override
+        public long length() {
+            return file.length();
+        }
+
+        @Override
+        public void delete() {
+            file.delete();
+        }
+
+        @Override
+        public Optional<File> file() {
+            return Optional.of(file);
+        }
+
+        @Override
+        public String toString() {
+            return file.getName();
+        }
+    }
+
+}
@@ -3,13 +3,21 @@ package com.github.davidmoten.bigsorter;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.util.Optional;
 
 final class FixedSizeRecordSerializer extends DataSerializer<byte[]> {
 
 	private final int size;
+	private final Optional<RecordLayout> layout;
 
-	FixedSizeRecordSerializer(int size) {
+	FixedSizeRecordSerializer(int size, Optional<RecordLayout> layout) {
 		this.size = size;
+		this.layout = layout;
+	}
+
+	@Override
+	public Optional<RecordLayout> recordLayout() {
+		return layout;
 	}
 
 	@Override
@@ -19,6 +27,15 @@ final class FixedSizeRecordSerializer extends DataSerializer<byte[]> {
 		return bytes;
 	}
 
+	@Override
+	public byte[] readInto(DataInputStream dis, byte[] reuse) throws IOException {
+		if (reuse == null || reuse.length != size) {
+			return read(dis);
+		}
+		dis.readFully(reuse);
+		return reuse;
+	}
+
 	@Override
 	public void write(DataOutputStream dos, byte[] value) throws IOException {
 		dos.write(value);
@@ -0,0 +1,187 @@
+package com.github.davidmoten.bigsorter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Writes the values of a {@link DataSerializer} in blocks. Each block is a
+ * header of the number of values in the block and the number of bytes of the
+ * block (both as 4 byte ints) followed by the values. The reader knows when
+ * the stream ends without relying on {@link EOFException} and can skip whole
+ * blocks without decoding them.
+ *
+ * <pre>
+ * block = count:int, length:int, value*
+ * </pre>
+ */
+final class FramedDataSerializer<T> implements Serializer<T> {
+
+    static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+    private final DataSerializer<T> serializer;
+    private final int blockSize;
+
+    FramedDataSerializer(DataSerializer<T> serializer, int blockSize) {
+        this.serializer = serializer;
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public boolean concatenable() {
+        return true;
+    }
+
+    @Override
+    public Reader<T> createReader(InputStream in) {
+        DataInputStream dis = new DataInputStream(in);
+        return new Reader<T>() {
+
+            byte[] block = new byte[0];
+            DataInputStream blockIn;
+            // values not yet read from the current block
+            int remaining;
+            // length of the block whose header has been read but whose bytes have
+            // not been, -1 if none
+            int pendingLength = -1;
+
+            @Override
+            public T read() throws IOException {
+                return readInto(null);
+            }
+
+            @Override
+            public T readInto(T reuse) throws IOException {
+                while (remaining == 0) {
+                    if (!nextBlock(false)) {
+                        return null;
+                    }
+                }
+                remaining--;
+                return serializer.readInto(blockIn, reuse);
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                long skipped = 0;
+                while (skipped < n) {
+                    if (remaining == 0) {
+                        // skip the whole of the next block if it has no more than needed
+                        if (!nextBlock(true)) {
+                            return skipped;
+                        }
+                        if (remaining <= n - skipped) {
+                            skipped += remaining;
+                            remaining = 0;
+                            continue;
+                        } else {
+                            readBlock();
+                        }
+                    }
+                    serializer.read(blockIn);
+                    remaining--;
+                    skipped++;
+                }
+                return skipped;
+            }
+
+            /**
+             * Reads the header of the next block and unless headerOnly is true the
+             * bytes of the block. Returns false if there are no more blocks.
+             */
+            private boolean nextBlock(boolean headerOnly) throws IOException {
+                if (pendingLength >= 0) {
+                    skipFully(pendingLength);
+                    pendingLength = -1;
+                }
+                int first = dis.read();
+                if (first == -1) {
+                    return false;
+                }
+                remaining = (first << 24) | (dis.readUnsignedByte() << 16) | (dis.readUnsignedShort());
+                pendingLength = dis.readInt();
+                if (!headerOnly) {
+                    readBlock();
+                }
+                return true;
+            }
+
+            private void readBlock() throws IOException {
+                if (block.length < pendingLength) {
+                    block = new byte[pendingLength];
+                }
+                dis.readFully(block, 0, pendingLength);
+                blockIn = new DataInputStream(new ByteArrayInputStream(block, 0, pendingLength));
+                pendingLength = -1;
+            }
+
+            private void skipFully(int length) throws IOException {
+                int n = length;
+                while (n > 0) {
+                    int k = dis.skipBytes(n);
+                    if (k == 0) {
+                        if (dis.read() == -1) {
+                            throw new EOFException();
+                        }
+                        k = 1;
+                    }
+                    n -= k;
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                dis.close();
+            }
+        };
+    }
+
+    @Override
+    public Writer<T> createWriter(OutputStream out) {
+        DataOutputStream dos = new DataOutputStream(out);
+        return new Writer<T>() {
+
+            final ByteArrayOutputStream block = new ByteArrayOutputStream(blockSize);
+            final DataOutputStream blockOut = new DataOutputStream(block);
+            int count;
+
+            @Override
+            public void write(T value) throws IOException {
+                serializer.write(blockOut, value);
+                count++;
+                if (block.size() >= blockSize) {
+                    writeBlock();
+                }
+            }
+
+            private void writeBlock() throws IOException {
+                if (count > 0) {
+                    blockOut.flush();
+                    dos.writeInt(count);
+                    dos.writeInt(block.size());
+                    block.writeTo(dos);
+                    block.reset();
+                    count = 0;
+                }
+            }
+
+            @Override
+            public void flush() throws IOException {
+                writeBlock();
+                dos.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                writeBlock();
+                dos.close();
+            }
+        };
+    }
+
+}
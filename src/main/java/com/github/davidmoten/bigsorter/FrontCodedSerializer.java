@@ -0,0 +1,127 @@
+package com.github.davidmoten.bigsorter;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Function;
+
+import com.github.davidmoten.bigsorter.internal.VarInts;
+
+/**
+ * Writes records as the length of the prefix they share with the previous
+ * record and the rest of their bytes (front coding). Sorted runs of strings
+ * like URLs or composite keys share long prefixes with their predecessor so
+ * this takes a fraction of the space of writing each record in full. Every
+ * {@code RESTART_INTERVAL} records (and the first record of each writer) is
+ * written in full as a restart point so that the bytes of two writers can be
+ * concatenated and a reader can start decoding at a restart point.
+ *
+ * <pre>
+ * record = shared:varint, suffixLength:varint, suffix:byte*
+ * </pre>
+ */
+final class FrontCodedSerializer<T> implements Serializer<T> {
+
+    static final FrontCodedSerializer<String> STRINGS = new FrontCodedSerializer<String>(
+            s -> s.getBytes(StandardCharsets.UTF_8), (b, n) -> new String(b, 0, n, StandardCharsets.UTF_8));
+
+    static final FrontCodedSerializer<byte[]> BYTES = new FrontCodedSerializer<byte[]>(b -> b,
+            (b, n) -> Arrays.copyOf(b, n));
+
+    static final int RESTART_INTERVAL = 16;
+
+    private final Function<? super T, byte[]> toBytes;
+    private final Decoder<T> fromBytes;
+
+    private FrontCodedSerializer(Function<? super T, byte[]> toBytes, Decoder<T> fromBytes) {
+        this.toBytes = toBytes;
+        this.fromBytes = fromBytes;
+    }
+
+    interface Decoder<T> {
+        T decode(byte[] bytes, int length);
+    }
+
+    @Override
+    public boolean concatenable() {
+        return true;
+    }
+
+    @Override
+    public Reader<T> createReader(InputStream in) {
+        DataInputStream dis = new DataInputStream(in);
+        return new Reader<T>() {
+
+            // bytes of the previous record
+            byte[] previous = new byte[64];
+
+            @Override
+            public T read() throws IOException {
+                int b = dis.read();
+                if (b == -1) {
+                    return null;
+                }
+                int shared = (int) VarInts.readUnsigned(dis, b);
+                int suffixLength = (int) VarInts.readUnsigned(dis);
+                int length = shared + suffixLength;
+                if (length > previous.length) {
+                    previous = Arrays.copyOf(previous, Math.max(length, previous.length * 2));
+                }
+                dis.readFully(previous, shared, suffixLength);
+                return fromBytes.decode(previous, length);
+            }
+
+            @Override
+            public void close() throws IOException {
+                dis.close();
+            }
+        };
+    }
+
+    @Override
+    public Writer<T> createWriter(OutputStream out) {
+        return new Writer<T>() {
+
+            // copy of the bytes of the previous record (the value may be reused by
+            // the caller after write returns)
+            byte[] previous = new byte[64];
+            int previousLength;
+            int count;
+
+            @Override
+            public void write(T value) throws IOException {
+                byte[] bytes = toBytes.apply(value);
+                int shared = 0;
+                if (count % RESTART_INTERVAL != 0) {
+                    int max = Math.min(bytes.length, previousLength);
+                    while (shared < max && bytes[shared] == previous[shared]) {
+                        shared++;
+                    }
+                }
+                VarInts.writeUnsigned(out, shared);
+                VarInts.writeUnsigned(out, bytes.length - shared);
+                out.write(bytes, shared, bytes.length - shared);
+                if (bytes.length > previous.length) {
+                    previous = Arrays.copyOf(previous, Math.max(bytes.length, previous.length * 2));
+                }
+                System.arraycopy(bytes, shared, previous, shared, bytes.length - shared);
+                previousLength = bytes.length;
+                count++;
+            }
+
+            @Override
+            public void flush() throws IOException {
+                out.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                out.close();
+            }
+        };
+    }
+
+}
@@ -0,0 +1,46 @@
+package com.github.davidmoten.bigsorter;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Optional;
+import java.util.function.LongFunction;
+
+/**
+ * Reads and writes integers as 4 byte (or longs as 8 byte) big endian values.
+ * Sorted runs are written with {@link DeltaVarIntSerializer} instead.
+ */
+final class IntegralSerializer<T extends Number> extends DataSerializer<T> {
+
+    static final IntegralSerializer<Integer> INTEGERS = new IntegralSerializer<>(false, x -> (int) x);
+    static final IntegralSerializer<Long> LONGS = new IntegralSerializer<>(true, x -> x);
+
+    private final boolean isLong;
+    private final DeltaVarIntSerializer<T> sortedRunSerializer;
+
+    private IntegralSerializer(boolean isLong, LongFunction<T> fromLong) {
+        this.isLong = isLong;
+        this.sortedRunSerializer = new DeltaVarIntSerializer<T>(fromLong);
+    }
+
+    @Override
+    public T read(DataInputStream dis) throws IOException {
+        long v = isLong ? dis.readLong() : dis.readInt();
+        return sortedRunSerializer.fromLong(v);
+    }
+
+    @Override
+    public void write(DataOutputStream dos, T value) throws IOException {
+        if (isLong) {
+            dos.writeLong(value.longValue());
+        } else {
+            dos.writeInt(value.intValue());
+        }
+    }
+
+    @Override
+    Optional<Serializer<T>> sortedRunSerializer() {
+        return Optional.of(sortedRunSerializer);
+    }
+
+}
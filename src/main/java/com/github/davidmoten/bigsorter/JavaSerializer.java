@@ -9,9 +9,27 @@ import java.io.OutputStream;
 import java.io.Serializable;
 import java.io.UncheckedIOException;
 
+/**
+ * Reads and writes values with Java IO serialization. An
+ * {@link ObjectOutputStream} keeps a reference to every object written (so that
+ * later references to the same object can be written as back references) and
+ * an {@link ObjectInputStream} keeps every object read for the same reason. To
+ * stop those tables growing with the size of a run the writer calls
+ * {@link ObjectOutputStream#reset()} every {@code resetInterval} values which
+ * clears the tables at both ends. Class descriptors are written again after
+ * each reset so the interval trades a little space for bounded memory.
+ */
 final class JavaSerializer<T extends Serializable> implements Serializer<T> {
 
-	private static final JavaSerializer<Serializable> INSTANCE = new JavaSerializer<>();
+	static final int DEFAULT_RESET_INTERVAL = 1000;
+
+	private static final JavaSerializer<Serializable> INSTANCE = new JavaSerializer<>(DEFAULT_RESET_INTERVAL);
+
+	private final int resetInterval;
+
+	JavaSerializer(int resetInterval) {
+		this.resetInterval = resetInterval;
+	}
 	
 	@SuppressWarnings("unchecked")
 	static <T extends Serializable> JavaSerializer<T> instance() {
@@ -57,9 +75,16 @@ final class JavaSerializer<T extends Serializable> implements Serializer<T> {
 		}
 		return new Writer<T>() {
 
+			int count;
+
 			@Override
 			public void write(T value) throws IOException {
 				oos.writeObject(value);
+				if (++count == resetInterval) {
+					// forget the objects written so far (the reader does the same)
+					oos.reset();
+					count = 0;
+				}
 			}
 
 			@Override
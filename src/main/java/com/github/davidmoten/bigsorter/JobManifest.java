@@ -0,0 +1,245 @@
+package com.github.davidmoten.bigsorter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The record of completed work kept in the job directory of a resumable sort.
+ * The manifest is a text file of lines. While the input is split each
+ * completed run is appended as a line so that a run is registered with a
+ * single small write. After each merge the whole manifest is replaced
+ * atomically by renaming a new file over it. A partly written last line (the
+ * process died while appending) is ignored.
+ *
+ * <pre>
+ * big-sorter-manifest 1
+ * run RECORDS NAME COUNT BYTES MIN MAX
+ * split-complete
+ * </pre>
+ *
+ * <p>
+ * {@code RECORDS} is the number of input records read into the runs so far,
+ * {@code NAME} is the file name of the run in the job directory and
+ * {@code MIN} and {@code MAX} are the serialized first and last records of the
+ * run in base64 (or {@code -} if not known).
+ */
+final class JobManifest {
+
+    private static final String FILE_NAME = "manifest";
+    private static final String TEMP_FILE_NAME = FILE_NAME + ".tmp";
+    private static final String HEADER = "big-sorter-manifest 1";
+    private static final String RUN = "run";
+    private static final String SPLIT_COMPLETE = "split-complete";
+
+    private final File directory;
+    private final List<Entry> entries;
+    private long records;
+    private boolean splitComplete;
+
+    private JobManifest(File directory, List<Entry> entries, long records, boolean splitComplete) {
+        this.directory = directory;
+        this.entries = entries;
+        this.records = records;
+        this.splitComplete = splitComplete;
+    }
+
+    /**
+     * Returns the manifest in the directory or an empty manifest if there is
+     * none. Temporary files of the sorter in the directory that the manifest does
+     * not refer to are deleted (they were being written when the previous
+     * attempt stopped). If a run in the manifest is missing or has the wrong
+     * length then every temporary file of the sorter in the directory and the
+     * manifest are deleted and an empty manifest is returned. Other files in the
+     * directory are left alone.
+     *
+     * @param directory job directory
+     * @return manifest
+     * @throws IOException on I/O failure
+     */
+    static JobManifest open(File directory) throws IOException {
+        directory.mkdirs();
+        File file = new File(directory, FILE_NAME);
+        JobManifest m;
+        if (file.exists()) {
+            m = parse(directory, new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+        } else {
+            m = empty(directory);
+        }
+        boolean valid = m.entries //
+                .stream() //
+                .allMatch(entry -> new File(directory, entry.name).length() == entry.bytes);
+        if (!valid) {
+            m = empty(directory);
+        }
+        List<String> names = new ArrayList<>();
+        for (Entry entry : m.entries) {
+            names.add(entry.name);
+        }
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                String name = f.getName();
+                boolean ours = name.startsWith(DiskTempStorage.PREFIX) || name.equals(TEMP_FILE_NAME)
+                        || (!valid && name.equals(FILE_NAME));
+                if (ours && !names.contains(name)) {
+                    f.delete();
+                }
+            }
+        }
+        return m;
+    }
+
+    private static JobManifest empty(File directory) {
+        return new JobManifest(directory, new ArrayList<>(), 0, false);
+    }
+
+    private static JobManifest parse(File directory, String text) {
+        List<Entry> entries = new ArrayList<>();
+        long records = 0;
+        boolean splitComplete = false;
+        String[] lines = text.split("\n", -1);
+        if (lines.length == 0 || !lines[0].equals(HEADER)) {
+            return empty(directory);
+        }
+        // the last element follows the last newline so is empty or partly written
+        for (int i = 1; i < lines.length - 1; i++) {
+            String[] items = lines[i].split(" ");
+            if (items[0].equals(RUN) && items.length == 7) {
+                try {
+                    records = Long.parseLong(items[1]);
+                    entries.add(new Entry(items[2], Long.parseLong(items[3]), Long.parseLong(items[4]), items[5],
+                            items[6]));
+                } catch (NumberFormatException e) {
+                    return empty(directory);
+                }
+            } else if (items[0].equals(SPLIT_COMPLETE)) {
+                splitComplete = true;
+            } else {
+                return empty(directory);
+            }
+        }
+        return new JobManifest(directory, entries, records, splitComplete);
+    }
+
+    List<Entry> entries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    long records() {
+        return records;
+    }
+
+    boolean splitComplete() {
+        return splitComplete;
+    }
+
+    /**
+     * Returns true if the manifest refers to the run with the given file name.
+     *
+     * @param name file name of a run in the job directory
+     * @return true if the run is in the manifest
+     */
+    boolean contains(String name) {
+        return entries.stream().anyMatch(entry -> entry.name.equals(name));
+    }
+
+    /**
+     * Registers a run written while splitting the input.
+     *
+     * @param entry   the run
+     * @param records number of input records read into all runs so far
+     * @throws IOException on I/O failure
+     */
+    void appendRun(Entry entry, long records) throws IOException {
+        File file = new File(directory, FILE_NAME);
+        boolean exists = file.exists();
+        StringBuilder s = new StringBuilder();
+        if (!exists) {
+            s.append(HEADER).append('\n');
+        }
+        s.append(line(entry, records));
+        // the run must be on disk before the manifest refers to it
+        Util.sync(new File(directory, entry.name));
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            // one write so that the line is written whole or not at all in most cases
+            out.write(s.toString().getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        }
+        entries.add(entry);
+        this.records = records;
+    }
+
+    /**
+     * Replaces the manifest atomically.
+     *
+     * @param entries       the runs
+     * @param splitComplete whether the input has been fully read into runs
+     * @throws IOException on I/O failure
+     */
+    void replace(List<Entry> entries, boolean splitComplete) throws IOException {
+        entries = new ArrayList<>(entries);
+        StringBuilder s = new StringBuilder();
+        s.append(HEADER).append('\n');
+        for (Entry entry : entries) {
+            s.append(line(entry, records));
+        }
+        if (splitComplete) {
+            s.append(SPLIT_COMPLETE).append('\n');
+        }
+        // runs written since the last update must be on disk before the manifest
+        // refers to them
+        for (Entry entry : entries) {
+            if (!contains(entry.name)) {
+                Util.sync(new File(directory, entry.name));
+            }
+        }
+        File file = new File(directory, FILE_NAME);
+        File tmp = new File(directory, TEMP_FILE_NAME);
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(s.toString().getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        this.entries.clear();
+        this.entries.addAll(entries);
+        this.splitComplete = splitComplete;
+    }
+
+    /**
+     * Deletes the manifest once the sort has completed.
+     */
+    void delete() {
+        new File(directory, FILE_NAME).delete();
+    }
+
+    private static String line(Entry entry, long records) {
+        return RUN + " " + records + " " + entry.name + " " + entry.count + " " + entry.bytes + " " + entry.min
+                + " " + entry.max + "\n";
+    }
+
+    static final class Entry {
+        final String name;
+        final long count;
+        final long bytes;
+        // base64 serialized record or "-"
+        final String min;
+        final String max;
+
+        Entry(String name, long count, long bytes, String min, String max) {
+            this.name = name;
+            this.count = count;
+            this.bytes = bytes;
+            this.min = min;
+            this.max = max;
+        }
+    }
+
+}
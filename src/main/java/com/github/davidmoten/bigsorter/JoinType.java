@@ -0,0 +1,32 @@
+package com.github.davidmoten.bigsorter;
+
+/**
+ * The records passed to the consumer by a merge-join of two sorted inputs (see
+ * {@link Util#join}).
+ */
+public enum JoinType {
+
+    /**
+     * Every pair of records with equal keys.
+     */
+    INNER,
+
+    /**
+     * Every pair of records with equal keys plus each record of the first input
+     * with no match in the second (paired with null).
+     */
+    LEFT,
+
+    /**
+     * Every pair of records with equal keys plus each record of the second input
+     * with no match in the first (paired with null).
+     */
+    RIGHT,
+
+    /**
+     * Every pair of records with equal keys plus each record of either input with
+     * no match in the other (paired with null).
+     */
+    FULL;
+
+}
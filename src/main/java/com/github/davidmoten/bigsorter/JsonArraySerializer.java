@@ -3,17 +3,21 @@ package com.github.davidmoten.bigsorter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.io.UncheckedIOException;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 final class JsonArraySerializer implements Serializer<ObjectNode> {
 
     private final ObjectMapper mapper = new ObjectMapper();
+    // reused for every element so the root deserializer is looked up once
+    private final ObjectReader reader = mapper.readerFor(ObjectNode.class);
 
     static final JsonArraySerializer INSTANCE = new JsonArraySerializer();
 
@@ -34,7 +38,7 @@ final class JsonArraySerializer implements Serializer<ObjectNode> {
                     if (parser.nextToken() == JsonToken.START_OBJECT) {
                         // read everything from this START_OBJECT to the matching END_OBJECT
                         // and return it as a tree model ObjectNode
-                        return mapper.readTree(parser);
+                        return reader.readValue(parser);
                     } else {
                         // at end
                         parser.close();
@@ -54,38 +58,43 @@ final class JsonArraySerializer implements Serializer<ObjectNode> {
 
     @Override
     public Writer<ObjectNode> createWriter(OutputStream out) {
+        try {
+            // one generator for the whole array writing UTF-8 bytes directly to out
+            JsonGenerator g = mapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+            // the elements are written as root values so suppress the default space between them
+            g.setRootValueSeparator(null);
+            return new Writer<ObjectNode>() {
 
-        java.io.Writer w = new OutputStreamWriter(out);
-
-        return new Writer<ObjectNode>() {
-
-            boolean first = true;
-            boolean closed = false;
+                boolean first = true;
+                boolean closed = false;
 
-            @Override
-            public void write(ObjectNode node) throws IOException {
-                if (first) {
-                    w.write("[\n");
-                    first = false;
-                } else {
-                    w.write(",\n");
+                @Override
+                public void write(ObjectNode node) throws IOException {
+                    if (first) {
+                        g.writeRaw("[\n");
+                        first = false;
+                    } else {
+                        g.writeRaw(",\n");
+                    }
+                    g.writeTree(node);
                 }
-                w.write(mapper.writeValueAsString(node));
-            }
 
-            @Override
-            public void flush() throws IOException {
-                w.flush();
-            }
+                @Override
+                public void flush() throws IOException {
+                    g.flush();
+                }
 
-            @Override
-            public void close() throws IOException {
-                if (!closed) {
-                    w.write("\n]");
-                    w.close();
-                    closed = true;
+                @Override
+                public void close() throws IOException {
+                    if (!closed) {
+                        g.writeRaw("\n]");
+                        g.close();
+                        closed = true;
+                    }
                 }
-            }
-        };
+            };
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 }
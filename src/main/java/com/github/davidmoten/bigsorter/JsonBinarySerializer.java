@@ -0,0 +1,236 @@
+package com.github.davidmoten.bigsorter;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.davidmoten.bigsorter.internal.VarInts;
+
+/**
+ * Compact binary encoding of {@link ObjectNode} values for temporary files.
+ * Each node is a tag byte followed by its content. Field names and strings are
+ * length prefixed UTF-8 and integers are zig-zag varints so no text is parsed
+ * when a temporary file is read.
+ */
+final class JsonBinarySerializer implements Serializer<ObjectNode> {
+
+    static final JsonBinarySerializer INSTANCE = new JsonBinarySerializer();
+
+    private static final int NULL = 0;
+    private static final int TRUE = 1;
+    private static final int FALSE = 2;
+    private static final int INT = 3;
+    private static final int BIG_INTEGER = 4;
+    private static final int FLOAT = 5;
+    private static final int DOUBLE = 6;
+    private static final int BIG_DECIMAL = 7;
+    private static final int STRING = 8;
+    private static final int BINARY = 9;
+    private static final int ARRAY = 10;
+    private static final int OBJECT = 11;
+
+    private static final JsonNodeFactory FACTORY = JsonNodeFactory.instance;
+
+    private JsonBinarySerializer() {
+    }
+
+    @Override
+    public boolean concatenable() {
+        return true;
+    }
+
+    @Override
+    public Reader<ObjectNode> createReader(InputStream in) {
+        DataInputStream dis = new DataInputStream(in);
+        return new Reader<ObjectNode>() {
+
+            @Override
+            public ObjectNode read() throws IOException {
+                int tag = dis.read();
+                if (tag == -1) {
+                    return null;
+                } else if (tag != OBJECT) {
+                    throw new IllegalStateException("expected an object but found tag " + tag);
+                }
+                return readObject(dis);
+            }
+
+            @Override
+            public void close() throws IOException {
+                dis.close();
+            }
+        };
+    }
+
+    @Override
+    public Writer<ObjectNode> createWriter(OutputStream out) {
+        DataOutputStream dos = new DataOutputStream(out);
+        return new Writer<ObjectNode>() {
+
+            @Override
+            public void write(ObjectNode node) throws IOException {
+                writeNode(dos, node);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                dos.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                dos.close();
+            }
+        };
+    }
+
+    private static void writeNode(DataOutputStream dos, JsonNode node) throws IOException {
+        switch (node.getNodeType()) {
+        case NULL:
+        case MISSING:
+            dos.write(NULL);
+            break;
+        case BOOLEAN:
+            dos.write(node.booleanValue() ? TRUE : FALSE);
+            break;
+        case NUMBER:
+            writeNumber(dos, node);
+            break;
+        case STRING:
+            dos.write(STRING);
+            writeString(dos, node.textValue());
+            break;
+        case BINARY:
+            dos.write(BINARY);
+            byte[] bytes = node.binaryValue();
+            VarInts.writeUnsigned(dos, bytes.length);
+            dos.write(bytes);
+            break;
+        case ARRAY:
+            dos.write(ARRAY);
+            VarInts.writeUnsigned(dos, node.size());
+            for (JsonNode element : node) {
+                writeNode(dos, element);
+            }
+            break;
+        case OBJECT:
+            dos.write(OBJECT);
+            VarInts.writeUnsigned(dos, node.size());
+            Iterator<Map.Entry<String, JsonNode>> it = node.properties().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, JsonNode> field = it.next();
+                writeString(dos, field.getKey());
+                writeNode(dos, field.getValue());
+            }
+            break;
+        default:
+            throw new IllegalArgumentException("unsupported node type " + node.getNodeType());
+        }
+    }
+
+    private static void writeNumber(DataOutputStream dos, JsonNode node) throws IOException {
+        switch (node.numberType()) {
+        case INT:
+        case LONG:
+            dos.write(INT);
+            VarInts.writeSigned(dos, node.longValue());
+            break;
+        case BIG_INTEGER:
+            dos.write(BIG_INTEGER);
+            writeString(dos, node.bigIntegerValue().toString());
+            break;
+        case FLOAT:
+            dos.write(FLOAT);
+            dos.writeFloat(node.floatValue());
+            break;
+        case DOUBLE:
+            dos.write(DOUBLE);
+            dos.writeDouble(node.doubleValue());
+            break;
+        default:
+            dos.write(BIG_DECIMAL);
+            writeString(dos, node.decimalValue().toString());
+        }
+    }
+
+    private static JsonNode readNode(DataInputStream dis) throws IOException {
+        int tag = dis.read();
+        switch (tag) {
+        case NULL:
+            return FACTORY.nullNode();
+        case TRUE:
+            return FACTORY.booleanNode(true);
+        case FALSE:
+            return FACTORY.booleanNode(false);
+        case INT:
+            long v = VarInts.readSigned(dis);
+            if (v == (int) v) {
+                return FACTORY.numberNode((int) v);
+            } else {
+                return FACTORY.numberNode(v);
+            }
+        case BIG_INTEGER:
+            return FACTORY.numberNode(new BigInteger(readString(dis)));
+        case FLOAT:
+            return FACTORY.numberNode(dis.readFloat());
+        case DOUBLE:
+            return FACTORY.numberNode(dis.readDouble());
+        case BIG_DECIMAL:
+            return FACTORY.numberNode(new BigDecimal(readString(dis)));
+        case STRING:
+            return FACTORY.textNode(readString(dis));
+        case BINARY:
+            byte[] bytes = new byte[(int) VarInts.readUnsigned(dis)];
+            dis.readFully(bytes);
+            return FACTORY.binaryNode(bytes);
+        case ARRAY:
+            int size = (int) VarInts.readUnsigned(dis);
+            ArrayNode array = FACTORY.arrayNode(size);
+            for (int i = 0; i < size; i++) {
+                array.add(readNode(dis));
+            }
+            return array;
+        case OBJECT:
+            return readObject(dis);
+        case -1:
+            throw new EOFException();
+        default:
+            throw new IllegalStateException("unexpected tag " + tag);
+        }
+    }
+
+    private static ObjectNode readObject(DataInputStream dis) throws IOException {
+        int size = (int) VarInts.readUnsigned(dis);
+        ObjectNode node = FACTORY.objectNode();
+        for (int i = 0; i < size; i++) {
+            String name = readString(dis);
+            node.set(name, readNode(dis));
+        }
+        return node;
+    }
+
+    private static void writeString(DataOutputStream dos, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        VarInts.writeUnsigned(dos, bytes.length);
+        dos.write(bytes);
+    }
+
+    private static String readString(DataInputStream dis) throws IOException {
+        byte[] bytes = new byte[(int) VarInts.readUnsigned(dis)];
+        dis.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,258 @@
+package com.github.davidmoten.bigsorter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.core.JsonToken;
+import com.github.davidmoten.guavamini.Preconditions;
+
+/**
+ * A line of a JSON Lines (NDJSON) file held as its raw UTF-8 bytes. The sort
+ * keys (values at the JSON pointers given to {@link Serializer#jsonLines}) are
+ * extracted with a streaming parser the first time a key is asked for, no tree
+ * model of the line is built and the line is written back unchanged.
+ */
+public final class JsonLine {
+
+    private static final Object[] NOT_EXTRACTED = new Object[0];
+
+    private final byte[] bytes;
+    private final Keys keys;
+    private Object[] values = NOT_EXTRACTED;
+
+    JsonLine(byte[] bytes, Keys keys) {
+        this.bytes = bytes;
+        this.keys = keys;
+    }
+
+    /**
+     * Returns the UTF-8 bytes of the line without the line terminator. The
+     * array is not copied and should not be modified.
+     * 
+     * @return bytes of the line
+     */
+    public byte[] bytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns the value of the key at the given index (the order of the pointers
+     * given to {@link Serializer#jsonLines}). A string value is returned as a
+     * {@link String}, an integer as an {@link Integer}, {@link Long} or
+     * {@link BigInteger}, a floating point number as a {@link Double} and a
+     * boolean as a {@link Boolean}. Returns null if the value is JSON null, is
+     * an object or array or is not present.
+     * 
+     * @param index index of the key
+     * @return key value or null
+     */
+    public Object key(int index) {
+        if (values == NOT_EXTRACTED) {
+            values = keys.extract(bytes);
+        }
+        return values[index];
+    }
+
+    /**
+     * Returns the number of keys.
+     * 
+     * @return number of keys
+     */
+    public int keyCount() {
+        return keys.size();
+    }
+
+    /**
+     * Returns a comparator that compares lines by their keys in order. Nulls
+     * come first then booleans then numbers (by value) then strings.
+     * 
+     * @return comparator
+     */
+    public static Comparator<JsonLine> comparator() {
+        return (x, y) -> {
+            int n = Math.min(x.keyCount(), y.keyCount());
+            for (int i = 0; i < n; i++) {
+                int c = compareValues(x.key(i), y.key(i));
+                if (c != 0) {
+                    return c;
+                }
+            }
+            return Integer.compare(x.keyCount(), y.keyCount());
+        };
+    }
+
+    @Override
+    public String toString() {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compareValues(Object a, Object b) {
+        int c = Integer.compare(rank(a), rank(b));
+        if (c != 0) {
+            return c;
+        } else if (a == null) {
+            return 0;
+        } else if (a instanceof Number) {
+            return compareNumbers((Number) a, (Number) b);
+        } else {
+            return ((Comparable<Object>) a).compareTo(b);
+        }
+    }
+
+    private static int rank(Object o) {
+        if (o == null) {
+            return 0;
+        } else if (o instanceof Boolean) {
+            return 1;
+        } else if (o instanceof Number) {
+            return 2;
+        } else {
+            return 3;
+        }
+    }
+
+    private static int compareNumbers(Number a, Number b) {
+        boolean integral = !(a instanceof Double) && !(b instanceof Double);
+        if (integral && !(a instanceof BigInteger) && !(b instanceof BigInteger)) {
+            return Long.compare(a.longValue(), b.longValue());
+        } else if (integral) {
+            return toBigInteger(a).compareTo(toBigInteger(b));
+        } else {
+            return toBigDecimal(a).compareTo(toBigDecimal(b));
+        }
+    }
+
+    private static BigInteger toBigInteger(Number n) {
+        return n instanceof BigInteger ? (BigInteger) n : BigInteger.valueOf(n.longValue());
+    }
+
+    private static BigDecimal toBigDecimal(Number n) {
+        if (n instanceof Double) {
+            return new BigDecimal(n.doubleValue());
+        } else {
+            return new BigDecimal(toBigInteger(n));
+        }
+    }
+
+    /**
+     * Extracts the values at a set of JSON pointers from the bytes of a JSON
+     * document in one pass of a streaming parser, skipping sub-trees that no
+     * pointer enters.
+     */
+    static final class Keys {
+
+        private final JsonFactory factory;
+        // segments of each pointer, a segment is a property name or an index
+        private final JsonPointer[][] segments;
+
+        Keys(JsonFactory factory, String... pointers) {
+            Preconditions.checkNotNull(pointers, "pointers cannot be null");
+            this.factory = factory;
+            this.segments = new JsonPointer[pointers.length][];
+            for (int i = 0; i < pointers.length; i++) {
+                JsonPointer p = JsonPointer.compile(pointers[i]);
+                Preconditions.checkArgument(!p.matches(), "pointer cannot be empty: " + pointers[i]);
+                int length = 0;
+                for (JsonPointer q = p; !q.matches(); q = q.tail()) {
+                    length++;
+                }
+                segments[i] = new JsonPointer[length];
+                int j = 0;
+                for (JsonPointer q = p; !q.matches(); q = q.tail()) {
+                    segments[i][j++] = q;
+                }
+            }
+        }
+
+        int size() {
+            return segments.length;
+        }
+
+        Object[] extract(byte[] bytes) {
+            Object[] values = new Object[segments.length];
+            try (JsonParser p = factory.createParser(bytes)) {
+                JsonToken token = p.nextToken();
+                if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+                    boolean[] candidates = new boolean[segments.length];
+                    for (int i = 0; i < candidates.length; i++) {
+                        candidates[i] = true;
+                    }
+                    walk(p, 0, candidates, values);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return values;
+        }
+
+        /**
+         * Walks the container whose start token is the current token. The
+         * candidates are the keys whose pointers lead into this container.
+         */
+        private void walk(JsonParser p, int depth, boolean[] candidates, Object[] values) throws IOException {
+            boolean isObject = p.currentToken() == JsonToken.START_OBJECT;
+            int index = 0;
+            JsonToken end = isObject ? JsonToken.END_OBJECT : JsonToken.END_ARRAY;
+            boolean[] matches = new boolean[candidates.length];
+            JsonToken token;
+            while ((token = p.nextToken()) != end && token != null) {
+                String name = null;
+                if (isObject) {
+                    name = p.currentName();
+                    token = p.nextToken();
+                }
+                boolean deeper = false;
+                for (int i = 0; i < candidates.length; i++) {
+                    matches[i] = false;
+                    if (candidates[i]) {
+                        JsonPointer segment = segments[i][depth];
+                        boolean match = isObject ? name.equals(segment.getMatchingProperty())
+                                : segment.getMatchingIndex() == index;
+                        if (match) {
+                            if (depth == segments[i].length - 1) {
+                                values[i] = scalar(p, token);
+                            } else {
+                                matches[i] = true;
+                                deeper = true;
+                            }
+                        }
+                    }
+                }
+                if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+                    if (deeper) {
+                        walk(p, depth + 1, matches.clone(), values);
+                    } else {
+                        p.skipChildren();
+                    }
+                }
+                index++;
+            }
+        }
+
+        private static Object scalar(JsonParser p, JsonToken token) throws IOException {
+            switch (token) {
+            case VALUE_STRING:
+                return p.getText();
+            case VALUE_NUMBER_INT:
+                return p.getNumberValue();
+            case VALUE_NUMBER_FLOAT:
+                return p.getDoubleValue();
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            default:
+                return null;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.github.davidmoten.bigsorter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import com.fasterxml.jackson.core.JsonFactory;
+
+/**
+ * Reads and writes JSON Lines (one JSON value per line, UTF-8). Lines are kept
+ * as raw bytes and written back unchanged. Blank lines are skipped and a
+ * trailing {@code \r} is removed from each line.
+ */
+final class JsonLinesSerializer implements Serializer<JsonLine> {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final JsonLine.Keys keys;
+
+    JsonLinesSerializer(String... pointers) {
+        this.keys = new JsonLine.Keys(new JsonFactory(), pointers);
+    }
+
+    @Override
+    public boolean concatenable() {
+        return true;
+    }
+
+    @Override
+    public Reader<JsonLine> createReader(InputStream in) {
+        return new Reader<JsonLine>() {
+
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int position;
+            int limit;
+            boolean eof;
+
+            @Override
+            public JsonLine read() throws IOException {
+                while (true) {
+                    // scan from start for a line feed, filling the buffer as needed
+                    int start = position;
+                    int i = start;
+                    while (true) {
+                        while (i < limit && buffer[i] != '\n') {
+                            i++;
+                        }
+                        if (i < limit || eof) {
+                            break;
+                        }
+                        int scanned = i - start;
+                        start = fill(start);
+                        i = start + scanned;
+                    }
+                    if (start == limit && eof) {
+                        return null;
+                    }
+                    int end = i;
+                    position = i < limit ? i + 1 : limit;
+                    if (end > start && buffer[end - 1] == '\r') {
+                        end--;
+                    }
+                    if (!isBlank(start, end)) {
+                        return new JsonLine(Arrays.copyOfRange(buffer, start, end), keys);
+                    }
+                }
+            }
+
+            /**
+             * Moves the bytes from start to the front of the buffer (growing it if
+             * full) and reads more. Returns the new position of start.
+             */
+            private int fill(int start) throws IOException {
+                int remaining = limit - start;
+                if (remaining == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                } else if (start > 0) {
+                    System.arraycopy(buffer, start, buffer, 0, remaining);
+                }
+                limit = remaining;
+                position = 0;
+                int n = in.read(buffer, limit, buffer.length - limit);
+                if (n == -1) {
+                    eof = true;
+                } else {
+                    limit += n;
+                }
+                return 0;
+            }
+
+            private boolean isBlank(int start, int end) {
+                for (int j = start; j < end; j++) {
+                    byte b = buffer[j];
+                    if (b != ' ' && b != '\t' && b != '\r') {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public void close() throws IOException {
+                in.close();
+            }
+        };
+    }
+
+    @Override
+    public Writer<JsonLine> createWriter(OutputStream out) {
+        return new Writer<JsonLine>() {
+
+            @Override
+            public void write(JsonLine value) throws IOException {
+                out.write(value.bytes());
+                out.write('\n');
+            }
+
+            @Override
+            public void flush() throws IOException {
+                out.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                out.close();
+            }
+        };
+    }
+
+}
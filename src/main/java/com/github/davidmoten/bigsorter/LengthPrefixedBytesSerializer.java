@@ -0,0 +1,51 @@
+package com.github.davidmoten.bigsorter;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Optional;
+
+final class LengthPrefixedBytesSerializer extends DataSerializer<byte[]> {
+
+    static final LengthPrefixedBytesSerializer INSTANCE = new LengthPrefixedBytesSerializer();
+
+    private static final Optional<RecordLayout> LAYOUT = Optional.of(RecordLayout.lengthPrefixed());
+
+    private LengthPrefixedBytesSerializer() {
+    }
+
+    @Override
+    public Optional<RecordLayout> recordLayout() {
+        return LAYOUT;
+    }
+
+    @Override
+    public byte[] read(DataInputStream dis) throws IOException {
+        byte[] bytes = new byte[length(dis)];
+        dis.readFully(bytes);
+        return bytes;
+    }
+
+    @Override
+    public byte[] readInto(DataInputStream dis, byte[] reuse) throws IOException {
+        int length = length(dis);
+        byte[] bytes = reuse != null && reuse.length == length ? reuse : new byte[length];
+        dis.readFully(bytes);
+        return bytes;
+    }
+
+    @Override
+    public void write(DataOutputStream dos, byte[] value) throws IOException {
+        dos.writeInt(value.length);
+        dos.write(value);
+    }
+
+    private static int length(DataInputStream dis) throws IOException {
+        int length = dis.readInt();
+        if (length < 0) {
+            throw new IOException("corrupt record, negative length " + length);
+        }
+        return length;
+    }
+
+}
@@ -10,6 +10,9 @@ import java.io.OutputStreamWriter;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 
+import com.github.davidmoten.bigsorter.internal.LineReader;
+import com.github.davidmoten.bigsorter.internal.LineWriter;
+
 final class LinesSerializer implements Serializer<String> {
 
     static final Serializer<String> LINES_UTF8_LF = new LinesSerializer(StandardCharsets.UTF_8,
@@ -19,14 +22,36 @@ final class LinesSerializer implements Serializer<String> {
 
     private final Charset charset;
     private final LineDelimiter delimiter;
+    private final boolean concatenable;
 
     LinesSerializer(Charset charset, LineDelimiter delimiter) {
         this.charset = charset;
         this.delimiter = delimiter;
+        this.concatenable = LineReader.supports(charset) || !writesPrefix(charset);
+    }
+
+    @Override
+    public boolean concatenable() {
+        // a byte order mark at the start of each writer's output (UTF-16 for
+        // example) would be read as data in the middle of concatenated output
+        return concatenable;
+    }
+
+    /**
+     * Returns true if the encoding of text depends on where it starts (for
+     * example because a byte order mark is written first).
+     */
+    private static boolean writesPrefix(Charset charset) {
+        byte[] one = "\n".getBytes(charset);
+        byte[] two = "\n\n".getBytes(charset);
+        return two.length != 2 * one.length;
     }
 
     @Override
     public Reader<String> createReader(InputStream in) {
+        if (LineReader.supports(charset)) {
+            return new LineReader(in, charset);
+        }
         return new Reader<String>() {
             BufferedReader br = new BufferedReader(new InputStreamReader(in, charset));
 
@@ -44,6 +69,9 @@ final class LinesSerializer implements Serializer<String> {
 
     @Override
     public Writer<String> createWriter(OutputStream out) {
+        if (LineReader.supports(charset)) {
+            return new LineWriter(out, charset, delimiter.value());
+        }
         return new Writer<String>() {
 
             BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(out, charset));
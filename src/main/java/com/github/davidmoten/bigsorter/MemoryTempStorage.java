@@ -0,0 +1,264 @@
+package com.github.davidmoten.bigsorter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import com.github.davidmoten.guavamini.annotations.VisibleForTesting;
+
+/**
+ * Holds blobs in chunks of memory while they fit within a byte budget. A blob
+ * that does not fit is copied to the overflow storage part way through being
+ * written and the rest of it is written there.
+ */
+final class MemoryTempStorage implements TempStorage {
+
+    private static final int MIN_CHUNK_SIZE = 8 * 1024;
+    private static final int MAX_CHUNK_SIZE = 1024 * 1024;
+
+    private final long maxBytes;
+    private final boolean offHeap;
+    private final TempStorage overflow;
+
+    // bytes allocated including pooled chunks, guarded by this
+    private long used;
+    // released direct chunks by capacity kept for reuse because direct allocation
+    // is expensive, guarded by this
+    private final Map<Integer, Deque<ByteBuffer>> pool = new HashMap<>();
+    private int nextId;
+
+    MemoryTempStorage(long maxBytes, boolean offHeap, TempStorage overflow) {
+        this.maxBytes = maxBytes;
+        this.offHeap = offHeap;
+        this.overflow = overflow;
+    }
+
+    @Override
+    public synchronized TempBlob create(List<? extends TempBlob> reading) {
+        return new MemoryBlob(nextId++);
+    }
+
+    /**
+     * Returns an empty chunk or null if the budget does not allow it.
+     */
+    private synchronized ByteBuffer acquire(int capacity) {
+        Deque<ByteBuffer> pooled = pool.get(capacity);
+        if (pooled != null && !pooled.isEmpty()) {
+            ByteBuffer chunk = pooled.poll();
+            chunk.clear();
+            return chunk;
+        }
+        if (used + capacity > maxBytes) {
+            // make room by dropping pooled chunks of other sizes
+            for (Deque<ByteBuffer> chunks : pool.values()) {
+                for (ByteBuffer chunk : chunks) {
+                    used -= chunk.capacity();
+                }
+            }
+            pool.clear();
+            if (used + capacity > maxBytes) {
+                return null;
+            }
+        }
+        used += capacity;
+        return offHeap ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    private synchronized void release(List<ByteBuffer> chunks) {
+        for (ByteBuffer chunk : chunks) {
+            if (offHeap) {
+                pool.computeIfAbsent(chunk.capacity(), k -> new ArrayDeque<>()).add(chunk);
+            } else {
+                used -= chunk.capacity();
+            }
+        }
+    }
+
+    @VisibleForTesting
+    synchronized long used() {
+        return used;
+    }
+
+    private static void writeTo(ByteBuffer chunk, OutputStream out) throws IOException {
+        ByteBuffer b = chunk.duplicate();
+        b.flip();
+        if (b.hasArray()) {
+            out.write(b.array(), b.arrayOffset(), b.remaining());
+        } else {
+            byte[] buffer = new byte[Math.min(8192, b.remaining())];
+            while (b.hasRemaining()) {
+                int n = Math.min(buffer.length, b.remaining());
+                b.get(buffer, 0, n);
+                out.write(buffer, 0, n);
+            }
+        }
+    }
+
+    private final class MemoryBlob implements TempBlob {
+
+        private final int id;
+        private final List<ByteBuffer> chunks = new ArrayList<>();
+        private long length;
+        // present when the blob did not fit in memory
+        private TempBlob spilled;
+
+        MemoryBlob(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public OutputStream openOutput() {
+            return new OutputStream() {
+
+                ByteBuffer current;
+                OutputStream spill;
+
+                @Override
+                public void write(int b) throws IOException {
+                    write(new byte[] { (byte) b }, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    while (len > 0) {
+                        if (spill != null) {
+                            spill.write(b, off, len);
+                            length += len;
+                            return;
+                        }
+                        if (current == null || !current.hasRemaining()) {
+                            int capacity = current == null ? MIN_CHUNK_SIZE
+                                    : Math.min(MAX_CHUNK_SIZE, current.capacity() * 2);
+                            ByteBuffer next = acquire(capacity);
+                            if (next == null) {
+                                spill();
+                                continue;
+                            }
+                            chunks.add(next);
+                            current = next;
+                        }
+                        int n = Math.min(len, current.remaining());
+                        current.put(b, off, n);
+                        off += n;
+                        len -= n;
+                        length += n;
+                    }
+                }
+
+                private void spill() throws IOException {
+                    spilled = overflow.create(Collections.emptyList());
+                    spill = spilled.openOutput();
+                    for (ByteBuffer chunk : chunks) {
+                        writeTo(chunk, spill);
+                    }
+                    release(chunks);
+                    chunks.clear();
+                    current = null;
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    if (spill != null) {
+                        spill.flush();
+                    }
+                }
+
+                @Override
+                public void close() throws IOException {
+                    if (spill != null) {
+                        spill.close();
+                    }
+                }
+            };
+        }
+
+        @Override
+        public InputStream openInput() throws IOException {
+            if (spilled != null) {
+                return spilled.openInput();
+            }
+            List<ByteBuffer> buffers = new ArrayList<>(chunks.size());
+            for (ByteBuffer chunk : chunks) {
+                ByteBuffer b = chunk.duplicate();
+                b.flip();
+                buffers.add(b);
+            }
+            return new InputStream() {
+
+                int index;
+
+                @Override
+                public int read() {
+                    ByteBuffer b = current();
+                    return b == null ? -1 : b.get() & 0xff;
+                }
+
+                @Override
+                public int read(byte[] bytes, int off, int len) {
+                    if (len == 0) {
+                        return 0;
+                    }
+                    ByteBuffer b = current();
+                    if (b == null) {
+                        return -1;
+                    }
+                    int n = Math.min(len, b.remaining());
+                    b.get(bytes, off, n);
+                    return n;
+                }
+
+                @Override
+                public int available() {
+                    ByteBuffer b = current();
+                    return b == null ? 0 : b.remaining();
+                }
+
+                private ByteBuffer current() {
+                    while (index < buffers.size()) {
+                        ByteBuffer b = buffers.get(index);
+                        if (b.hasRemaining()) {
+                            return b;
+                        }
+                        index++;
+                    }
+                    return null;
+                }
+            };
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public void delete() {
+            if (spilled != null) {
+                spilled.delete();
+            }
+            release(chunks);
+            chunks.clear();
+        }
+
+        @Override
+        public Optional<File> file() {
+            return spilled == null ? Optional.empty() : spilled.file();
+        }
+
+        @Override
+        public String toString() {
+            return spilled == null ? "memory-" + id : spilled.toString();
+        }
+    }
+
+}
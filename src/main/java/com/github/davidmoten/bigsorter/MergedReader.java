@@ -0,0 +1,94 @@
+package com.github.davidmoten.bigsorter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Reads the values of several sorted readers in sorted order (a k-way merge).
+ * Values that compare equal are returned in the order of their readers.
+ */
+final class MergedReader<T> implements Reader<T> {
+
+    private final List<Reader<? extends T>> readers;
+    private final PriorityQueue<Head<T>> q;
+    private boolean started;
+    // index of the reader of the last value returned
+    private int index = -1;
+
+    MergedReader(List<? extends Reader<? extends T>> readers, Comparator<? super T> comparator) {
+        this.readers = new ArrayList<>(readers);
+        this.q = new PriorityQueue<>((x, y) -> {
+            int c = comparator.compare(x.value, y.value);
+            return c != 0 ? c : Integer.compare(x.index, y.index);
+        });
+    }
+
+    @Override
+    public T read() throws IOException {
+        if (!started) {
+            started = true;
+            for (int i = 0; i < readers.size(); i++) {
+                Head<T> head = new Head<T>(readers.get(i), i);
+                if (head.next()) {
+                    q.offer(head);
+                }
+            }
+        }
+        Head<T> head = q.poll();
+        if (head == null) {
+            return null;
+        }
+        T value = head.value;
+        index = head.index;
+        if (head.next()) {
+            q.offer(head);
+        }
+        return value;
+    }
+
+    /**
+     * Returns the position in the list of readers of the reader of the value last
+     * returned by {@link #read()}.
+     * 
+     * @return index of the reader of the last value
+     */
+    int index() {
+        return index;
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException error = null;
+        for (Reader<? extends T> reader : readers) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+        q.clear();
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private static final class Head<T> {
+        final Reader<? extends T> reader;
+        final int index;
+        T value;
+
+        Head(Reader<? extends T> reader, int index) {
+            this.reader = reader;
+            this.index = index;
+        }
+
+        boolean next() throws IOException {
+            value = reader.readAutoClosing();
+            return value != null;
+        }
+    }
+
+}
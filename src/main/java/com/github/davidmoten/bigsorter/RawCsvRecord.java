@@ -0,0 +1,131 @@
+package com.github.davidmoten.bigsorter;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * A CSV record held as the raw bytes it was read from (without the record
+ * separator). Only the values of the sort key columns given to
+ * {@link Serializer#csvRaw} are parsed and only when first asked for. The
+ * record is written back byte for byte.
+ */
+public final class RawCsvRecord {
+
+    private static final String[] NOT_PARSED = new String[0];
+
+    private final byte[] bytes;
+    private final Layout layout;
+    // bytes of the header record of the file the record was read from or null
+    private final byte[] header;
+    private String[] keys = NOT_PARSED;
+
+    RawCsvRecord(byte[] bytes, Layout layout, byte[] header) {
+        this.bytes = bytes;
+        this.layout = layout;
+        this.header = header;
+    }
+
+    /**
+     * Returns the bytes of the record without the record separator. The array is
+     * not copied and should not be modified.
+     * 
+     * @return bytes of the record
+     */
+    public byte[] bytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns the value of the key column at the given index (the order of the
+     * columns given to {@link Serializer#csvRaw}) with quotes removed. Returns
+     * null if the record has too few columns.
+     * 
+     * @param index index of the key
+     * @return value of the key column or null
+     */
+    public String key(int index) {
+        if (keys == NOT_PARSED) {
+            keys = layout.keys(bytes);
+        }
+        return keys[index];
+    }
+
+    /**
+     * Returns the number of keys.
+     * 
+     * @return number of keys
+     */
+    public int keyCount() {
+        return layout.keyColumns.length;
+    }
+
+    byte[] header() {
+        return header;
+    }
+
+    @Override
+    public String toString() {
+        return new String(bytes, layout.charset);
+    }
+
+    /**
+     * The parts of a CSV format that are needed to find the end of a record and
+     * the values of the key columns in the bytes of a record.
+     */
+    static final class Layout {
+
+        final Charset charset;
+        final byte delimiter;
+        // false if the format has no quote character
+        final boolean hasQuote;
+        final byte quote;
+        final int[] keyColumns;
+
+        Layout(Charset charset, byte delimiter, int quote, int[] keyColumns) {
+            this.charset = charset;
+            this.delimiter = delimiter;
+            // without the flag a quote of -1 would match the byte 0xFF
+            this.hasQuote = quote >= 0;
+            this.quote = (byte) quote;
+            this.keyColumns = keyColumns;
+        }
+
+        String[] keys(byte[] bytes) {
+            String[] values = new String[keyColumns.length];
+            int column = 0;
+            int start = 0;
+            boolean quoted = false;
+            for (int i = 0; i <= bytes.length; i++) {
+                if (i == bytes.length || bytes[i] == delimiter && !quoted) {
+                    for (int k = 0; k < keyColumns.length; k++) {
+                        if (keyColumns[k] == column) {
+                            values[k] = value(bytes, start, i);
+                        }
+                    }
+                    column++;
+                    start = i + 1;
+                } else if (hasQuote && bytes[i] == quote) {
+                    quoted = !quoted;
+                }
+            }
+            return values;
+        }
+
+        private String value(byte[] bytes, int start, int end) {
+            if (hasQuote && end - start >= 2 && bytes[start] == quote && bytes[end - 1] == quote) {
+                // remove enclosing quotes and undouble quotes inside
+                ByteArrayOutputStream b = new ByteArrayOutputStream(end - start);
+                for (int i = start + 1; i < end - 1; i++) {
+                    b.write(bytes[i]);
+                    if (bytes[i] == quote && i + 1 < end - 1 && bytes[i + 1] == quote) {
+                        i++;
+                    }
+                }
+                return new String(b.toByteArray(), charset);
+            } else {
+                return new String(bytes, start, end - start, charset);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,182 @@
+package com.github.davidmoten.bigsorter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.apache.commons.csv.CSVFormat;
+
+import com.github.davidmoten.bigsorter.internal.LineReader;
+import com.github.davidmoten.guavamini.Preconditions;
+
+/**
+ * Reads CSV records as raw byte spans. A record ends at a line feed (with an
+ * optional preceding carriage return) that is not inside quotes. Empty lines
+ * are skipped. If the format has a header then the first record is the header
+ * and it is written at the start of every output.
+ */
+final class RawCsvSerializer implements Serializer<RawCsvRecord> {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final RawCsvRecord.Layout layout;
+    private final boolean hasHeader;
+    private final byte[] recordSeparator;
+
+    RawCsvSerializer(CSVFormat format, Charset charset, int... keyColumns) {
+        Preconditions.checkNotNull(format, "format cannot be null");
+        Preconditions.checkNotNull(charset, "charset cannot be null");
+        Preconditions.checkNotNull(keyColumns, "keyColumns cannot be null");
+        Preconditions.checkArgument(LineReader.supports(charset),
+                "charset must be UTF-8, US-ASCII or ISO-8859-1: " + charset);
+        Preconditions.checkArgument(format.getDelimiterString().length() == 1
+                && format.getDelimiterString().charAt(0) < 0x80, "delimiter must be a single ASCII character");
+        Preconditions.checkArgument(format.getQuoteCharacter() == null || format.getQuoteCharacter() < 0x80,
+                "quote must be an ASCII character");
+        Preconditions.checkArgument(format.getEscapeCharacter() == null, "escape character is not supported");
+        for (int column : keyColumns) {
+            Preconditions.checkArgument(column >= 0, "key columns cannot be negative");
+        }
+        this.layout = new RawCsvRecord.Layout(charset, (byte) format.getDelimiterString().charAt(0),
+                format.getQuoteCharacter() == null ? -1 : format.getQuoteCharacter(), keyColumns.clone());
+        // as for CSVParser the first record is the header if the header is to be
+        // read from the input or if a given header is to be skipped
+        String[] header = format.getHeader();
+        this.hasHeader = header != null && (header.length == 0 || format.getSkipHeaderRecord());
+        String separator = format.getRecordSeparator() == null ? "\n" : format.getRecordSeparator();
+        this.recordSeparator = separator.getBytes(charset);
+    }
+
+    @Override
+    public boolean concatenable() {
+        // every output starts with the header
+        return !hasHeader;
+    }
+
+    @Override
+    public Reader<RawCsvRecord> createReader(InputStream in) {
+        return new Reader<RawCsvRecord>() {
+
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int position;
+            int limit;
+            boolean eof;
+            byte[] header;
+            boolean headerRead = !hasHeader;
+
+            @Override
+            public RawCsvRecord read() throws IOException {
+                byte[] bytes;
+                while ((bytes = next()) != null) {
+                    if (!headerRead) {
+                        header = bytes;
+                        headerRead = true;
+                    } else {
+                        return new RawCsvRecord(bytes, layout, header);
+                    }
+                }
+                return null;
+            }
+
+            /**
+             * Returns the bytes of the next non-empty record or null if none.
+             */
+            private byte[] next() throws IOException {
+                while (true) {
+                    int start = position;
+                    int i = start;
+                    boolean quoted = false;
+                    while (true) {
+                        while (i < limit) {
+                            byte b = buffer[i];
+                            if (b == '\n' && !quoted) {
+                                break;
+                            } else if (layout.hasQuote && b == layout.quote) {
+                                quoted = !quoted;
+                            }
+                            i++;
+                        }
+                        if (i < limit || eof) {
+                            break;
+                        }
+                        int scanned = i - start;
+                        start = fill(start);
+                        i = start + scanned;
+                    }
+                    if (start == limit && eof) {
+                        return null;
+                    }
+                    int end = i;
+                    position = i < limit ? i + 1 : limit;
+                    if (end > start && buffer[end - 1] == '\r') {
+                        end--;
+                    }
+                    if (end > start) {
+                        return Arrays.copyOfRange(buffer, start, end);
+                    }
+                }
+            }
+
+            /**
+             * Moves the bytes from start to the front of the buffer (growing it if
+             * full) and reads more. Returns the new position of start.
+             */
+            private int fill(int start) throws IOException {
+                int remaining = limit - start;
+                if (remaining == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                } else if (start > 0) {
+                    System.arraycopy(buffer, start, buffer, 0, remaining);
+                }
+                limit = remaining;
+                position = 0;
+                int n = in.read(buffer, limit, buffer.length - limit);
+                if (n == -1) {
+                    eof = true;
+                } else {
+                    limit += n;
+                }
+                return 0;
+            }
+
+            @Override
+            public void close() throws IOException {
+                in.close();
+            }
+        };
+    }
+
+    @Override
+    public Writer<RawCsvRecord> createWriter(OutputStream out) {
+        return new Writer<RawCsvRecord>() {
+
+            boolean first = true;
+
+            @Override
+            public void write(RawCsvRecord value) throws IOException {
+                if (first) {
+                    first = false;
+                    if (hasHeader && value.header() != null) {
+                        out.write(value.header());
+                        out.write(recordSeparator);
+                    }
+                }
+                out.write(value.bytes());
+                out.write(recordSeparator);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                out.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                out.close();
+            }
+        };
+    }
+
+}
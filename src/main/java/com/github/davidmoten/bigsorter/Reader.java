@@ -23,6 +23,23 @@ public interface Reader<T> extends Closeable, Iterable<T> {
      */
     T read() throws IOException;
 
+    /**
+     * Returns the next read value, possibly reading it into {@code reuse} (a
+     * value previously returned by this reader that the caller no longer refers
+     * to) rather than allocating a new value. If no more values returns null.
+     * Readers of mutable values (like byte arrays) can override this to avoid
+     * creating garbage for every value when values are only read to be written
+     * somewhere else straight away (as in merges). Default returns
+     * {@link #read()}.
+     * 
+     * @param reuse value that may be overwritten, may be null
+     * @return the next read value or null if no more values
+     * @throws IOException on IO problem
+     */
+    default T readInto(T reuse) throws IOException {
+        return read();
+    }
+
     /**
      * Returns the next read value. If no more values close() is called then null
      * returned.
@@ -38,6 +55,24 @@ public interface Reader<T> extends Closeable, Iterable<T> {
         return v;
     }
 
+    /**
+     * Reads and discards up to {@code n} values. Readers that know where values
+     * start (like {@link DataSerializer#framed()} readers) skip without decoding
+     * every value.
+     * 
+     * @param n maximum number of values to skip
+     * @return number of values skipped which is less than {@code n} only if the
+     *         end was reached
+     * @throws IOException on IO problem
+     */
+    default long skip(long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n && read() != null) {
+            skipped++;
+        }
+        return skipped;
+    }
+
     default Reader<T> filter(Predicate<? super T> predicate) {
         Reader<T> r = this;
         return new Reader<T>() {
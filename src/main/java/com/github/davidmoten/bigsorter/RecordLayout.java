@@ -0,0 +1,165 @@
+package com.github.davidmoten.bigsorter;
+
+import java.util.Comparator;
+
+import com.github.davidmoten.guavamini.Preconditions;
+
+/**
+ * Describes where records start and end in the bytes written by a
+ * {@link Serializer} and where the key of each record sits. When a serializer
+ * reports a layout (see {@link Serializer#recordLayout()}) the sorter merges
+ * temporary files by comparing key bytes and copying record bytes without
+ * deserializing records.
+ *
+ * <p>
+ * The key bytes of a record are compared as unsigned bytes in lexicographic
+ * order so the comparator given to the sorter must order records the same way
+ * (for example big-endian unsigned integers, or ASCII text).
+ */
+public interface RecordLayout {
+
+    /**
+     * Returns the number of leading bytes of a record that must be read before
+     * {@link #recordLength(byte[])} can be called (at least 1).
+     *
+     * @return number of bytes of the record prefix
+     */
+    int prefixLength();
+
+    /**
+     * Returns the total length in bytes of the record (including the prefix).
+     *
+     * @param record array starting with at least {@link #prefixLength()} bytes of
+     *               the record
+     * @return total length in bytes of the record
+     */
+    int recordLength(byte[] record);
+
+    /**
+     * Returns the position of the first byte of the key in the record.
+     *
+     * @param record the record bytes
+     * @param length the length of the record (the array may be longer)
+     * @return position of the key
+     */
+    int keyOffset(byte[] record, int length);
+
+    /**
+     * Returns the number of bytes of the key in the record.
+     *
+     * @param record the record bytes
+     * @param length the length of the record (the array may be longer)
+     * @return length of the key
+     */
+    int keyLength(byte[] record, int length);
+
+    /**
+     * Returns a comparator of serialized records (for example the
+     * {@code byte[]} records of {@link Serializer#fixedSizeRecord(int, int, int)})
+     * that agrees with the ordering used for merging.
+     *
+     * @return comparator of serialized records
+     */
+    default Comparator<byte[]> comparator() {
+        return (a, b) -> compareKeys(a, a.length, b, b.length);
+    }
+
+    /**
+     * Compares the keys of two serialized records as unsigned bytes.
+     *
+     * @param a       first record
+     * @param aLength length of the first record
+     * @param b       second record
+     * @param bLength length of the second record
+     * @return negative, zero or positive as the key of a is less than, equal to
+     *         or greater than the key of b
+     */
+    default int compareKeys(byte[] a, int aLength, byte[] b, int bLength) {
+        return Util.compareUnsigned( //
+                a, keyOffset(a, aLength), keyLength(a, aLength), //
+                b, keyOffset(b, bLength), keyLength(b, bLength));
+    }
+
+    /**
+     * Returns the layout of records that are all {@code size} bytes long with
+     * the key occupying {@code keyLength} bytes at {@code keyOffset}.
+     *
+     * @param size      record size in bytes
+     * @param keyOffset position of the key in the record
+     * @param keyLength length of the key in bytes
+     * @return layout
+     */
+    static RecordLayout fixedSize(int size, int keyOffset, int keyLength) {
+        Preconditions.checkArgument(size > 0, "size must be greater than 0");
+        Preconditions.checkArgument(keyOffset >= 0, "keyOffset cannot be negative");
+        Preconditions.checkArgument(keyLength >= 0, "keyLength cannot be negative");
+        Preconditions.checkArgument(keyOffset + keyLength <= size, "key must lie within the record");
+        return new RecordLayout() {
+
+            @Override
+            public int prefixLength() {
+                return size;
+            }
+
+            @Override
+            public int recordLength(byte[] record) {
+                return size;
+            }
+
+            @Override
+            public int keyOffset(byte[] record, int length) {
+                return keyOffset;
+            }
+
+            @Override
+            public int keyLength(byte[] record, int length) {
+                return keyLength;
+            }
+        };
+    }
+
+    /**
+     * Returns the layout of records that start with a big-endian 4 byte length
+     * (as written by {@code DataOutputStream.writeInt}) followed by that many
+     * bytes which are the key. This is the layout of
+     * {@link Serializer#lengthPrefixedBytes()} and {@link #comparator()}
+     * compares the values of that serializer (the bytes without the length).
+     *
+     * @return layout
+     */
+    static RecordLayout lengthPrefixed() {
+        return new RecordLayout() {
+
+            @Override
+            public int prefixLength() {
+                return 4;
+            }
+
+            @Override
+            public int recordLength(byte[] record) {
+                return 4 + (((record[0] & 0xff) << 24) //
+                        | ((record[1] & 0xff) << 16) //
+                        | ((record[2] & 0xff) << 8) //
+                        | (record[3] & 0xff));
+            }
+
+            @Override
+            public int keyOffset(byte[] record, int length) {
+                return 4;
+            }
+
+            @Override
+            public int keyLength(byte[] record, int length) {
+                return length - 4;
+            }
+
+            @Override
+            public Comparator<byte[]> comparator() {
+                // values are read without the length prefix
+                return (a, b) -> Util.compareUnsigned(a, 0, a.length, b, 0, b.length);
+            }
+        };
+    }
+
+
+}
@@ -0,0 +1,244 @@
+package com.github.davidmoten.bigsorter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+
+import com.github.davidmoten.bigsorter.internal.ChannelInputStream;
+import com.github.davidmoten.guavamini.annotations.VisibleForTesting;
+
+/**
+ * Appends blobs to a few large segment files rather than creating a file per
+ * blob. Each blob is a list of extents (segment, offset, length) held in memory
+ * and is read back with positional reads. A segment file is deleted when every
+ * blob with an extent in it has been deleted.
+ */
+final class SegmentedTempStorage implements TempStorage {
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final List<File> directories;
+    private final long segmentSize;
+
+    // segments with room that no blob is appending to, guarded by this
+    private final Deque<Segment> available = new ArrayDeque<>();
+    private int nextDirectoryIndex;
+    // number of segment files that exist, guarded by this
+    private int segments;
+
+    SegmentedTempStorage(List<File> directories, long segmentSize) {
+        this.directories = directories;
+        this.segmentSize = segmentSize;
+    }
+
+    @Override
+    public TempBlob create(List<? extends TempBlob> reading) {
+        return new SegmentedBlob();
+    }
+
+    @VisibleForTesting
+    synchronized int segments() {
+        return segments;
+    }
+
+    /**
+     * Returns a segment with room for appending that no other blob is appending
+     * to. The caller holds a reference to the segment until it calls
+     * {@link #release(Segment, long)}.
+     */
+    private synchronized Segment acquire() throws IOException {
+        Segment segment = available.poll();
+        if (segment == null) {
+            File directory = directories.get(nextDirectoryIndex);
+            nextDirectoryIndex = (nextDirectoryIndex + 1) % directories.size();
+            directory.mkdirs();
+            File file = Files.createTempFile(directory.toPath(), "big-sorter-segment", "").toFile();
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                // reserve the space up front so appends do not extend the file
+                raf.setLength(segmentSize);
+            }
+            segment = new Segment(file,
+                    FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE));
+            segments++;
+        }
+        segment.references++;
+        return segment;
+    }
+
+    /**
+     * Gives up appending to the segment which has been written up to
+     * {@code tail}.
+     */
+    private synchronized void release(Segment segment, long tail) {
+        segment.tail = tail;
+        if (!dereference(segment) && tail < segmentSize) {
+            available.offer(segment);
+        }
+    }
+
+    /**
+     * Returns true if the segment was deleted because nothing refers to it.
+     */
+    private synchronized boolean dereference(Segment segment) {
+        segment.references--;
+        if (segment.references == 0) {
+            available.remove(segment);
+            try {
+                segment.channel.close();
+            } catch (IOException e) {
+                // the file is deleted regardless
+            }
+            segment.file.delete();
+            segments--;
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    private static final class Segment {
+        final File file;
+        final FileChannel channel;
+        // position of the next append, guarded by storage
+        long tail;
+        // extents in the segment plus the blob appending to it, guarded by storage
+        int references;
+
+        Segment(File file, FileChannel channel) {
+            this.file = file;
+            this.channel = channel;
+        }
+    }
+
+    private static final class Extent {
+        final Segment segment;
+        final long position;
+        final long length;
+
+        Extent(Segment segment, long position, long length) {
+            this.segment = segment;
+            this.position = position;
+            this.length = length;
+        }
+    }
+
+    private final class SegmentedBlob implements TempBlob {
+
+        private final List<Extent> extents = new ArrayList<>();
+        private long length;
+
+        @Override
+        public OutputStream openOutput() {
+            return new OutputStream() {
+
+                Segment segment;
+                // position in the segment of the first byte of the current extent
+                long start;
+                // position in the segment of the next byte to write
+                long position;
+
+                @Override
+                public void write(int b) throws IOException {
+                    write(new byte[] { (byte) b }, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    while (len > 0) {
+                        if (segment == null || position == segmentSize) {
+                            nextSegment();
+                        }
+                        int n = (int) Math.min(len, segmentSize - position);
+                        ByteBuffer bb = ByteBuffer.wrap(b, off, n);
+                        while (bb.hasRemaining()) {
+                            position += segment.channel.write(bb, position);
+                        }
+                        off += n;
+                        len -= n;
+                        length += n;
+                    }
+                }
+
+                private void nextSegment() throws IOException {
+                    finishExtent();
+                    segment = acquire();
+                    start = segment.tail;
+                    position = start;
+                }
+
+                private void finishExtent() {
+                    if (segment != null) {
+                        if (position > start) {
+                            synchronized (SegmentedTempStorage.this) {
+                                segment.references++;
+                            }
+                            extents.add(new Extent(segment, start, position - start));
+                        }
+                        release(segment, position);
+                        segment = null;
+                    }
+                }
+
+                @Override
+                public void close() throws IOException {
+                    finishExtent();
+                }
+            };
+        }
+
+        @Override
+        public InputStream openInput() {
+            Iterator<Extent> it = extents.iterator();
+            return new SequenceInputStream(new Enumeration<InputStream>() {
+
+                @Override
+                public boolean hasMoreElements() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public InputStream nextElement() {
+                    Extent x = it.next();
+                    return new ChannelInputStream(x.segment.channel, x.position, x.length,
+                            (int) Math.min(READ_BUFFER_SIZE, Math.max(1, x.length)), false);
+                }
+            });
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public void delete() {
+            for (Extent x : extents) {
+                dereference(x.segment);
+            }
+            extents.clear();
+        }
+
+        @Override
+        public String toString() {
+            if (extents.isEmpty()) {
+                return "empty segment blob";
+            }
+            Extent x = extents.get(0);
+            return x.segment.file.getName() + "@" + x.position;
+        }
+    }
+
+}
@@ -6,6 +6,7 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.io.Serializable;
 import java.nio.charset.Charset;
+import java.util.Optional;
 
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVRecord;
@@ -15,6 +16,34 @@ import com.github.davidmoten.guavamini.Preconditions;
 
 public interface Serializer<T> extends InputStreamReaderFactory<T>, OutputStreamWriterFactory<T> {
 
+    /**
+     * Returns true if the bytes written by one writer followed by the bytes
+     * written by another writer (both created by this serializer) are read back
+     * as the records of the first followed by the records of the second. When
+     * true the sorter is able to join sorted runs that do not overlap by copying
+     * bytes instead of decoding and re-encoding every record. Serializers that
+     * write headers or footers (like JSON arrays) must return false. Default is
+     * false.
+     * 
+     * @return true if the output of writers can be concatenated
+     */
+    default boolean concatenable() {
+        return false;
+    }
+
+    /**
+     * Returns the layout of records in the bytes written by this serializer if
+     * known. When present the sorter merges temporary files by comparing key bytes
+     * and copying records without deserializing them, so the comparator used with
+     * the sorter must agree with {@link RecordLayout#comparator()}. A serializer
+     * with a layout must also be {@link #concatenable()}. Default is empty.
+     * 
+     * @return layout of records in the serialized bytes
+     */
+    default Optional<RecordLayout> recordLayout() {
+        return Optional.empty();
+    }
+
     static Serializer<String> linesUtf8() {
         return linesUtf8(LineDelimiter.LINE_FEED);
     }
@@ -43,9 +72,78 @@ public interface Serializer<T> extends InputStreamReaderFactory<T>, OutputStream
         return JavaSerializer.instance();
     }
 
+    /**
+     * Returns a serializer using Java IO serialization that resets the object
+     * stream every {@code resetInterval} values so that neither the writer nor
+     * the reader holds a reference to every value of a file. {@link #java()}
+     * resets every 1000 values.
+     * 
+     * @param <T>           value type
+     * @param resetInterval number of values written between resets
+     * @return serializer
+     */
+    static <T extends Serializable> Serializer<T> java(int resetInterval) {
+        Preconditions.checkArgument(resetInterval > 0, "resetInterval must be greater than 0");
+        return new JavaSerializer<T>(resetInterval);
+    }
+
+    /**
+     * Returns a serializer of integers as 4 byte big endian values (as written
+     * by {@link DataOutputStream#writeInt(int)}). Sorted runs in temporary files
+     * are written as varint differences between adjacent values which usually
+     * takes a fraction of the space.
+     * 
+     * @return serializer
+     */
+    static Serializer<Integer> integers() {
+        return IntegralSerializer.INTEGERS;
+    }
+
+    /**
+     * Returns a serializer of longs as 8 byte big endian values (as written by
+     * {@link DataOutputStream#writeLong(long)}). Sorted runs in temporary files
+     * are written as varint differences between adjacent values which usually
+     * takes a fraction of the space.
+     * 
+     * @return serializer
+     */
+    static Serializer<Long> longs() {
+        return IntegralSerializer.LONGS;
+    }
+
     static Serializer<byte[]> fixedSizeRecord(int size) {
         Preconditions.checkArgument(size > 0);
-        return new FixedSizeRecordSerializer(size);
+        return new FixedSizeRecordSerializer(size, Optional.empty());
+    }
+
+    /**
+     * Returns a serializer of fixed size records that have a key of
+     * {@code keyLength} bytes at {@code keyOffset} that sorts as unsigned bytes.
+     * Use {@code RecordLayout.fixedSize(size, keyOffset, keyLength).comparator()}
+     * (or an equivalent comparator) with the sorter so that records are merged
+     * without being copied into new arrays.
+     * 
+     * @param size      record size in bytes
+     * @param keyOffset position of the key in the record
+     * @param keyLength length of the key in bytes
+     * @return serializer
+     */
+    static Serializer<byte[]> fixedSizeRecord(int size, int keyOffset, int keyLength) {
+        return new FixedSizeRecordSerializer(size,
+                Optional.of(RecordLayout.fixedSize(size, keyOffset, keyLength)));
+    }
+
+    /**
+     * Returns a serializer of byte arrays of any length each written as a big
+     * endian 4 byte length followed by the bytes. Use
+     * {@code RecordLayout.lengthPrefixed().comparator()} (or an equivalent
+     * comparator that orders the arrays as unsigned bytes) with the sorter so
+     * that records are merged by comparing their bytes without being decoded.
+     * 
+     * @return serializer
+     */
+    static Serializer<byte[]> lengthPrefixedBytes() {
+        return LengthPrefixedBytesSerializer.INSTANCE;
     }
 
     static Serializer<CSVRecord> csv(CSVFormat format, Charset charset) {
@@ -54,9 +152,87 @@ public interface Serializer<T> extends InputStreamReaderFactory<T>, OutputStream
         return new CsvSerializer(format, charset);
     }
     
+    /**
+     * Returns a serializer of CSV records that keeps each record as its raw
+     * bytes and writes it back unchanged. Only the values of the given key
+     * columns are parsed (when first needed, see {@link RawCsvRecord#key(int)})
+     * so a sort on a few columns of a wide file does less work and holds less
+     * in memory than {@link #csv(CSVFormat, Charset)}. The delimiter, quote
+     * character, record separator and header settings of the format are used.
+     * The charset must be UTF-8, US-ASCII or ISO-8859-1.
+     * 
+     * @param format     CSV format
+     * @param charset    charset
+     * @param keyColumns zero-based indexes of the sort key columns
+     * @return serializer
+     */
+    static Serializer<RawCsvRecord> csvRaw(CSVFormat format, Charset charset, int... keyColumns) {
+        return new RawCsvSerializer(format, charset, keyColumns);
+    }
+
     static Serializer<ObjectNode> jsonArray() {
         return JsonArraySerializer.INSTANCE;
     }
+
+    /**
+     * Returns a serializer of JSON Lines (NDJSON) files. Each line is kept as
+     * its raw bytes and written back unchanged. The values at the given JSON
+     * pointers (for example {@code "/name"} or {@code "/address/postcode"}) are
+     * extracted with a streaming parser when first needed and are available
+     * from {@link JsonLine#key(int)} for use by a comparator (see
+     * {@link JsonLine#comparator()}).
+     * 
+     * @param keyPointers JSON pointers of the sort keys
+     * @return serializer
+     */
+    static Serializer<JsonLine> jsonLines(String... keyPointers) {
+        return new JsonLinesSerializer(keyPointers);
+    }
+
+    /**
+     * Returns a front-coded serializer of strings intended for temporary files
+     * (see {@code Sorter.Builder4Base.spillSerializer}). Each string is written
+     * as the length of the prefix it shares with the previous string and the
+     * remaining UTF-8 bytes so sorted runs of strings with long common prefixes
+     * (like URLs) take much less space.
+     * 
+     * @return serializer
+     */
+    static Serializer<String> frontCodedStrings() {
+        return FrontCodedSerializer.STRINGS;
+    }
+
+    /**
+     * Returns a front-coded serializer of byte arrays intended for temporary
+     * files (see {@link #frontCodedStrings()}).
+     * 
+     * @return serializer
+     */
+    static Serializer<byte[]> frontCodedBytes() {
+        return FrontCodedSerializer.BYTES;
+    }
+
+    /**
+     * Returns a compact binary serializer of {@link CSVRecord} values intended
+     * for temporary files (see {@code Sorter.Builder4Base.spillSerializer}).
+     * Header names are kept so that {@link CSVRecord#get(String)} works on the
+     * records read back.
+     * 
+     * @return serializer
+     */
+    static Serializer<CSVRecord> csvBinary() {
+        return CsvBinarySerializer.INSTANCE;
+    }
+
+    /**
+     * Returns a compact binary serializer of {@link ObjectNode} values intended
+     * for temporary files (see {@code Sorter.Builder4Base.spillSerializer}).
+     * 
+     * @return serializer
+     */
+    static Serializer<ObjectNode> jsonBinary() {
+        return JsonBinarySerializer.INSTANCE;
+    }
     
     static <T> Serializer<T> dataSerializer(Function<? super DataInputStream, ? extends T> reader, BiConsumer<? super DataOutputStream, ? super T> writer){
         return new DataSerializer<T>() {
@@ -0,0 +1,376 @@
+package com.github.davidmoten.bigsorter;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+import com.github.davidmoten.bigsorter.internal.ChannelInputStream;
+import com.github.davidmoten.bigsorter.internal.VarInts;
+import com.github.davidmoten.guavamini.Preconditions;
+import com.github.davidmoten.guavamini.annotations.VisibleForTesting;
+
+/**
+ * A sparse index of a sorted file written by {@link Sorter} with
+ * {@code outputIndex(interval)}. The sorted file is written as blocks of
+ * {@code interval} records, each by a new writer of the (concatenable)
+ * serializer, so a reader can start at the first byte of any block. The index
+ * holds the first record of each block and the position of the block in the
+ * file so a lookup binary searches the index in memory and then reads at most
+ * one block before reaching the records it wants.
+ *
+ * <p>
+ * The index is kept in a file next to the sorted file with the suffix
+ * {@code .idx}. It is a sequence of entries, each the position of a block as a
+ * varint followed by the serialized first record of the block as a varint
+ * length and the bytes.
+ *
+ * @param <T> record type
+ */
+public final class SortedIndex<T> {
+
+    private static final String SUFFIX = ".idx";
+    private static final int READ_BUFFER_SIZE = 8192;
+
+    private final File file;
+    private final Serializer<T> serializer;
+    private final Comparator<? super T> comparator;
+    // first record of each block
+    private final List<T> keys;
+    // position in the file of each block
+    private final long[] positions;
+
+    private SortedIndex(File file, Serializer<T> serializer, Comparator<? super T> comparator, List<T> keys,
+            long[] positions) {
+        this.file = file;
+        this.serializer = serializer;
+        this.comparator = comparator;
+        this.keys = keys;
+        this.positions = positions;
+    }
+
+    /**
+     * Returns the index file of a sorted file.
+     * 
+     * @param file sorted file
+     * @return index file
+     */
+    public static File indexFile(File file) {
+        return new File(file.getPath() + SUFFIX);
+    }
+
+    /**
+     * Loads the index of the sorted file. The serializer and comparator must be
+     * those the file was sorted with. If an {@link IOException} occurs it is
+     * thrown wrapped in {@link UncheckedIOException}.
+     * 
+     * @param <T>        record type
+     * @param file       sorted file written with an index
+     * @param serializer serializer of the sorted file
+     * @param comparator order of the sorted file
+     * @return index
+     */
+    public static <T> SortedIndex<T> open(File file, Serializer<T> serializer, Comparator<? super T> comparator) {
+        Preconditions.checkNotNull(file, "file cannot be null");
+        Preconditions.checkNotNull(serializer, "serializer cannot be null");
+        Preconditions.checkNotNull(comparator, "comparator cannot be null");
+        List<T> keys = new ArrayList<>();
+        List<Long> positions = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new FileInputStream(indexFile(file)))) {
+            while (true) {
+                int b = in.read();
+                if (b == -1) {
+                    break;
+                }
+                positions.add(VarInts.readUnsigned(in, b));
+                byte[] bytes = new byte[(int) VarInts.readUnsigned(in)];
+                in.readFully(bytes);
+                try (Reader<T> r = serializer.createReader(new ByteArrayInputStream(bytes))) {
+                    keys.add(r.read());
+                }
+            }
+        } catch (EOFException e) {
+            throw new UncheckedIOException(new IOException("index of " + file + " is truncated", e));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        long[] p = new long[positions.size()];
+        for (int i = 0; i < p.length; i++) {
+            p[i] = positions.get(i);
+        }
+        return new SortedIndex<T>(file, serializer, comparator, keys, p);
+    }
+
+    /**
+     * Returns a writer factory that writes a sorted file in blocks of
+     * {@code interval} records and the index of the blocks to
+     * {@code indexFile}.
+     */
+    static <T> OutputStreamWriterFactory<T> writerFactory(Serializer<T> serializer, int interval,
+            File indexFile) {
+        Preconditions.checkArgument(serializer.concatenable(),
+                "an output index needs a concatenable serializer (one without headers)");
+        return out -> new IndexingWriter<T>(serializer, interval, out, indexFile);
+    }
+
+    /**
+     * Returns the first record equal to the key (according to the comparator)
+     * if present.
+     * 
+     * @param key key to find
+     * @return first record equal to the key
+     */
+    public Optional<T> find(T key) {
+        try (Reader<T> r = from(key)) {
+            T t = r.read();
+            if (t != null && comparator.compare(t, key) == 0) {
+                return Optional.of(t);
+            } else {
+                return Optional.empty();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns a reader of the records of the file that are not less than
+     * {@code from} to the end of the file. The reader must be closed. If an
+     * {@link IOException} occurs it is thrown wrapped in
+     * {@link UncheckedIOException}.
+     * 
+     * @param from lowest record to read
+     * @return reader of the records from {@code from}
+     */
+    public Reader<T> from(T from) {
+        Preconditions.checkNotNull(from, "from cannot be null");
+        return between(from, null);
+    }
+
+    /**
+     * Returns a reader of the records of the file that are not less than
+     * {@code from} and less than {@code to}. The reader must be closed. If an
+     * {@link IOException} occurs it is thrown wrapped in
+     * {@link UncheckedIOException}.
+     * 
+     * @param from lowest record to read (inclusive)
+     * @param to   upper bound of records to read (exclusive)
+     * @return reader of the records in the range
+     */
+    public Reader<T> range(T from, T to) {
+        Preconditions.checkNotNull(from, "from cannot be null");
+        Preconditions.checkNotNull(to, "to cannot be null");
+        return between(from, to);
+    }
+
+    /**
+     * Returns the first record of each block in order.
+     */
+    List<T> keys() {
+        return Collections.unmodifiableList(keys);
+    }
+
+    /**
+     * Returns a reader of the records not less than {@code from} (or from the
+     * start if null) and less than {@code to} (or to the end if null).
+     */
+    Reader<T> between(T from, T to) {
+        Reader<T> r = open(from == null ? 0 : block(from));
+        return new Reader<T>() {
+
+            boolean started;
+            boolean finished;
+
+            @Override
+            public T read() throws IOException {
+                if (finished) {
+                    return null;
+                }
+                T t = r.read();
+                // skip the records of the block before from
+                while (!started && from != null && t != null && comparator.compare(t, from) < 0) {
+                    t = r.read();
+                }
+                started = true;
+                if (t == null || (to != null && comparator.compare(t, to) >= 0)) {
+                    finished = true;
+                    return null;
+                }
+                return t;
+            }
+
+            @Override
+            public void close() throws IOException {
+                r.close();
+            }
+        };
+    }
+
+    @VisibleForTesting
+    int blocks() {
+        return positions.length;
+    }
+
+    /**
+     * Returns the index of the block to start reading at to find the first
+     * record not less than the key. That is the last block whose first record is
+     * less than the key (an equal record may end the block before a block that
+     * starts with the key) or the first block if none.
+     */
+    private int block(T key) {
+        int lo = 0;
+        int hi = keys.size() - 1;
+        int result = 0;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (comparator.compare(keys.get(mid), key) < 0) {
+                result = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return result;
+    }
+
+    private Reader<T> open(int block) {
+        if (positions.length == 0) {
+            return new Reader<T>() {
+
+                @Override
+                public T read() {
+                    return null;
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+        try {
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            return serializer.createReader(new ChannelInputStream(channel, positions[block], Long.MAX_VALUE,
+                    READ_BUFFER_SIZE, true));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static final class IndexingWriter<T> implements Writer<T> {
+
+        private final Serializer<T> serializer;
+        private final int interval;
+        private final CountingOutputStream out;
+        private final DataOutputStream index;
+        private final ByteArrayOutputStream key = new ByteArrayOutputStream();
+        // writer of the current block
+        private Writer<T> writer;
+        private int count;
+
+        IndexingWriter(Serializer<T> serializer, int interval, OutputStream out, File indexFile) {
+            this.serializer = serializer;
+            this.interval = interval;
+            this.out = new CountingOutputStream(out);
+            try {
+                this.index = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void write(T value) throws IOException {
+            if (writer == null || count == interval) {
+                if (writer != null) {
+                    // flushes the block to out without closing it
+                    writer.close();
+                }
+                key.reset();
+                try (Writer<T> w = serializer.createWriter(key)) {
+                    w.write(value);
+                }
+                VarInts.writeUnsigned(index, out.count);
+                VarInts.writeUnsigned(index, key.size());
+                key.writeTo(index);
+                writer = serializer.createWriter(out);
+                count = 0;
+            }
+            writer.write(value);
+            count++;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            index.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (writer != null) {
+                    writer.close();
+                }
+                out.out.close();
+            } finally {
+                index.close();
+            }
+        }
+    }
+
+    /**
+     * Counts the bytes written and does not close the stream it writes to so that
+     * each block writer can be closed. Closing does not flush either because the
+     * position of a block only needs the bytes of the block before it to have
+     * been written here.
+     */
+    private static final class CountingOutputStream extends OutputStream {
+
+        final OutputStream out;
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() {
+            // out is closed by the indexing writer
+        }
+    }
+
+}
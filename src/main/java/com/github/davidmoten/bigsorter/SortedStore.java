@@ -0,0 +1,524 @@
+package com.github.davidmoten.bigsorter;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.github.davidmoten.guavamini.Preconditions;
+import com.github.davidmoten.guavamini.annotations.VisibleForTesting;
+
+/**
+ * A sorted data set that grows by adding batches. Each batch is sorted (with
+ * {@link Sorter}) into a new run in the store directory and runs are merged
+ * level by level in the manner of a log-structured merge tree: when a level
+ * has {@code runsPerLevel} runs they are merged into one run on the next level.
+ * Adding a batch therefore costs work in proportion to the batch (amortized)
+ * rather than to the whole data set. A reader merges the current runs so sees
+ * all the values added so far in sorted order.
+ *
+ * <p>
+ * Runs are files named {@code run-LEVEL-FIRST-LAST} where {@code FIRST} and
+ * {@code LAST} are the sequence numbers of the batches the run holds. A merged
+ * run is renamed into place before its inputs are deleted so if the process
+ * stops in between the inputs are recognized on the next open (their batches
+ * are covered by the merged run) and deleted.
+ *
+ * @param <T> value type
+ */
+public final class SortedStore<T> implements Closeable {
+
+    private static final Pattern RUN_NAME = Pattern.compile("run-(\\d+)-(\\d+)-(\\d+)");
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File directory;
+    private final Serializer<T> serializer;
+    private final Comparator<? super T> comparator;
+    private final int runsPerLevel;
+    private final Consumer<? super String> logger;
+    private final Optional<ExecutorService> compactor;
+
+    // guarded by this
+    private final List<Run> runs = new ArrayList<>();
+    private long nextSequence;
+    private boolean compacting;
+    private boolean closed;
+    // sequence numbers of batches being added
+    private final Set<Long> adding = new HashSet<>();
+    // failure of a background compaction not yet thrown
+    private RuntimeException compactionError;
+
+    private SortedStore(File directory, Serializer<T> serializer, Comparator<? super T> comparator,
+            int runsPerLevel, boolean backgroundCompaction, Consumer<? super String> logger) throws IOException {
+        this.directory = directory;
+        this.serializer = serializer;
+        this.comparator = comparator;
+        this.runsPerLevel = runsPerLevel;
+        this.logger = logger;
+        this.compactor = backgroundCompaction ? Optional.of(Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "big-sorter-compaction");
+            t.setDaemon(true);
+            return t;
+        })) : Optional.empty();
+        load();
+    }
+
+    /**
+     * Returns a builder of a store in the given directory. Runs already in the
+     * directory (from an earlier use of the store) are part of the store.
+     * 
+     * @param <T>        value type
+     * @param directory  directory of the runs
+     * @param serializer serializer of the runs
+     * @param comparator order of the values
+     * @return builder
+     */
+    public static <T> Builder<T> directory(File directory, Serializer<T> serializer,
+            Comparator<? super T> comparator) {
+        Preconditions.checkNotNull(directory, "directory cannot be null");
+        Preconditions.checkNotNull(serializer, "serializer cannot be null");
+        Preconditions.checkNotNull(comparator, "comparator cannot be null");
+        return new Builder<T>(directory, serializer, comparator);
+    }
+
+    public static final class Builder<T> {
+
+        private final File directory;
+        private final Serializer<T> serializer;
+        private final Comparator<? super T> comparator;
+        private int runsPerLevel = 4;
+        private boolean backgroundCompaction = true;
+        private Consumer<? super String> logger;
+
+        Builder(File directory, Serializer<T> serializer, Comparator<? super T> comparator) {
+            this.directory = directory;
+            this.serializer = serializer;
+            this.comparator = comparator;
+        }
+
+        /**
+         * Sets the number of runs on a level that are merged into one run on the
+         * next level. Default is 4.
+         * 
+         * @param runsPerLevel runs per level
+         * @return this
+         */
+        public Builder<T> runsPerLevel(int runsPerLevel) {
+            Preconditions.checkArgument(runsPerLevel >= 2, "runsPerLevel must be at least 2");
+            this.runsPerLevel = runsPerLevel;
+            return this;
+        }
+
+        /**
+         * Sets whether runs are merged on a background thread after a batch is
+         * added (the default) or before {@link SortedStore#add} returns.
+         * 
+         * @param background true to merge in the background
+         * @return this
+         */
+        public Builder<T> backgroundCompaction(boolean background) {
+            this.backgroundCompaction = background;
+            return this;
+        }
+
+        public Builder<T> logger(Consumer<? super String> logger) {
+            this.logger = logger;
+            return this;
+        }
+
+        /**
+         * Opens the store. If an {@link IOException} occurs it is thrown wrapped
+         * in {@link UncheckedIOException}.
+         * 
+         * @return store
+         */
+        public SortedStore<T> open() {
+            try {
+                return new SortedStore<T>(directory, serializer, comparator, runsPerLevel, backgroundCompaction,
+                        logger);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Sorts the batch into a new run. An empty batch adds nothing. If an
+     * {@link IOException} occurs it is thrown wrapped in
+     * {@link UncheckedIOException}. If an earlier background compaction failed
+     * its error is thrown (once) instead of adding the batch.
+     * 
+     * @param batch values to add (in any order)
+     */
+    public void add(Iterable<? extends T> batch) {
+        Preconditions.checkNotNull(batch, "batch cannot be null");
+        long sequence;
+        synchronized (this) {
+            Preconditions.checkArgument(!closed, "store is closed");
+            throwCompactionError();
+            if (!batch.iterator().hasNext()) {
+                return;
+            }
+            sequence = nextSequence++;
+            adding.add(sequence);
+        }
+        File temp = new File(directory, "batch-" + sequence + TEMP_SUFFIX);
+        try {
+            Sorter //
+                    .serializer(serializer) //
+                    .comparator(comparator) //
+                    .inputItems(batch) //
+                    .output(temp) //
+                    .tempDirectory(directory) //
+                    .sort();
+            if (temp.length() == 0) {
+                temp.delete();
+                return;
+            }
+            Run run = install(temp, 0, sequence, sequence, Collections.emptyList());
+            log("added run %s", run.file.getName());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            temp.delete();
+            synchronized (this) {
+                // an unused sequence number is a gap that merges may span
+                adding.remove(sequence);
+            }
+        }
+        if (compactor.isPresent()) {
+            compactor.get().execute(() -> {
+                try {
+                    compact();
+                } catch (RuntimeException e) {
+                    log("compaction failed: %s", e);
+                    synchronized (this) {
+                        if (compactionError == null) {
+                            compactionError = e;
+                        }
+                    }
+                }
+            });
+        } else {
+            compact();
+        }
+    }
+
+    /**
+     * Merges runs until no level has {@code runsPerLevel} runs. Called
+     * automatically after a batch is added. If an {@link IOException} occurs it
+     * is thrown wrapped in {@link UncheckedIOException}.
+     */
+    public void compact() {
+        while (true) {
+            List<Run> group;
+            synchronized (this) {
+                if (compacting) {
+                    // another thread is compacting and will pick up new runs
+                    return;
+                }
+                group = nextGroup();
+                if (group.isEmpty()) {
+                    return;
+                }
+                compacting = true;
+            }
+            try {
+                merge(group);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                synchronized (this) {
+                    compacting = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a reader of all the values in the store in sorted order. The
+     * reader sees the runs of the store when this method is called and must be
+     * closed so that runs merged away in the meantime can be deleted.
+     * 
+     * @return reader of the values in sorted order
+     */
+    public Reader<T> reader() {
+        List<Run> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(runs);
+            for (Run run : snapshot) {
+                run.references++;
+            }
+        }
+        List<Reader<T>> readers = new ArrayList<>();
+        try {
+            for (Run run : snapshot) {
+                readers.add(serializer.createReader(run.file));
+            }
+        } catch (IOException e) {
+            readers.forEach(Util::close);
+            release(snapshot);
+            throw new UncheckedIOException(e);
+        }
+        MergedReader<T> merged = new MergedReader<T>(readers, comparator);
+        return new Reader<T>() {
+
+            boolean closed;
+
+            @Override
+            public T read() throws IOException {
+                return merged.read();
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (!closed) {
+                    closed = true;
+                    try {
+                        merged.close();
+                    } finally {
+                        release(snapshot);
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns a stream of all the values in the store in sorted order (see
+     * {@link #reader()}). The stream must be closed.
+     * 
+     * @return stream of the values in sorted order
+     */
+    public Stream<T> stream() {
+        return reader().stream();
+    }
+
+    /**
+     * Waits for background compaction to finish and stops it. If a background
+     * compaction failed and its error has not been thrown by {@link #add} then it
+     * is thrown here.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        compactor.ifPresent(executor -> {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        synchronized (this) {
+            throwCompactionError();
+        }
+    }
+
+    private void throwCompactionError() {
+        RuntimeException e = compactionError;
+        if (e != null) {
+            compactionError = null;
+            throw e;
+        }
+    }
+
+    @VisibleForTesting
+    synchronized List<String> runNames() {
+        return runs.stream().map(run -> run.file.getName()).sorted().collect(Collectors.toList());
+    }
+
+    private void load() throws IOException {
+        directory.mkdirs();
+        File[] files = directory.listFiles();
+        if (files == null) {
+            throw new IOException("could not list " + directory);
+        }
+        List<Run> found = new ArrayList<>();
+        for (File file : files) {
+            Matcher m = RUN_NAME.matcher(file.getName());
+            if (m.matches()) {
+                found.add(new Run(file, Integer.parseInt(m.group(1)), Long.parseLong(m.group(2)),
+                        Long.parseLong(m.group(3))));
+            } else if (file.getName().endsWith(TEMP_SUFFIX) || file.getName().startsWith("big-sorter")) {
+                // left by an add or merge that did not complete
+                file.delete();
+            }
+        }
+        for (Run run : found) {
+            boolean covered = found //
+                    .stream() //
+                    .anyMatch(other -> other != run && other.covers(run));
+            if (covered) {
+                // the input of a merge whose output was installed
+                run.file.delete();
+            } else {
+                runs.add(run);
+                nextSequence = Math.max(nextSequence, run.last + 1);
+            }
+        }
+    }
+
+    /**
+     * Returns the first {@code runsPerLevel} runs of the lowest level that has
+     * that many runs with no other run and no batch being added between their
+     * sequence numbers, or an empty list if none. Otherwise a merged run could
+     * cover the sequence number of a run that it does not hold (which would be
+     * deleted as covered on the next open). Sequence numbers of empty or failed
+     * batches are never used so merges may span them.
+     */
+    private List<Run> nextGroup() {
+        int maxLevel = runs.stream().mapToInt(run -> run.level).max().orElse(-1);
+        for (int level = 0; level <= maxLevel; level++) {
+            int lvl = level;
+            List<Run> sorted = runs //
+                    .stream() //
+                    .filter(run -> run.level == lvl) //
+                    .sorted(Comparator.comparingLong(run -> run.first)) //
+                    .collect(Collectors.toList());
+            List<Run> group = new ArrayList<>();
+            for (Run run : sorted) {
+                if (!group.isEmpty() && !gapFree(group.get(group.size() - 1).last, run.first)) {
+                    group.clear();
+                }
+                group.add(run);
+                // merge exactly runsPerLevel runs so the shape of the levels does not
+                // depend on how far background compaction has fallen behind
+                if (group.size() == runsPerLevel) {
+                    return group;
+                }
+            }
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Returns true if no run and no batch being added has a sequence number
+     * strictly between {@code after} and {@code before}.
+     */
+    private boolean gapFree(long after, long before) {
+        for (Run run : runs) {
+            if (run.first > after && run.first < before) {
+                return false;
+            }
+        }
+        for (long sequence : adding) {
+            if (sequence > after && sequence < before) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void merge(List<Run> group) throws IOException {
+        long first = group.get(0).first;
+        long last = group.get(group.size() - 1).last;
+        int level = group.get(0).level + 1;
+        File temp = new File(directory, "merge-" + first + "-" + last + TEMP_SUFFIX);
+        List<Reader<T>> readers = new ArrayList<>();
+        for (Run run : group) {
+            readers.add(serializer.createReader(run.file));
+        }
+        try (Reader<T> reader = new MergedReader<T>(readers, comparator);
+                OutputStream out = new BufferedOutputStream(new FileOutputStream(temp));
+                Writer<T> writer = serializer.createWriter(out)) {
+            T t;
+            while ((t = reader.read()) != null) {
+                writer.write(t);
+            }
+        } catch (IOException | RuntimeException e) {
+            temp.delete();
+            throw e;
+        }
+        Run merged = install(temp, level, first, last, group);
+        log("merged %s runs into %s", group.size(), merged.file.getName());
+    }
+
+    /**
+     * Renames the temporary file to a run and replaces the given runs with it.
+     * The new run is added and the replaced runs removed in one step so that a
+     * reader never sees a merged run together with its inputs.
+     */
+    private Run install(File temp, int level, long first, long last, List<Run> replaced) throws IOException {
+        File file = new File(directory, "run-" + level + "-" + first + "-" + last);
+        // the run must be on disk before the rename because the next open deletes
+        // the runs it covers
+        Util.sync(temp);
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        Run run = new Run(file, level, first, last);
+        synchronized (this) {
+            runs.add(run);
+            runs.removeAll(replaced);
+            for (Run old : replaced) {
+                old.obsolete = true;
+                deleteIfUnused(old);
+            }
+        }
+        return run;
+    }
+
+    private synchronized void release(List<Run> snapshot) {
+        for (Run run : snapshot) {
+            run.references--;
+            deleteIfUnused(run);
+        }
+    }
+
+    private void deleteIfUnused(Run run) {
+        if (run.obsolete && run.references == 0) {
+            run.file.delete();
+        }
+    }
+
+    private void log(String msg, Object... objects) {
+        if (logger != null) {
+            logger.accept(String.format(msg, objects));
+        }
+    }
+
+    private static final class Run {
+        final File file;
+        final int level;
+        // sequence numbers of the first and last batch in the run
+        final long first;
+        final long last;
+        // number of open readers of the run, guarded by store
+        int references;
+        // true when the run has been merged into another, guarded by store
+        boolean obsolete;
+
+        Run(File file, int level, long first, long last) {
+            this.file = file;
+            this.level = level;
+            this.first = first;
+            this.last = last;
+        }
+
+        boolean covers(Run run) {
+            return first <= run.first && run.last <= last && level > run.level;
+        }
+    }
+
+}
@@ -3,6 +3,8 @@ package com.github.davidmoten.bigsorter;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -11,21 +13,26 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.text.DecimalFormat;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -36,6 +43,10 @@ import java.util.stream.Stream;
 // is java.util.ArrayList but with an extra parallelSort method that is more memory efficient 
 // that can be achieved outside the class
 import com.github.davidmoten.bigsorter.internal.ArrayList;
+import com.github.davidmoten.bigsorter.internal.BlockCompressedInputStream;
+import com.github.davidmoten.bigsorter.internal.BlockCompressedOutputStream;
+import com.github.davidmoten.bigsorter.internal.ChannelInputStream;
+import com.github.davidmoten.bigsorter.internal.MappedFileInputStream;
 import com.github.davidmoten.bigsorter.internal.ReaderFromIterator;
 import com.github.davidmoten.guavamini.Lists;
 import com.github.davidmoten.guavamini.Preconditions;
@@ -47,6 +58,9 @@ import com.github.davidmoten.guavamini.annotations.VisibleForTesting;
 // and sort() in one thread, don't seek to reuse the same Sorter object. 
 public final class Sorter<T> {
 
+    private static final int COMPRESSION_BLOCK_SIZE = 64 * 1024;
+    private static final int COMPRESSION_THREADS = Runtime.getRuntime().availableProcessors();
+
     private final List<Supplier<? extends Reader<? extends T>>> inputs;
     private final Serializer<T> serializer;
     private final File output;
@@ -55,20 +69,48 @@ public final class Sorter<T> {
     private final int maxItemsPerPart;
     private final Consumer<? super String> log;
     private final int bufferSize;
-    private final File tempDirectory;
+    private final TempStorage tempStorage;
     private final boolean unique;
     private final boolean initialSortInParallel;
     private final Optional<OutputStreamWriterFactory<T>> outputWriterFactory;
+    private final TempFileReadMode tempFileReadMode;
+    private final Optional<Codec> tempFileCodec;
+    private final long maxTempBytes;
+    private final Optional<File> jobDirectory;
     private long count = 0;
+    // present during sort() when jobDirectory is present
+    private JobManifest manifest;
+    // blobs that have been read but are still referred to by the manifest
+    private final List<TempBlob> pendingDeletes = new ArrayList<>();
+    // compresses blocks of temporary files while the sort continues, only present
+    // during sort() when tempFileCodec is present
+    private ExecutorService compressionExecutor;
 
     Sorter(List<Supplier<? extends Reader<? extends T>>> inputs, Serializer<T> serializer, File output,
             Comparator<? super T> comparator, int maxFilesPerMerge, int maxItemsPerFile, Consumer<? super String> log,
             int bufferSize, File tempDirectory, boolean unique, boolean initialSortInParallel, Optional<OutputStreamWriterFactory<T>> outputWriterFactory) {
+        this(inputs, serializer, output, comparator, maxFilesPerMerge, maxItemsPerFile, log, bufferSize,
+                TempStorage.disk(Collections.singletonList(tempDirectory), TempFilePlacement.ROUND_ROBIN), unique,
+                initialSortInParallel, outputWriterFactory, TempFileReadMode.STREAM, Optional.empty(), Long.MAX_VALUE,
+                Optional.empty());
+    }
+
+    Sorter(List<Supplier<? extends Reader<? extends T>>> inputs, Serializer<T> serializer, File output,
+            Comparator<? super T> comparator, int maxFilesPerMerge, int maxItemsPerFile, Consumer<? super String> log,
+            int bufferSize, TempStorage tempStorage, boolean unique,
+            boolean initialSortInParallel, Optional<OutputStreamWriterFactory<T>> outputWriterFactory,
+            TempFileReadMode tempFileReadMode,
+            Optional<Codec> tempFileCodec, long maxTempBytes, Optional<File> jobDirectory) {
         Preconditions.checkNotNull(inputs, "inputs cannot be null");
         Preconditions.checkNotNull(serializer, "serializer cannot be null");
-        Preconditions.checkNotNull(output, "output cannot be null");
+        // output is null when the sorted values are read with sortToReader()
         Preconditions.checkNotNull(comparator, "comparator cannot be null");
         Preconditions.checkNotNull(outputWriterFactory, "outputWriterFactory cannot be null");
+        Preconditions.checkNotNull(tempFileReadMode, "tempFileReadMode cannot be null");
+        Preconditions.checkNotNull(tempFileCodec, "tempFileCodec cannot be null");
+        Preconditions.checkNotNull(tempStorage, "tempStorage cannot be null");
+        Preconditions.checkArgument(maxTempBytes > 0, "maxTempBytes must be greater than 0");
+        Preconditions.checkNotNull(jobDirectory, "jobDirectory cannot be null");
         this.inputs = inputs;
         this.serializer = serializer;
         this.output = output;
@@ -77,10 +119,14 @@ public final class Sorter<T> {
         this.maxItemsPerPart = maxItemsPerFile;
         this.log = log;
         this.bufferSize = bufferSize;
-        this.tempDirectory = tempDirectory;
+        this.tempStorage = tempStorage;
         this.unique = unique;
         this.initialSortInParallel = initialSortInParallel;
         this.outputWriterFactory = outputWriterFactory;
+        this.tempFileReadMode = tempFileReadMode;
+        this.tempFileCodec = tempFileCodec;
+        this.maxTempBytes = maxTempBytes;
+        this.jobDirectory = jobDirectory;
     }
 
     public static <T> Builder<T> serializer(Serializer<T> serializer) {
@@ -130,11 +176,22 @@ public final class Sorter<T> {
         private int maxItemsPerFile = 100000;
         private Consumer<? super String> logger = null;
         private int bufferSize = 8192;
-        private File tempDirectory = new File(System.getProperty("java.io.tmpdir"));
+        private List<File> tempDirectories = Collections.singletonList(new File(System.getProperty("java.io.tmpdir")));
+        private TempFilePlacement tempFilePlacement = TempFilePlacement.ROUND_ROBIN;
         private Function<? super Reader<T>, ? extends Reader<? extends T>> transform = r -> r;
         private boolean unique;
         private boolean initialSortInParallel;
         private Optional<OutputStreamWriterFactory<T>> outputWriterFactory = Optional.empty();
+        private TempFileReadMode tempFileReadMode = TempFileReadMode.STREAM;
+        private Optional<Codec> tempFileCodec = Optional.empty();
+        private Optional<TempStorage> tempStorage = Optional.empty();
+        private long tempSegmentSize;
+        private long tempMemoryBytes;
+        private boolean tempMemoryOffHeap;
+        private long maxTempBytes = Long.MAX_VALUE;
+        private Optional<File> jobDirectory = Optional.empty();
+        private Optional<Serializer<T>> spillSerializer = Optional.empty();
+        private int outputIndexInterval;
 
         Builder(Serializer<T> serializer) {
             this.serializer = serializer;
@@ -389,7 +446,214 @@ public final class Sorter<T> {
         @SuppressWarnings("unchecked")
         public S tempDirectory(File directory) {
             Preconditions.checkNotNull(directory, "tempDirectory cannot be null");
-            b.tempDirectory = directory;
+            b.tempDirectories = Collections.singletonList(directory);
+            return (S) this;
+        }
+
+        /**
+         * Sets the directories that temporary files are spread across. Use a
+         * directory on each available disk to multiply the I/O bandwidth available
+         * to the sort. Where possible each merge writes its output to a disk that
+         * none of its inputs are being read from.
+         * 
+         * @param directories temporary directories, preferably on different disks
+         * @return this
+         */
+        public S tempDirectories(File... directories) {
+            Preconditions.checkNotNull(directories, "directories cannot be null");
+            return tempDirectories(Arrays.asList(directories));
+        }
+
+        /**
+         * Sets the directories that temporary files are spread across. Use a
+         * directory on each available disk to multiply the I/O bandwidth available
+         * to the sort. Where possible each merge writes its output to a disk that
+         * none of its inputs are being read from.
+         * 
+         * @param directories temporary directories, preferably on different disks
+         * @return this
+         */
+        @SuppressWarnings("unchecked")
+        public S tempDirectories(List<File> directories) {
+            Preconditions.checkNotNull(directories, "directories cannot be null");
+            Preconditions.checkArgument(!directories.isEmpty(), "directories cannot be empty");
+            for (File directory : directories) {
+                Preconditions.checkNotNull(directory, "directory cannot be null");
+            }
+            b.tempDirectories = Lists.newArrayList(directories);
+            return (S) this;
+        }
+
+        /**
+         * Sets how a directory is chosen for each new temporary file when multiple
+         * temporary directories are set. Default is
+         * {@link TempFilePlacement#ROUND_ROBIN}.
+         * 
+         * @param placement placement policy
+         * @return this
+         */
+        @SuppressWarnings("unchecked")
+        public S tempFilePlacement(TempFilePlacement placement) {
+            Preconditions.checkNotNull(placement, "placement cannot be null");
+            b.tempFilePlacement = placement;
+            return (S) this;
+        }
+
+        /**
+         * Sets how temporary files are read during the merge phase. Default is
+         * {@link TempFileReadMode#STREAM}.
+         * 
+         * @param mode the way temporary files are read
+         * @return this
+         */
+        @SuppressWarnings("unchecked")
+        public S tempFileReadMode(TempFileReadMode mode) {
+            Preconditions.checkNotNull(mode, "mode cannot be null");
+            b.tempFileReadMode = mode;
+            return (S) this;
+        }
+
+        /**
+         * Compresses temporary files (the sorted runs and intermediate merge
+         * outputs) in blocks using the given codec. Blocks are compressed on
+         * background threads so that compression overlaps with sorting and
+         * merging. Worthwhile when disk bandwidth or scratch space is the
+         * bottleneck. The final output is not compressed.
+         * 
+         * @param codec codec for example {@link Codec#lz()} or
+         *              {@link Codec#deflate()}
+         * @return this
+         */
+        @SuppressWarnings("unchecked")
+        public S tempFileCompression(Codec codec) {
+            Preconditions.checkNotNull(codec, "codec cannot be null");
+            b.tempFileCodec = Optional.of(codec);
+            return (S) this;
+        }
+
+        /**
+         * Sets where temporary data (sorted runs and intermediate merge outputs) is
+         * stored. When set the temporary directory options are ignored. Default is
+         * files in the temporary directories.
+         * 
+         * @param storage temporary storage
+         * @return this
+         */
+        @SuppressWarnings("unchecked")
+        public S tempStorage(TempStorage storage) {
+            Preconditions.checkNotNull(storage, "storage cannot be null");
+            b.tempStorage = Optional.of(storage);
+            return (S) this;
+        }
+
+        /**
+         * Limits the temporary space used by the sort. Merges are planned so the
+         * limit is not exceeded and the sort fails early with an estimate of the
+         * space needed (rather than filling the volume) when the limit is too
+         * small. The final merge writes directly to the output so only
+         * intermediate merges need space beyond the sorted runs themselves.
+         * Default is no limit.
+         * 
+         * @param maxBytes maximum number of bytes of temporary data
+         * @return this
+         */
+        @SuppressWarnings("unchecked")
+        public S maxTempBytes(long maxBytes) {
+            Preconditions.checkArgument(maxBytes > 0, "maxTempBytes must be greater than 0");
+            b.maxTempBytes = maxBytes;
+            return (S) this;
+        }
+
+        /**
+         * Makes the sort resumable. Sorted runs and merge outputs are kept in the
+         * given directory and registered in a manifest there as they complete. If
+         * the sort is stopped (the process is killed for example) then running the
+         * same sort again with the same job directory carries on from the last
+         * completed run or merge instead of starting again. Input already read into
+         * runs is skipped (it is still read but not sorted again) so the input and
+         * the sort options must be the same as for the first attempt. The job
+         * directory is used for all temporary data and the other temporary storage
+         * options are ignored. Runs are kept until the manifest no longer refers to
+         * them so a merge needs space for its inputs and its output at the same
+         * time. If the sort fails because {@code maxTempBytes} is exceeded the runs
+         * in the manifest are kept so the sort can be run again with a larger
+         * budget.
+         * 
+         * @param directory job directory
+         * @return this
+         */
+        @SuppressWarnings("unchecked")
+        public S jobDirectory(File directory) {
+            Preconditions.checkNotNull(directory, "directory cannot be null");
+            b.jobDirectory = Optional.of(directory);
+            return (S) this;
+        }
+
+        /**
+         * Appends temporary data to segment files of the given size in the
+         * temporary directories instead of creating a file for every sorted run and
+         * merge output. A large sort then creates a handful of files rather than
+         * thousands which helps on file systems where creating and deleting files
+         * is expensive.
+         * 
+         * @param segmentSize size in bytes of each segment file (for example 1GB)
+         * @return this
+         */
+        @SuppressWarnings("unchecked")
+        public S tempSegmentSize(long segmentSize) {
+            Preconditions.checkArgument(segmentSize > 0, "segmentSize must be greater than 0");
+            b.tempSegmentSize = segmentSize;
+            return (S) this;
+        }
+
+        /**
+         * Holds temporary data in heap memory up to the given number of bytes
+         * before writing it to the temporary storage. A sort whose temporary data
+         * fits in the budget does not touch the file system until the output is
+         * written.
+         * 
+         * @param maxBytes maximum number of bytes of temporary data held in memory
+         * @return this
+         */
+        public S tempMemory(long maxBytes) {
+            return tempMemory(maxBytes, false);
+        }
+
+        /**
+         * Holds temporary data in memory up to the given number of bytes before
+         * writing it to the temporary storage. A sort whose temporary data fits in
+         * the budget does not touch the file system until the output is written.
+         * 
+         * @param maxBytes maximum number of bytes of temporary data held in memory
+         * @param offHeap  if true the memory is allocated outside the Java heap
+         *                 (direct memory, limited by
+         *                 {@code -XX:MaxDirectMemorySize}) so a large budget does
+         *                 not add to garbage collection work
+         * @return this
+         */
+        @SuppressWarnings("unchecked")
+        public S tempMemory(long maxBytes, boolean offHeap) {
+            Preconditions.checkArgument(maxBytes >= 0, "maxBytes cannot be negative");
+            b.tempMemoryBytes = maxBytes;
+            b.tempMemoryOffHeap = offHeap;
+            return (S) this;
+        }
+
+        /**
+         * Sets the serializer used for temporary files. The input is still read
+         * and the output still written with the main serializer but sorted runs
+         * and intermediate merges use this serializer. A compact binary format
+         * (like {@link Serializer#csvBinary()} or {@link Serializer#jsonBinary()})
+         * avoids formatting and parsing text on every merge pass and usually takes
+         * less temporary space.
+         * 
+         * @param serializer serializer for temporary files
+         * @return this
+         */
+        @SuppressWarnings("unchecked")
+        public S spillSerializer(Serializer<T> serializer) {
+            Preconditions.checkNotNull(serializer, "serializer cannot be null");
+            b.spillSerializer = Optional.of(serializer);
             return (S) this;
         }
         
@@ -409,6 +673,26 @@ public final class Sorter<T> {
             return this;
         }
         
+        /**
+         * Writes a sparse index of the output to a file next to it (see
+         * {@link SortedIndex#indexFile(File)}) holding the first record of every
+         * {@code interval} records and its position in the output. Open the index
+         * with {@link SortedIndex#open(File, Serializer, Comparator)} to look up
+         * records or ranges of records without reading the output from the start.
+         * The serializer must be concatenable and the option cannot be used with
+         * {@link #outputMapper(OutputStreamWriterFactory, Function)}.
+         * 
+         * @param interval number of records between index entries
+         * @return this
+         */
+        public Builder4<T> outputIndex(int interval) {
+            Preconditions.checkArgument(interval > 0, "interval must be greater than 0");
+            Preconditions.checkArgument(b.serializer.concatenable(),
+                    "an output index needs a concatenable serializer (one without headers)");
+            b.outputIndexInterval = interval;
+            return this;
+        }
+
         // TODO add flatMap method, stream transforms?
 
         /**
@@ -417,19 +701,66 @@ public final class Sorter<T> {
          * {@link UncheckedIOException}.
          */
         public void sort() {
-            Sorter<T> sorter = new Sorter<T>(inputs(b), b.serializer, b.output, b.comparator,
-                    b.maxFilesPerMerge, b.maxItemsPerFile, b.logger, b.bufferSize, b.tempDirectory,
-                    b.unique, b.initialSortInParallel, b.outputWriterFactory);
+            Sorter<T> sorter = create(b);
+            if (b.outputIndexInterval == 0) {
+                // an index left by an earlier sort to the same output would be stale
+                SortedIndex.indexFile(b.output).delete();
+            }
             try {
                 sorter.sort();
             } catch (IOException e) {
                 b.output.delete();
+                if (b.outputIndexInterval > 0) {
+                    SortedIndex.indexFile(b.output).delete();
+                }
                 throw new UncheckedIOException(e);
             }
         }
 
     }
 
+    private static <T> Sorter<T> create(Builder<T> b) {
+        Optional<Serializer<T>> spillSerializer = b.spillSerializer;
+        if (!spillSerializer.isPresent() && b.serializer instanceof DataSerializer) {
+            spillSerializer = ((DataSerializer<T>) b.serializer).sortedRunSerializer();
+        }
+        // with a spill serializer the sorter works with the spill format and the
+        // output is written with the main serializer as a writer factory
+        Optional<OutputStreamWriterFactory<T>> outputWriterFactory = b.outputWriterFactory;
+        if (b.outputIndexInterval > 0) {
+            Preconditions.checkArgument(!outputWriterFactory.isPresent(),
+                    "outputIndex cannot be used with outputMapper");
+            // the output is written in blocks that start with a new writer
+            outputWriterFactory = Optional.of(SortedIndex.writerFactory(b.serializer, b.outputIndexInterval,
+                    SortedIndex.indexFile(b.output)));
+        } else if (!outputWriterFactory.isPresent() && spillSerializer.isPresent()) {
+            outputWriterFactory = Optional.of(b.serializer);
+        }
+        return new Sorter<T>(inputs(b), spillSerializer.orElse(b.serializer), b.output, b.comparator,
+                b.maxFilesPerMerge, b.maxItemsPerFile, b.logger, b.bufferSize, tempStorage(b), b.unique,
+                b.initialSortInParallel, outputWriterFactory, b.tempFileReadMode, b.tempFileCodec,
+                b.maxTempBytes, b.jobDirectory);
+    }
+
+    private static TempStorage tempStorage(Builder<?> b) {
+        if (b.jobDirectory.isPresent()) {
+            // runs must survive the process so memory and segments are not used
+            return TempStorage.disk(Collections.singletonList(b.jobDirectory.get()), TempFilePlacement.ROUND_ROBIN);
+        }
+        TempStorage storage = b.tempStorage.orElseGet(() -> {
+            if (b.tempSegmentSize > 0) {
+                return TempStorage.segmented(b.tempDirectories, b.tempSegmentSize);
+            } else {
+                return TempStorage.disk(b.tempDirectories, b.tempFilePlacement);
+            }
+        });
+        if (b.tempMemoryBytes > 0) {
+            return TempStorage.memory(b.tempMemoryBytes, b.tempMemoryOffHeap, storage);
+        } else {
+            return storage;
+        }
+    }
+
     @SuppressWarnings("unchecked")
     private static <T> List<Supplier<? extends Reader<? extends T>>> inputs(Builder<T> b) {
         return b.inputs //
@@ -460,35 +791,41 @@ public final class Sorter<T> {
         }
 
         /**
-         * Sorts the input and writes the result to the output file. The items in the
-         * output file are returned as a Stream. The Stream must be closed (it is
-         * AutoCloseable) to avoid consuming unnecessary disk space with many calls.
-         * When the Stream is closed the output file is deleted. When a
-         * {@link IOException} occurs it is thrown wrapped in a
-         * {@link UncheckedIOException}.
+         * Sorts the input and returns the sorted items as a Stream. The input is
+         * read into sorted runs before this method returns and the last merge of
+         * the runs happens as the Stream is consumed (no output file is written).
+         * The Stream must be closed (it is AutoCloseable) to avoid consuming
+         * unnecessary disk space with many calls. When the Stream is closed the
+         * remaining runs are deleted. When a {@link IOException} occurs it is
+         * thrown wrapped in a {@link UncheckedIOException}.
          * 
          * <p>
          * Note that a terminal operation (like {@code .count()} for example) does NOT
          * close the Stream. You should assign the Stream to a variable in a
-         * try-catch-with-resources block to ensure the output file is deleted.
+         * try-catch-with-resources block to ensure the temporary files are deleted.
          * 
-         * @return stream that on close deletes the output file of the sort
+         * @return stream that on close deletes the remaining temporary files of the sort
          */
         public Stream<T> sort() {
+            return sortToReader().stream();
+        }
+
+        /**
+         * Sorts the input and returns a reader of the sorted values. The input is
+         * read into sorted runs before this method returns but the last merge of
+         * the runs happens as the reader is read so no output file is written.
+         * The reader must be closed to delete the remaining runs if it is not read
+         * to the end. When a {@link IOException} occurs it is thrown wrapped in a
+         * {@link UncheckedIOException}.
+         * 
+         * @return reader of the sorted values
+         */
+        public Reader<T> sortToReader() {
             try {
-                b.output = nextTempFile(b.tempDirectory);
-                Sorter<T> sorter = new Sorter<T>(inputs(b), b.serializer, b.output, b.comparator,
-                        b.maxFilesPerMerge, b.maxItemsPerFile, b.logger, b.bufferSize, b.tempDirectory,
-                        b.unique, b.initialSortInParallel, b.outputWriterFactory);
-                sorter.sort();
-                return b.serializer //
-                        .createReader(b.output) //
-                        .stream() //
-                        .onClose(() -> b.output.delete());
+                return create(b).sortToReader();
             } catch (Throwable e) {
-                b.output.delete();
                 throw Util.toRuntimeException(e);
-            } 
+            }
         }
 
     }
@@ -516,20 +853,96 @@ public final class Sorter<T> {
     ///////////////////////
     
     private File sort() throws IOException {
+        Preconditions.checkNotNull(output, "output cannot be null");
+        startCompression();
+        try {
+            return sortWithoutCleanup();
+        } finally {
+            stopCompression();
+        }
+    }
+
+    /**
+     * Sorts the input into runs and merges them until one merge pass remains.
+     * That last pass happens as the returned reader is read so the sorted values
+     * are not written to an output file and read back. Closing the reader before
+     * the end deletes the remaining runs (unless there is a job directory in
+     * which case a later sort resumes from them).
+     * 
+     * @return reader of the sorted values
+     * @throws IOException on I/O failure
+     */
+    private Reader<T> sortToReader() throws IOException {
+        startCompression();
+        try {
+            long time = System.currentTimeMillis();
+            List<Run<T>> runs = reduce(split(time));
+            log("merging %s files as the output is read", runs.size());
+            return new MergingReader(sections(runs), time);
+        } finally {
+            stopCompression();
+        }
+    }
+
+    private void startCompression() {
+        if (tempFileCodec.isPresent()) {
+            compressionExecutor = Executors.newFixedThreadPool(COMPRESSION_THREADS, r -> {
+                Thread t = new Thread(r, "big-sorter-compression");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
 
-        tempDirectory.mkdirs();
+    private void stopCompression() {
+        if (compressionExecutor != null) {
+            compressionExecutor.shutdownNow();
+            compressionExecutor = null;
+        }
+    }
 
-        // read the input into sorted small files
+    private File sortWithoutCleanup() throws IOException {
         long time = System.currentTimeMillis();
+        writeOutput(reduce(split(time)));
+        finish(time);
+        return output;
+    }
+
+    /**
+     * Reads the input into sorted runs (carrying on from the job directory if
+     * there is one).
+     */
+    private List<Run<T>> split(long time) throws IOException {
         count = 0;
-        List<File> files = new ArrayList<>();
+        List<Run<T>> runs = new ArrayList<>();
         log("starting sort");
         log("unique = " + unique);
+
+        boolean splitComplete = false;
+        if (jobDirectory.isPresent()) {
+            manifest = JobManifest.open(jobDirectory.get());
+            for (JobManifest.Entry entry : manifest.entries()) {
+                runs.add(new Run<T>(new DiskTempStorage.FileBlob(new File(jobDirectory.get(), entry.name)),
+                        decode(entry.min), decode(entry.max), entry.count, entry.bytes));
+            }
+            count = manifest.records();
+            splitComplete = manifest.splitComplete();
+            if (!runs.isEmpty()) {
+                log("resuming with %s runs from job directory, split complete=%s", runs.size(), splitComplete);
+            }
+        }
         
         int i = 0;
+        // input records already in runs from a previous attempt
+        long skip = count;
+        long tempBytes = runs.stream().mapToLong(run -> run.bytes).sum();
         ArrayList<T> list = new ArrayList<>();
-        for (Supplier<? extends Reader<? extends T>> supplier: inputs) {
+        List<Supplier<? extends Reader<? extends T>>> remaining = splitComplete ? Collections.emptyList() : inputs;
+        for (Supplier<? extends Reader<? extends T>> supplier: remaining) {
             try (Reader<? extends T> reader = supplier.get()) {
+                if (skip > 0) {
+                    skip -= reader.skip(skip);
+                }
                 while (true) {
                     T t = reader.read();
                     if (t != null) {
@@ -539,9 +952,19 @@ public final class Sorter<T> {
                     if (t == null || i == maxItemsPerPart) {
                         i = 0;
                         if (list.size() > 0) {
-                            File f = sortAndWriteToFile(list);
-                            files.add(f);
+                            Run<T> run = sortAndWriteToFile(list);
+                            runs.add(run);
+                            if (manifest != null) {
+                                manifest.appendRun(entry(run), count);
+                            }
                             list.clear();
+                            tempBytes += run.bytes;
+                            if (tempBytes > maxTempBytes) {
+                                deleteUnrecorded(runs);
+                                throw new IOException("sorted runs of the input reached " + tempBytes
+                                        + " bytes which exceeds maxTempBytes of " + maxTempBytes
+                                        + " bytes, increase maxTempBytes or compress temporary files");
+                            }
                         }
                     }
                     if (t == null) {
@@ -553,146 +976,665 @@ public final class Sorter<T> {
         log("completed initial split and sort, starting merge, elapsed time="
                 + (System.currentTimeMillis() - time) / 1000.0 + "s");
 
-        // TODO write final merge to final output to avoid possible copying at the end
-        // (and apply outputWriterfactory on the fly if present)
-        File result = merge(files);
-        if (outputWriterFactory.isPresent()) {
-            Util.convert(result, serializer, output, outputWriterFactory.get(), x -> x);
-        } else {
-            Files.move( //
-                    result.toPath(), //
-                    output.toPath(), //
-                    StandardCopyOption.REPLACE_EXISTING);
+        checkpoint(runs);
+        return runs;
+    }
+
+    private void finish(long time) throws IOException {
+        checkpoint(Collections.emptyList());
+        if (manifest != null) {
+            manifest.delete();
+            manifest = null;
         }
         log("sort of " + count + " records completed in "
                 + (System.currentTimeMillis() - time) / 1000.0 + "s");
-        return output;
+    }
+
+    /**
+     * Merges the last runs as values are read.
+     */
+    private final class MergingReader implements Reader<T> {
+
+        private final Iterator<List<Run<T>>> sections;
+        private final long time;
+        // runs of the current section that have values left
+        private final PriorityQueue<State<T>> q = new PriorityQueue<>(
+                (x, y) -> comparator.compare(x.value, y.value));
+        private T last;
+        private boolean finished;
+        private boolean closed;
+
+        MergingReader(List<List<Run<T>>> sections, long time) {
+            this.sections = sections.iterator();
+            this.time = time;
+        }
+
+        @Override
+        public T read() throws IOException {
+            while (true) {
+                if (q.isEmpty()) {
+                    if (finished || !sections.hasNext()) {
+                        if (!finished) {
+                            finished = true;
+                            finish(time);
+                        }
+                        return null;
+                    }
+                    for (Run<T> run : sections.next()) {
+                        q.add(createState(run.blob));
+                    }
+                    continue;
+                }
+                State<T> state = q.poll();
+                T value = state.value;
+                // values are handed to the caller so are not reused
+                state.value = state.reader.readAutoClosing();
+                if (state.value != null) {
+                    q.offer(state);
+                } else {
+                    release(state.blob);
+                }
+                if (!unique || last == null || comparator.compare(value, last) != 0) {
+                    last = value;
+                    return value;
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (State<T> state : q) {
+                state.reader.close();
+            }
+            if (!finished && manifest == null) {
+                for (State<T> state : q) {
+                    state.blob.delete();
+                }
+                while (sections.hasNext()) {
+                    for (Run<T> run : sections.next()) {
+                        run.blob.delete();
+                    }
+                }
+            }
+            q.clear();
+        }
     }
 
     @VisibleForTesting
     File merge(List<File> files) {
-        // merge the files in chunks repeatedly until only one remains
-        // TODO make a better guess at the chunk size so groups are more even
+        // no metadata is known for the given files so every file will be treated as
+        // overlapping every other file
         try {
-            while (files.size() > 1) {
-                List<File> nextRound = new ArrayList<>();
-                for (int i = 0; i < files.size(); i += maxFilesPerMerge) {
-                    File merged = mergeGroup(
-                            files.subList(i, Math.min(files.size(), i + maxFilesPerMerge)));
-                    nextRound.add(merged);
-                }
-                files = nextRound;
-            }
-            File result;
-            if (files.isEmpty()) {
-                output.delete();
-                output.createNewFile();
-                result = output;
+            List<Run<T>> runs = reduce(files //
+                    .stream() //
+                    .map(file -> new Run<T>(new DiskTempStorage.FileBlob(file), null, null, -1, file.length())) //
+                    .collect(Collectors.toList()));
+            if (runs.isEmpty()) {
+                return tempStorage.create(Collections.emptyList()).file().get();
             } else {
-                result = files.get(0);
+                return mergeSections(sections(runs)).blob.file().get();
             }
-            return result;
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
     }
 
-    private File mergeGroup(List<File> list) throws IOException {
-        log("merging %s files", list.size());
-        if (list.size() == 1) {
-            return list.get(0);
+    /**
+     * Merges runs into temporary storage until the remaining runs can be merged
+     * to the output in one pass. Runs are only merged with runs of the same
+     * section (see {@link #sections(List)}) and the smallest runs of a section
+     * are merged first so that the temporary space needed by each merge is as
+     * small as possible.
+     * 
+     * @param runs sorted runs
+     * @return runs that can be merged in one pass
+     * @throws IOException on I/O failure or if the merges would use more than
+     *                     {@code maxTempBytes} of temporary space
+     */
+    private List<Run<T>> reduce(List<Run<T>> runs) throws IOException {
+        runs = new ArrayList<>(runs);
+        long tempBytes = runs.stream().mapToLong(run -> run.bytes).sum();
+        long largestGroup = largestPlannedGroup(runs);
+        if (tempBytes + largestGroup > maxTempBytes) {
+            throw tempSpaceExceeded(runs, tempBytes, largestGroup);
+        }
+        while (true) {
+            // merge within a section so that the merged run does not span the key
+            // ranges of other sections (which could then no longer be concatenated)
+            Optional<List<Run<T>>> section = sections(runs) //
+                    .stream() //
+                    .filter(x -> x.size() > maxFilesPerMerge) //
+                    .findFirst();
+            if (!section.isPresent()) {
+                break;
+            }
+            List<Run<T>> sorted = section.get() //
+                    .stream() //
+                    .sorted(Comparator.comparingLong(run -> run.bytes)) //
+                    .collect(Collectors.toList());
+            int k = groupSize(sorted.stream().map(run -> run.bytes).collect(Collectors.toList()), tempBytes);
+            List<Run<T>> group = sorted.subList(0, k);
+            long groupBytes = group.stream().mapToLong(run -> run.bytes).sum();
+            if (tempBytes + groupBytes > maxTempBytes) {
+                throw tempSpaceExceeded(runs, tempBytes, groupBytes);
+            }
+            Run<T> merged = mergeSections(sections(group));
+            runs.removeAll(group);
+            runs.add(merged);
+            checkpoint(runs);
+            tempBytes += merged.bytes - groupBytes;
+        }
+        return runs;
+    }
+
+    /**
+     * Returns the number of runs to merge next given the sizes of the runs in
+     * ascending order. Merging just enough runs that the rest can be merged
+     * with a full group makes the most of each pass. Fewer runs are merged when
+     * the output would not fit in the temporary space limit.
+     */
+    private int groupSize(List<Long> ascendingBytes, long tempBytes) {
+        int n = ascendingBytes.size();
+        int k = Math.min(maxFilesPerMerge, n - maxFilesPerMerge + 1);
+        while (k > 2 && tempBytes + sum(ascendingBytes, k) > maxTempBytes) {
+            k--;
+        }
+        return k;
+    }
+
+    private static long sum(List<Long> values, int n) {
+        long total = 0;
+        for (int i = 0; i < n; i++) {
+            total += values.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Returns the estimated size of the largest intermediate merge that will be
+     * needed. Assumes the output of a merge is the same size as its inputs and
+     * that runs overlap (non-overlapping runs can only need fewer merges).
+     */
+    private long largestPlannedGroup(List<Run<T>> runs) {
+        if (maxTempBytes == Long.MAX_VALUE) {
+            return 0;
+        }
+        List<Long> sizes = runs.stream().map(run -> run.bytes).sorted().collect(Collectors.toList());
+        long tempBytes = sum(sizes, sizes.size());
+        long largestGroup = 0;
+        while (sizes.size() > maxFilesPerMerge) {
+            int k = groupSize(sizes, tempBytes);
+            long groupBytes = sum(sizes, k);
+            largestGroup = Math.max(largestGroup, groupBytes);
+            sizes = new ArrayList<>(sizes.subList(k, sizes.size()));
+            int index = Collections.binarySearch(sizes, groupBytes);
+            sizes.add(index < 0 ? -index - 1 : index, groupBytes);
+        }
+        return largestGroup;
+    }
+
+    /**
+     * Records the runs in the manifest (when there is a job directory) and then
+     * deletes the blobs that have been read.
+     */
+    private void checkpoint(List<Run<T>> runs) throws IOException {
+        if (manifest != null) {
+            List<JobManifest.Entry> entries = new ArrayList<>();
+            for (Run<T> run : runs) {
+                entries.add(entry(run));
+            }
+            manifest.replace(entries, true);
+        }
+        pendingDeletes.forEach(TempBlob::delete);
+        pendingDeletes.clear();
+    }
+
+    /**
+     * Deletes the runs that the manifest does not refer to so that a job that
+     * fails (for example on exceeding {@code maxTempBytes}) can be resumed
+     * without redoing completed work.
+     */
+    private void deleteUnrecorded(List<Run<T>> runs) {
+        for (Run<T> run : runs) {
+            if (manifest == null || !manifest.contains(run.blob.file().get().getName())) {
+                run.blob.delete();
+            }
+        }
+    }
+
+    /**
+     * Deletes a blob that has been read, or when there is a job directory, once
+     * the manifest no longer refers to it.
+     */
+    private void release(TempBlob blob) {
+        if (manifest == null) {
+            blob.delete();
+        } else {
+            pendingDeletes.add(blob);
+        }
+    }
+
+    private JobManifest.Entry entry(Run<T> run) throws IOException {
+        return new JobManifest.Entry(run.blob.file().get().getName(), run.count, run.bytes, encode(run.min),
+                encode(run.max));
+    }
+
+    private String encode(T t) throws IOException {
+        if (t == null) {
+            return "-";
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (Writer<T> writer = serializer.createWriter(bytes)) {
+            writer.write(t);
+        }
+        return Base64.getEncoder().encodeToString(bytes.toByteArray());
+    }
+
+    private T decode(String s) throws IOException {
+        if (s.equals("-")) {
+            return null;
+        }
+        try (Reader<T> reader = serializer.createReader(new ByteArrayInputStream(Base64.getDecoder().decode(s)))) {
+            return reader.read();
+        }
+    }
+
+    private IOException tempSpaceExceeded(List<Run<T>> runs, long tempBytes, long groupBytes) {
+        deleteUnrecorded(runs);
+        return new IOException("merging needs an estimated " + (tempBytes + groupBytes)
+                + " bytes of temporary space (" + tempBytes + " bytes of sorted runs plus " + groupBytes
+                + " bytes for the largest intermediate merge) which exceeds maxTempBytes of " + maxTempBytes
+                + " bytes, increase maxTempBytes or maxFilesPerMerge");
+    }
+
+    /**
+     * Merges the runs (that must fit in one pass) to the output.
+     */
+    private void writeOutput(List<Run<T>> runs) throws IOException {
+        if (outputWriterFactory.isPresent()) {
+            // records change format on the way to the output so every record is read
+            try (Writer<T> writer = outputWriterFactory.get().createWriter(output)) {
+                for (List<Run<T>> section : sections(runs)) {
+                    mergeGroup(section, writer);
+                }
+            }
+        } else if (runs.isEmpty()) {
+            new FileOutputStream(output).close();
+        } else if (runs.size() == 1) {
+            Run<T> run = runs.get(0);
+            if (!tempFileCodec.isPresent() && run.blob.file().isPresent() && manifest == null) {
+                Files.move( //
+                        run.blob.file().get().toPath(), //
+                        output.toPath(), //
+                        StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                // decompress or copy from memory to the output
+                try (InputStream in = openTempFile(run.blob);
+                        OutputStream out = new FileOutputStream(output)) {
+                    copy(in, out);
+                }
+                release(run.blob);
+            }
+        } else {
+            List<List<Run<T>>> sections = sections(runs);
+            log("merging %s files in %s non-overlapping sections", runs.size(), sections.size());
+            try (FileOutputStream fos = new FileOutputStream(output);
+                    OutputStream out = new BufferedOutputStream(fos, bufferSize);
+                    Writer<T> writer = serializer.createWriter(out)) {
+                writeSections(sections, fos, out, writer, !tempFileCodec.isPresent());
+            }
+        }
+    }
+
+    /**
+     * Returns the runs partitioned into sections ordered by key where the runs of
+     * a section must be merged but each section can be written after the one
+     * before it without comparing records. If the serializer is not concatenable
+     * or the key range of a run is not known then a single section is returned.
+     * 
+     * @param runs runs to partition
+     * @return sections of overlapping runs in key order
+     */
+    private List<List<Run<T>>> sections(List<Run<T>> runs) {
+        if (!serializer.concatenable() || runs.stream().anyMatch(run -> run.min == null)) {
+            return Collections.singletonList(runs);
         }
+        List<Run<T>> sorted = new ArrayList<>(runs);
+        sorted.sort((x, y) -> comparator.compare(x.min, y.min));
+        List<List<Run<T>>> sections = new ArrayList<>();
+        List<Run<T>> section = null;
+        T sectionMax = null;
+        for (Run<T> run : sorted) {
+            if (section != null && overlaps(sectionMax, run.min)) {
+                section.add(run);
+                if (comparator.compare(run.max, sectionMax) > 0) {
+                    sectionMax = run.max;
+                }
+            } else {
+                section = new ArrayList<>();
+                section.add(run);
+                sections.add(section);
+                sectionMax = run.max;
+            }
+        }
+        return sections;
+    }
+
+    private boolean overlaps(T max, T min) {
+        int c = comparator.compare(min, max);
+        // when unique a shared boundary value must go through the merge so that it
+        // is only written once
+        return c < 0 || (c == 0 && unique);
+    }
+
+    private Run<T> mergeSections(List<List<Run<T>>> sections) throws IOException {
+        if (sections.size() == 1 && sections.get(0).size() == 1) {
+            return sections.get(0).get(0);
+        }
+        int files = sections.stream().mapToInt(List::size).sum();
+        log("merging %s files in %s non-overlapping sections", files, sections.size());
+        TempBlob output = tempStorage.create(sections //
+                .stream() //
+                .flatMap(List::stream) //
+                .map(run -> run.blob) //
+                .collect(Collectors.toList()));
+        long count;
+        try (OutputStream raw = output.openOutput();
+                OutputStream out = tempOutput(raw);
+                Writer<T> writer = serializer.createWriter(out)) {
+            count = writeSections(sections, raw, out, writer, true);
+        }
+        T min = null;
+        T max = null;
+        if (sections.stream().flatMap(List::stream).allMatch(run -> run.min != null)) {
+            min = sections.get(0).stream().map(run -> run.min).min(comparator).get();
+            max = sections.get(sections.size() - 1).stream().map(run -> run.max).max(comparator).get();
+        }
+        return new Run<T>(output, min, max, count, output.length());
+    }
+
+    /**
+     * Writes the sections in order deleting each run once it has been read.
+     * 
+     * @param sections sections of overlapping runs in key order
+     * @param raw      stream that {@code out} writes to
+     * @param out      stream that {@code writer} writes to
+     * @param writer   writer of records
+     * @param rawCopy  if true {@code raw} is in the format of temporary data so a
+     *                 run on its own can be appended without decompressing it
+     * @return number of records written
+     * @throws IOException on I/O failure
+     */
+    private long writeSections(List<List<Run<T>>> sections, OutputStream raw, OutputStream out, Writer<T> writer,
+            boolean rawCopy) throws IOException {
+        long count = 0;
+        for (List<Run<T>> section : sections) {
+            if (section.size() == 1) {
+                Run<T> run = section.get(0);
+                // bring the output up to date before appending to it
+                writer.flush();
+                if (!rawCopy) {
+                    try (InputStream in = openTempFile(run.blob)) {
+                        copy(in, out);
+                    }
+                } else if (raw instanceof FileOutputStream && run.blob.file().isPresent()) {
+                    transfer(run.blob.file().get(), ((FileOutputStream) raw).getChannel());
+                } else {
+                    try (InputStream in = run.blob.openInput()) {
+                        copy(in, raw);
+                    }
+                }
+                release(run.blob);
+                count += run.count;
+            } else if (serializer.recordLayout().isPresent()) {
+                writer.flush();
+                count += mergeGroupRaw(section, serializer.recordLayout().get(), out);
+            } else {
+                count += mergeGroup(section, writer);
+            }
+        }
+        return count;
+    }
+
+    private static void transfer(File file, FileChannel out) throws IOException {
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+        }
+    }
+
+    private void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[bufferSize];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+    }
+
+    private long mergeGroup(List<Run<T>> list, Writer<T> writer) throws IOException {
         List<State<T>> states = new ArrayList<>();
-        for (File f : list) {
-            State<T> st = createState(f);
+        for (Run<T> run : list) {
+            State<T> st = createState(run.blob);
             // note that st.value will be present otherwise the file would be empty
             // and an empty file would not be passed to this method
             states.add(st);
         }
-        File output = nextTempFile();
-        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(output), bufferSize);
-                Writer<T> writer = serializer.createWriter(out)) {
-            PriorityQueue<State<T>> q = new PriorityQueue<>(
-                    (x, y) -> comparator.compare(x.value, y.value));
-            q.addAll(states);
-            T last = null;
-            while (!q.isEmpty()) {
-                State<T> state = q.poll();
-                if (!unique || last == null || comparator.compare(state.value, last) != 0) {
-                    writer.write(state.value);
+        PriorityQueue<State<T>> q = new PriorityQueue<>(
+                (x, y) -> comparator.compare(x.value, y.value));
+        q.addAll(states);
+        T last = null;
+        long count = 0;
+        while (!q.isEmpty()) {
+            State<T> state = q.poll();
+            // a value that nothing refers to any more which the reader may reuse
+            T spare;
+            if (!unique || last == null || comparator.compare(state.value, last) != 0) {
+                writer.write(state.value);
+                if (unique) {
+                    spare = last;
                     last = state.value;
-                }
-                state.value = state.reader.readAutoClosing();
-                if (state.value != null) {
-                    q.offer(state);
                 } else {
-                    // delete intermediate files
-                    state.file.delete();
+                    spare = state.value;
+                }
+                count++;
+            } else {
+                spare = state.value;
+            }
+            state.value = state.reader.readInto(spare);
+            if (state.value != null) {
+                q.offer(state);
+            } else {
+                state.reader.close();
+                // delete intermediate files
+                release(state.blob);
+            }
+        }
+        // TODO if an IOException occurs then we should attempt to close and delete
+        // temporary files
+        return count;
+    }
+
+    private long mergeGroupRaw(List<Run<T>> list, RecordLayout layout, OutputStream out) throws IOException {
+        PriorityQueue<RawState> q = new PriorityQueue<>(
+                (x, y) -> layout.compareKeys(x.record, x.length, y.record, y.length));
+        for (Run<T> run : list) {
+            RawState st = new RawState(run.blob, openTempFile(run.blob), layout);
+            if (st.next()) {
+                q.offer(st);
+            }
+        }
+        byte[] last = null;
+        int lastLength = 0;
+        long count = 0;
+        while (!q.isEmpty()) {
+            RawState state = q.poll();
+            if (!unique || last == null || layout.compareKeys(state.record, state.length, last, lastLength) != 0) {
+                out.write(state.record, 0, state.length);
+                count++;
+                if (unique) {
+                    // the record array of the state is reused so take a copy
+                    if (last == null || last.length < state.length) {
+                        last = new byte[state.record.length];
+                    }
+                    System.arraycopy(state.record, 0, last, 0, state.length);
+                    lastLength = state.length;
                 }
             }
-            // TODO if an IOException occurs then we should attempt to close and delete
-            // temporary files
+            if (state.next()) {
+                q.offer(state);
+            } else {
+                state.in.close();
+                // delete intermediate files
+                release(state.blob);
+            }
         }
-        return output;
+        return count;
     }
 
-    private State<T> createState(File f) throws IOException {
-        InputStream in = openFile(f, bufferSize);
+    private State<T> createState(TempBlob blob) throws IOException {
+        InputStream in = openTempFile(blob);
         Reader<T> reader = serializer.createReader(in);
         T t = reader.readAutoClosing();
-        return new State<T>(f, reader, t);
+        return new State<T>(blob, reader, t);
+    }
+
+    private InputStream openTempFile(TempBlob blob) throws IOException {
+        InputStream in;
+        Optional<File> file = blob.file();
+        if (file.isPresent() && tempFileReadMode == TempFileReadMode.MEMORY_MAPPED) {
+            in = new MappedFileInputStream(file.get());
+        } else if (file.isPresent() && tempFileReadMode == TempFileReadMode.CHANNEL) {
+            in = new ChannelInputStream(file.get(), bufferSize);
+        } else {
+            in = new BufferedInputStream(blob.openInput(), bufferSize);
+        }
+        if (tempFileCodec.isPresent()) {
+            return new BlockCompressedInputStream(in, tempFileCodec.get());
+        } else {
+            return in;
+        }
+    }
+
+    private OutputStream tempOutput(OutputStream raw) {
+        OutputStream out = new BufferedOutputStream(raw, bufferSize);
+        if (tempFileCodec.isPresent()) {
+            // compressed blocks are independent so runs can still be concatenated
+            return new BlockCompressedOutputStream(out, tempFileCodec.get(), COMPRESSION_BLOCK_SIZE,
+                    compressionExecutor, COMPRESSION_THREADS + 1);
+        } else {
+            return out;
+        }
     }
 
     private static final class State<T> {
-        final File file;
+        final TempBlob blob;
         Reader<T> reader;
         T value;
 
-        State(File file, Reader<T> reader, T value) {
-            this.file = file;
+        State(TempBlob blob, Reader<T> reader, T value) {
+            this.blob = blob;
             this.reader = reader;
             this.value = value;
         }
     }
 
-    private File sortAndWriteToFile(ArrayList<T> list) throws FileNotFoundException, IOException {
-        File file = nextTempFile();
+    private static final class RawState {
+        final TempBlob blob;
+        final DataInputStream in;
+        final RecordLayout layout;
+        byte[] record;
+        int length;
+
+        RawState(TempBlob blob, InputStream in, RecordLayout layout) {
+            this.blob = blob;
+            this.in = new DataInputStream(in);
+            this.layout = layout;
+            this.record = new byte[Math.max(64, layout.prefixLength())];
+        }
+
+        /**
+         * Reads the next record into {@code record}.
+         * 
+         * @return false if there are no more records
+         * @throws IOException on read failure
+         */
+        boolean next() throws IOException {
+            int prefixLength = layout.prefixLength();
+            int n = in.read(record, 0, prefixLength);
+            if (n == -1) {
+                return false;
+            }
+            in.readFully(record, n, prefixLength - n);
+            length = layout.recordLength(record);
+            if (length > record.length) {
+                record = Arrays.copyOf(record, Math.max(length, record.length * 2));
+            }
+            in.readFully(record, prefixLength, length - prefixLength);
+            return true;
+        }
+    }
+
+    /**
+     * A sorted temporary blob with what we know about its contents. {@code min}
+     * and {@code max} are null when the key range is not known and {@code count}
+     * is -1 when the number of records is not known.
+     */
+    private static final class Run<T> {
+        final TempBlob blob;
+        final T min;
+        final T max;
+        final long count;
+        final long bytes;
+
+        Run(TempBlob blob, T min, T max, long count, long bytes) {
+            this.blob = blob;
+            this.min = min;
+            this.max = max;
+            this.count = count;
+            this.bytes = bytes;
+        }
+    }
+
+    private Run<T> sortAndWriteToFile(ArrayList<T> list) throws FileNotFoundException, IOException {
+        TempBlob blob = tempStorage.create(Collections.emptyList());
         long t = System.currentTimeMillis();
         if (initialSortInParallel) {
             list.parallelSort(comparator);
         } else {
             list.sort(comparator);
         }
-        writeToFile(list, file);
+        Run<T> run = writeToFile(list, blob);
         DecimalFormat df = new DecimalFormat("0.000");
         count += list.size();
         log("total=%s, sorted %s records to file %s in %ss", //
                 count, //
                 list.size(), //
-                file.getName(), //
+                blob, //
                 df.format((System.currentTimeMillis() - t) / 1000.0));
-        return file;
+        return run;
     }
 
-    private void writeToFile(List<T> list, File f) throws FileNotFoundException, IOException {
-        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(f), bufferSize);
+    private Run<T> writeToFile(List<T> list, TempBlob blob) throws FileNotFoundException, IOException {
+        long n = 0;
+        T last = null;
+        try (OutputStream out = tempOutput(blob.openOutput());
                 Writer<T> writer = serializer.createWriter(out)) {
-            T last = null;
             for (T t : list) {
                 if (!unique || last == null || comparator.compare(t, last) != 0) {
                     writer.write(t);
                     last = t;
+                    n++;
                 }
             }
         }
-    }
-
-    private File nextTempFile() throws IOException {
-        return nextTempFile(tempDirectory);
-    }
-    
-    private static File nextTempFile(File tempDirectory) throws IOException {
-        return Files.createTempFile(tempDirectory.toPath(), "big-sorter", "").toFile();
+        return new Run<T>(blob, list.get(0), last, n, blob.length());
     }
 
 }
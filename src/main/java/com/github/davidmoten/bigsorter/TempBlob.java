@@ -0,0 +1,59 @@
+package com.github.davidmoten.bigsorter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Optional;
+
+/**
+ * A sequence of bytes held by a {@link TempStorage}, for example a sorted run
+ * or the output of a merge. The bytes are written once through
+ * {@link #openOutput()} and then read any number of times until
+ * {@link #delete()} is called.
+ */
+public interface TempBlob {
+
+    /**
+     * Returns a stream to write the contents of the blob to. Called at most once
+     * and the stream is closed before {@link #openInput()} is called. The stream
+     * does not need to be buffered.
+     * 
+     * @return stream to write to
+     * @throws IOException on I/O failure
+     */
+    OutputStream openOutput() throws IOException;
+
+    /**
+     * Returns a stream of the contents of the blob. The stream does not need to be
+     * buffered.
+     * 
+     * @return stream to read from
+     * @throws IOException on I/O failure
+     */
+    InputStream openInput() throws IOException;
+
+    /**
+     * Returns the number of bytes written to the blob.
+     * 
+     * @return length in bytes
+     */
+    long length();
+
+    /**
+     * Releases the storage used by the blob.
+     */
+    void delete();
+
+    /**
+     * Returns the file holding the contents of the blob if there is one. When
+     * present the sorter may read the file directly (memory mapped for instance)
+     * and use the file system to copy or move the bytes. The default is empty.
+     * 
+     * @return file holding the contents of the blob
+     */
+    default Optional<File> file() {
+        return Optional.empty();
+    }
+
+}
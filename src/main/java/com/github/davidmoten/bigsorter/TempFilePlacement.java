@@ -0,0 +1,20 @@
+package com.github.davidmoten.bigsorter;
+
+/**
+ * How a directory is chosen for a new temporary file when the sorter has been
+ * given multiple temporary directories. In both cases a merge prefers
+ * directories on devices that none of its inputs are on.
+ */
+public enum TempFilePlacement {
+
+    /**
+     * Uses each directory in turn.
+     */
+    ROUND_ROBIN,
+
+    /**
+     * Uses the directory with the most usable space.
+     */
+    MOST_FREE_SPACE;
+
+}
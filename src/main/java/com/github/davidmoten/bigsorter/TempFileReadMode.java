@@ -0,0 +1,31 @@
+package com.github.davidmoten.bigsorter;
+
+/**
+ * The way temporary files are read during the merge phase of a sort.
+ */
+public enum TempFileReadMode {
+
+    /**
+     * Reads through a {@code FileInputStream} wrapped in a
+     * {@code BufferedInputStream} of {@code bufferSize}.
+     */
+    STREAM,
+
+    /**
+     * Memory maps temporary files (in windows of at most 1GB) and reads them
+     * through an {@code InputStream} over the mapping. This avoids a read system
+     * call per buffer but serializers still copy bytes from the mapping into
+     * their own arrays (they do not decode from the mapped buffer itself).
+     * Mapped memory is released when garbage collected so a deleted file may
+     * only release its disk space some time after it has been read.
+     */
+    MEMORY_MAPPED,
+
+    /**
+     * Reads with {@code FileChannel} positional reads into a direct buffer of
+     * {@code bufferSize} (a large buffer size like 1MB is recommended). Use this
+     * mode where memory mapping is undesirable.
+     */
+    CHANNEL;
+
+}
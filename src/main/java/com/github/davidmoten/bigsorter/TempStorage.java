@@ -0,0 +1,77 @@
+package com.github.davidmoten.bigsorter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import com.github.davidmoten.guavamini.Preconditions;
+
+/**
+ * Creates the blobs that hold sorted runs and intermediate merge outputs during
+ * a sort. Implement this interface to store temporary data somewhere other than
+ * the built-in disk and memory storage.
+ */
+public interface TempStorage {
+
+    /**
+     * Returns a new empty blob.
+     * 
+     * @param reading the blobs that will be read while the new blob is written
+     *                (a placement hint, may be empty)
+     * @return new blob
+     * @throws IOException on I/O failure
+     */
+    TempBlob create(List<? extends TempBlob> reading) throws IOException;
+
+    /**
+     * Returns storage that puts each blob in its own file in one of the given
+     * directories.
+     * 
+     * @param directories temporary directories, preferably on different disks
+     * @param placement   how a directory is chosen for each new file
+     * @return disk storage
+     */
+    static TempStorage disk(List<File> directories, TempFilePlacement placement) {
+        Preconditions.checkNotNull(directories, "directories cannot be null");
+        Preconditions.checkArgument(!directories.isEmpty(), "directories cannot be empty");
+        Preconditions.checkNotNull(placement, "placement cannot be null");
+        return new DiskTempStorage(directories, placement);
+    }
+
+    /**
+     * Returns storage that appends blobs to a few large segment files in the
+     * given directories rather than creating a file per blob. Worthwhile on file
+     * systems where creating and deleting files is expensive. Each segment file
+     * is {@code segmentSize} bytes long and is deleted once every blob written to
+     * it has been deleted.
+     * 
+     * @param directories directories that segment files are spread across in
+     *                    round robin order
+     * @param segmentSize size in bytes of each segment file
+     * @return segmented disk storage
+     */
+    static TempStorage segmented(List<File> directories, long segmentSize) {
+        Preconditions.checkNotNull(directories, "directories cannot be null");
+        Preconditions.checkArgument(!directories.isEmpty(), "directories cannot be empty");
+        Preconditions.checkArgument(segmentSize > 0, "segmentSize must be greater than 0");
+        return new SegmentedTempStorage(directories, segmentSize);
+    }
+
+    /**
+     * Returns storage that holds blobs in memory while the total size of the
+     * blobs held stays within {@code maxBytes}. A blob that does not fit is moved
+     * to {@code overflow} and continues to be written there.
+     * 
+     * @param maxBytes maximum number of bytes to hold in memory
+     * @param offHeap  if true memory is allocated with
+     *                 {@code ByteBuffer.allocateDirect} rather than on the heap
+     * @param overflow storage for blobs that do not fit in memory
+     * @return memory storage
+     */
+    static TempStorage memory(long maxBytes, boolean offHeap, TempStorage overflow) {
+        Preconditions.checkArgument(maxBytes >= 0, "maxBytes cannot be negative");
+        Preconditions.checkNotNull(overflow, "overflow cannot be null");
+        return new MemoryTempStorage(maxBytes, offHeap, overflow);
+    }
+
+}
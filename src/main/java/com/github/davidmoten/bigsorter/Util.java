@@ -1,14 +1,26 @@
 package com.github.davidmoten.bigsorter;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Function;
+import java.util.function.Predicate;
 
 import com.github.davidmoten.guavamini.Lists;
 import com.github.davidmoten.guavamini.Preconditions;
@@ -23,6 +35,8 @@ public final class Util {
      * Writes common entries from both readers to the writer in sorted
      * order.{@code readerA} and {@code readerB} must be reading already sorted
      * data.
+     * Duplicates are matched one for one so an entry present twice in both inputs
+     * is written twice.
      * 
      * @param <T>
      *            item type
@@ -39,20 +53,26 @@ public final class Util {
      */
     public static <T> void findSame(Reader<? extends T> readerA, Reader<? extends T> readerB,
             Comparator<? super T> comparator, Writer<T> writer) throws IOException {
+        findSameCaptured(readerA, readerB, comparator, writer);
+    }
+
+    // captures the reader types so values can be handed back for reuse
+    private static <T, A extends T, B extends T> void findSameCaptured(Reader<A> readerA, Reader<B> readerB,
+            Comparator<? super T> comparator, Writer<T> writer) throws IOException {
         // return A intersection B
-        T x = readerA.read();
-        T y = readerB.read();
+        A x = readerA.read();
+        B y = readerB.read();
         while (x != null && y != null) {
             int compare = comparator.compare(x, y);
             if (compare == 0) {
                 writer.write(x);
                 // read next values
-                x = readerA.read();
-                y = readerB.read();
+                x = readerA.readInto(x);
+                y = readerB.readInto(y);
             } else if (compare < 0) {
-                x = readerA.read();
+                x = readerA.readInto(x);
             } else {
-                y = readerB.read();
+                y = readerB.readInto(y);
             }
         }
     }
@@ -60,6 +80,8 @@ public final class Util {
     /**
      * Writes common entries from both files to the output file in sorted
      * order.{@code a} and {@code b} must already be sorted.
+     * Duplicates are matched one for one so an entry present twice in both inputs
+     * is written twice.
      * 
      * @param <T>
      *            item type
@@ -89,6 +111,8 @@ public final class Util {
      * Writes different entries (only those entries that are only present in one
      * input reader) from both readers to the writer in sorted order.
      * {@code readerA} and {@code readerB} must be reading already sorted data.
+     * Duplicates are matched one for one so an entry present three times in one
+     * input and once in the other is written twice.
      * 
      * @param <T>
      *            item type
@@ -105,29 +129,34 @@ public final class Util {
      */
     public static <T> void findDifferent(Reader<? extends T> readerA, Reader<? extends T> readerB,
             Comparator<? super T> comparator, Writer<T> writer) throws IOException {
+        findDifferentCaptured(readerA, readerB, comparator, writer);
+    }
+
+    private static <T, A extends T, B extends T> void findDifferentCaptured(Reader<A> readerA, Reader<B> readerB,
+            Comparator<? super T> comparator, Writer<T> writer) throws IOException {
         // returns those elements in (A union B) \ (A intersection B)
-        T x = readerA.read();
-        T y = readerB.read();
+        A x = readerA.read();
+        B y = readerB.read();
         while (x != null && y != null) {
             int compare = comparator.compare(x, y);
             if (compare == 0) {
-                x = readerA.read();
-                y = readerB.read();
+                x = readerA.readInto(x);
+                y = readerB.readInto(y);
             } else if (compare < 0) {
                 writer.write(x);
-                x = readerA.read();
+                x = readerA.readInto(x);
             } else {
                 writer.write(y);
-                y = readerB.read();
+                y = readerB.readInto(y);
             }
         }
         while (x != null) {
             writer.write(x);
-            x = readerA.read();
+            x = readerA.readInto(x);
         }
         while (y != null) {
             writer.write(y);
-            y = readerB.read();
+            y = readerB.readInto(y);
         }
     }
 
@@ -135,6 +164,8 @@ public final class Util {
      * Writes different entries (only those entries that are only present in one
      * file) from both files to the output file in sorted order. {@code a} and
      * {@code b} must already be sorted.
+     * Duplicates are matched one for one so an entry present three times in one
+     * input and once in the other is written twice.
      * 
      * @param <T>
      *            item type
@@ -164,6 +195,8 @@ public final class Util {
      * Writes to the output file only those entries from the first reader that are
      * not present in the second reader. {@code readerA} and {@code readerB} must be
      * reading already sorted data.
+     * Duplicates are matched one for one so an entry present twice in the first
+     * input and once in the second is written once.
      * 
      * @param <T>
      *            item type
@@ -180,24 +213,29 @@ public final class Util {
      */
     public static <T> void findComplement(Reader<? extends T> readerA, Reader<? extends T> readerB,
             Comparator<? super T> comparator, Writer<T> writer) throws IOException {
+        findComplementCaptured(readerA, readerB, comparator, writer);
+    }
+
+    private static <T, A extends T, B extends T> void findComplementCaptured(Reader<A> readerA, Reader<B> readerB,
+            Comparator<? super T> comparator, Writer<T> writer) throws IOException {
         // returns those elements in A that are not present in B
-        T x = readerA.read();
-        T y = readerB.read();
+        A x = readerA.read();
+        B y = readerB.read();
         while (x != null && y != null) {
             int compare = comparator.compare(x, y);
             if (compare == 0) {
-                x = readerA.read();
-                y = readerB.read();
+                x = readerA.readInto(x);
+                y = readerB.readInto(y);
             } else if (compare < 0) {
                 writer.write(x);
-                x = readerA.read();
+                x = readerA.readInto(x);
             } else {
-                y = readerB.read();
+                y = readerB.readInto(y);
             }
         }
         while (x != null) {
             writer.write(x);
-            x = readerA.read();
+            x = readerA.readInto(x);
         }
     }
 
@@ -205,6 +243,8 @@ public final class Util {
      * Writes only those entries that are in the first file but not in the second
      * file to the output file in sorted order. {@code a} and {@code b} must already
      * be sorted.
+     * Duplicates are matched one for one so an entry present twice in the first
+     * input and once in the second is written once.
      * 
      * @param <T>
      *            item type
@@ -230,6 +270,620 @@ public final class Util {
         }
     }
 
+    /**
+     * Writes common entries from both files to the output file in sorted order
+     * using up to {@code threads} threads. Key ranges are processed in parallel
+     * when both files have a sparse index (see
+     * {@link Sorter.Builder4#outputIndex(int)}), otherwise the files are read in
+     * one pass. {@code a} and {@code b} must already be sorted.
+     * Duplicates are matched one for one so an entry present twice in both inputs
+     * is written twice.
+     * 
+     * @param <T>
+     *            item type
+     * @param a
+     *            first file
+     * @param b
+     *            second file
+     * @param serializer
+     *            item serializer
+     * @param comparator
+     *            comparator for item
+     * @param output
+     *            file to which common entries are written to
+     * @param threads
+     *            maximum number of key ranges processed at once
+     * @throws IOException
+     *             I/O exception
+     */
+    public static <T> void findSame(File a, File b, Serializer<T> serializer, Comparator<? super T> comparator,
+            File output, int threads) throws IOException {
+        findParallel(a, b, serializer, comparator, output, threads, Util::findSame);
+    }
+
+    /**
+     * Writes different entries (only those entries that are only present in one
+     * file) from both files to the output file in sorted order using up to
+     * {@code threads} threads. Key ranges are processed in parallel when both
+     * files have a sparse index (see {@link Sorter.Builder4#outputIndex(int)}),
+     * otherwise the files are read in one pass. {@code a} and {@code b} must
+     * already be sorted.
+     * Duplicates are matched one for one so an entry present three times in one
+     * input and once in the other is written twice.
+     * 
+     * @param <T>
+     *            item type
+     * @param a
+     *            first file
+     * @param b
+     *            second file
+     * @param serializer
+     *            item serializer
+     * @param comparator
+     *            comparator for item
+     * @param output
+     *            file to which different entries are written to
+     * @param threads
+     *            maximum number of key ranges processed at once
+     * @throws IOException
+     *             I/O exception
+     */
+    public static <T> void findDifferent(File a, File b, Serializer<T> serializer, Comparator<? super T> comparator,
+            File output, int threads) throws IOException {
+        findParallel(a, b, serializer, comparator, output, threads, Util::findDifferent);
+    }
+
+    /**
+     * Writes only those entries that are in the first file but not in the second
+     * file to the output file in sorted order using up to {@code threads}
+     * threads. Key ranges are processed in parallel when both files have a
+     * sparse index (see {@link Sorter.Builder4#outputIndex(int)}), otherwise the
+     * files are read in one pass. {@code a} and {@code b} must already be
+     * sorted.
+     * Duplicates are matched one for one so an entry present twice in the first
+     * input and once in the second is written once.
+     * 
+     * @param <T>
+     *            item type
+     * @param a
+     *            first file
+     * @param b
+     *            second file
+     * @param serializer
+     *            item serializer
+     * @param comparator
+     *            comparator for item
+     * @param output
+     *            file to which entries are written to
+     * @param threads
+     *            maximum number of key ranges processed at once
+     * @throws IOException
+     *             I/O exception
+     */
+    public static <T> void findComplement(File a, File b, Serializer<T> serializer,
+            Comparator<? super T> comparator, File output, int threads) throws IOException {
+        findParallel(a, b, serializer, comparator, output, threads, Util::findComplement);
+    }
+
+    @FunctionalInterface
+    private interface SetOperation<T> {
+        void apply(Reader<? extends T> readerA, Reader<? extends T> readerB, Comparator<? super T> comparator,
+                Writer<T> writer) throws IOException;
+    }
+
+    /**
+     * Applies a two input set operation to key ranges of the files in parallel
+     * when both files have a sparse index (written by {@link Sorter} with
+     * {@code outputIndex}). The first records of the index blocks of both files
+     * are used to split the key space into {@code threads} ranges of similar
+     * size. Both files are read only within each range (starting at the index
+     * block holding the start of the range) and the output of each range is
+     * written to a file in the directory of the output and then appended to the
+     * output in key order. Without both indexes the operation runs in one pass
+     * on the calling thread.
+     */
+    private static <T> void findParallel(File a, File b, Serializer<T> serializer, Comparator<? super T> comparator,
+            File output, int threads, SetOperation<T> operation) throws IOException {
+        Preconditions.checkArgument(threads > 0, "threads must be greater than 0");
+        List<T> boundaries = Collections.emptyList();
+        SortedIndex<T> indexA = null;
+        SortedIndex<T> indexB = null;
+        if (threads > 1 && SortedIndex.indexFile(a).exists() && SortedIndex.indexFile(b).exists()) {
+            indexA = SortedIndex.open(a, serializer, comparator);
+            indexB = SortedIndex.open(b, serializer, comparator);
+            boundaries = boundaries(indexA.keys(), indexB.keys(), comparator, threads);
+        }
+        if (boundaries.isEmpty()) {
+            try (Reader<T> readerA = serializer.createReader(a);
+                    Reader<T> readerB = serializer.createReader(b);
+                    Writer<T> writer = serializer.createWriter(output)) {
+                operation.apply(readerA, readerB, comparator, writer);
+            }
+            return;
+        }
+        File directory = output.getAbsoluteFile().getParentFile();
+        List<File> parts = Lists.newArrayList();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = Lists.newArrayList();
+            for (int i = 0; i <= boundaries.size(); i++) {
+                T from = i == 0 ? null : boundaries.get(i - 1);
+                T to = i == boundaries.size() ? null : boundaries.get(i);
+                File part = File.createTempFile("big-sorter", "", directory);
+                parts.add(part);
+                SortedIndex<T> ia = indexA;
+                SortedIndex<T> ib = indexB;
+                futures.add(executor.submit(() -> {
+                    try (Reader<T> readerA = ia.between(from, to);
+                            Reader<T> readerB = ib.between(from, to);
+                            Writer<T> writer = serializer.createWriter(part)) {
+                        operation.apply(readerA, readerB, comparator, writer);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException) {
+                        throw (IOException) e.getCause();
+                    } else if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    } else {
+                        throw new RuntimeException(e.getCause());
+                    }
+                }
+            }
+            // the serializer is concatenable (it has an index) so parts are joined as bytes
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(output))) {
+                for (File part : parts) {
+                    Files.copy(part.toPath(), out);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            for (File part : parts) {
+                part.delete();
+            }
+        }
+    }
+
+    /**
+     * Returns up to {@code ranges - 1} distinct keys in increasing order that
+     * split the combined index keys into ranges of about the same number of
+     * blocks.
+     */
+    private static <T> List<T> boundaries(List<T> keysA, List<T> keysB, Comparator<? super T> comparator,
+            int ranges) {
+        List<T> keys = Lists.newArrayList(keysA);
+        keys.addAll(keysB);
+        if (keys.isEmpty()) {
+            return Collections.emptyList();
+        }
+        keys.sort(comparator);
+        List<T> boundaries = Lists.newArrayList();
+        for (int i = 1; i < ranges; i++) {
+            T key = keys.get((int) ((long) i * keys.size() / ranges));
+            if (boundaries.isEmpty() || comparator.compare(boundaries.get(boundaries.size() - 1), key) < 0) {
+                boundaries.add(key);
+            }
+        }
+        // a range below the first key would be empty
+        if (!boundaries.isEmpty() && comparator.compare(boundaries.get(0), keys.get(0)) == 0) {
+            boundaries.remove(0);
+        }
+        return boundaries;
+    }
+
+    /**
+     * Writes each distinct entry that is present in every reader to the writer
+     * in sorted order. All the readers are read in a single k-way merge so
+     * intersecting many inputs takes one pass. Every reader must be reading
+     * already sorted data.
+     * 
+     * @param <T>
+     *            item type
+     * @param readers
+     *            readers of sorted data
+     * @param comparator
+     *            comparator for item
+     * @param writer
+     *            writer to which entries are written to
+     * @throws IOException
+     *             I/O exception
+     */
+    public static <T> void findInAll(List<? extends Reader<? extends T>> readers, Comparator<? super T> comparator,
+            Writer<T> writer) throws IOException {
+        int n = readers.size();
+        findMatching(readers, comparator, writer, present -> present.cardinality() == n);
+    }
+
+    /**
+     * Writes each distinct entry that is present in exactly one reader to the
+     * writer in sorted order. Every reader must be reading already sorted data.
+     * 
+     * @param <T>
+     *            item type
+     * @param readers
+     *            readers of sorted data
+     * @param comparator
+     *            comparator for item
+     * @param writer
+     *            writer to which entries are written to
+     * @throws IOException
+     *             I/O exception
+     */
+    public static <T> void findInExactlyOne(List<? extends Reader<? extends T>> readers,
+            Comparator<? super T> comparator, Writer<T> writer) throws IOException {
+        findMatching(readers, comparator, writer, present -> present.cardinality() == 1);
+    }
+
+    /**
+     * Writes each distinct entry of the first reader that is not present in any
+     * of the other readers to the writer in sorted order. Every reader must be
+     * reading already sorted data.
+     * 
+     * @param <T>
+     *            item type
+     * @param readers
+     *            readers of sorted data
+     * @param comparator
+     *            comparator for item
+     * @param writer
+     *            writer to which entries are written to
+     * @throws IOException
+     *             I/O exception
+     */
+    public static <T> void findOnlyInFirst(List<? extends Reader<? extends T>> readers,
+            Comparator<? super T> comparator, Writer<T> writer) throws IOException {
+        findMatching(readers, comparator, writer, present -> present.get(0) && present.cardinality() == 1);
+    }
+
+    /**
+     * Writes each distinct entry that is present in any reader to the writer in
+     * sorted order. Every reader must be reading already sorted data.
+     * 
+     * @param <T>
+     *            item type
+     * @param readers
+     *            readers of sorted data
+     * @param comparator
+     *            comparator for item
+     * @param writer
+     *            writer to which entries are written to
+     * @throws IOException
+     *             I/O exception
+     */
+    public static <T> void findUnion(List<? extends Reader<? extends T>> readers, Comparator<? super T> comparator,
+            Writer<T> writer) throws IOException {
+        findMatching(readers, comparator, writer, present -> true);
+    }
+
+    /**
+     * Writes each distinct entry that is present in at least {@code k} of the
+     * readers to the writer in sorted order. Every reader must be reading already
+     * sorted data.
+     * 
+     * @param <T>
+     *            item type
+     * @param k
+     *            minimum number of readers an entry must be present in
+     * @param readers
+     *            readers of sorted data
+     * @param comparator
+     *            comparator for item
+     * @param writer
+     *            writer to which entries are written to
+     * @throws IOException
+     *             I/O exception
+     */
+    public static <T> void findInAtLeast(int k, List<? extends Reader<? extends T>> readers,
+            Comparator<? super T> comparator, Writer<T> writer) throws IOException {
+        Preconditions.checkArgument(k > 0, "k must be greater than 0");
+        findMatching(readers, comparator, writer, present -> present.cardinality() >= k);
+    }
+
+    /**
+     * Writes each distinct entry that is present in every file to the output
+     * file in sorted order. The files must already be sorted.
+     * 
+     * @param <T>
+     *            item type
+     * @param inputs
+     *            sorted files
+     * @param serializer
+     *            item serializer
+     * @param comparator
+     *            comparator for item
+     * @param output
+     *            file to which entries are written to
+     * @throws IOException
+     *             I/O exception
+     */
+    public static <T> void findInAll(List<File> inputs, Serializer<T> serializer, Comparator<? super T> comparator,
+            File output) throws IOException {
+        int n = inputs.size();
+        findMatching(inputs, serializer, comparator, output, present -> present.cardinality() == n);
+    }
+
+    /**
+     * Writes each distinct entry that is present in exactly one file to the
+     * output file in sorted order. The files must already be sorted.
+     * 
+     * @param <T>
+     *            item type
+     * @param inputs
+     *            sorted files
+     * @param serializer
+     *            item serializer
+     * @param comparator
+     *            comparator for item
+     * @param output
+     *            file to which entries are written to
+     * @throws IOException
+     *             I/O exception
+     */
+    public static <T> void findInExactlyOne(List<File> inputs, Serializer<T> serializer,
+            Comparator<? super T> comparator, File output) throws IOException {
+        findMatching(inputs, serializer, comparator, output, present -> present.cardinality() == 1);
+    }
+
+    /**
+     * Writes each distinct entry of the first file that is not present in any of
+     * the other files to the output file in sorted order. The files must already
+     * be sorted.
+     * 
+     * @param <T>
+     *            item type
+     * @param inputs
+     *            sorted files
+     * @param serializer
+     *            item serializer
+     * @param comparator
+     *            comparator for item
+     * @param output
+     *            file to which entries are written to
+     * @throws IOException
+     *             I/O exception
+     */
+    public static <T> void findOnlyInFirst(List<File> inputs, Serializer<T> serializer,
+            Comparator<? super T> comparator, File output) throws IOException {
+        findMatching(inputs, serializer, comparator, output,
+                present -> present.get(0) && present.cardinality() == 1);
+    }
+
+    /**
+     * Writes each distinct entry that is present in any file to the output file
+     * in sorted order. The files must already be sorted.
+     * 
+     * @param <T>
+     *            item type
+     * @param inputs
+     *            sorted files
+     * @param serializer
+     *            item serializer
+     * @param comparator
+     *            comparator for item
+     * @param output
+     *            file to which entries are written to
+     * @throws IOException
+     *             I/O exception
+     */
+    public static <T> void findUnion(List<File> inputs, Serializer<T> serializer, Comparator<? super T> comparator,
+            File output) throws IOException {
+        findMatching(inputs, serializer, comparator, output, present -> true);
+    }
+
+    /**
+     * Writes each distinct entry that is present in at least {@code k} of the
+     * files to the output file in sorted order. The files must already be
+     * sorted.
+     * 
+     * @param <T>
+     *            item type
+     * @param k
+     *            minimum number of files an entry must be present in
+     * @param inputs
+     *            sorted files
+     * @param serializer
+     *            item serializer
+     * @param comparator
+     *            comparator for item
+     * @param output
+     *            file to which entries are written to
+     * @throws IOException
+     *             I/O exception
+     */
+    public static <T> void findInAtLeast(int k, List<File> inputs, Serializer<T> serializer,
+            Comparator<? super T> comparator, File output) throws IOException {
+        Preconditions.checkArgument(k > 0, "k must be greater than 0");
+        findMatching(inputs, serializer, comparator, output, present -> present.cardinality() >= k);
+    }
+
+    private static <T> void findMatching(List<File> inputs, Serializer<T> serializer,
+            Comparator<? super T> comparator, File output, Predicate<BitSet> matches) throws IOException {
+        Preconditions.checkNotNull(inputs, "inputs cannot be null");
+        List<Reader<T>> readers = Lists.newArrayList();
+        try {
+            for (File input : inputs) {
+                readers.add(serializer.createReader(input));
+            }
+            try (Writer<T> writer = serializer.createWriter(output)) {
+                findMatching(readers, comparator, writer, matches);
+            }
+        } finally {
+            readers.forEach(Util::close);
+        }
+    }
+
+    /**
+     * Merges the readers and writes the first entry of each group of equal
+     * entries if the set of readers the group was present in matches.
+     */
+    private static <T> void findMatching(List<? extends Reader<? extends T>> readers,
+            Comparator<? super T> comparator, Writer<T> writer, Predicate<BitSet> matches) throws IOException {
+        Preconditions.checkNotNull(readers, "readers cannot be null");
+        Preconditions.checkArgument(!readers.isEmpty(), "readers cannot be empty");
+        MergedReader<T> merged = new MergedReader<T>(readers, comparator);
+        // indexes of the readers the current group is present in
+        BitSet present = new BitSet(readers.size());
+        T first = merged.read();
+        while (first != null) {
+            present.clear();
+            present.set(merged.index());
+            T t;
+            while ((t = merged.read()) != null && comparator.compare(first, t) == 0) {
+                present.set(merged.index());
+            }
+            if (matches.test(present)) {
+                writer.write(first);
+            }
+            first = t;
+        }
+    }
+
+    /**
+     * Joins two readers of sorted records of possibly different types on a key
+     * extracted from each record, in one pass over each reader. Records with
+     * equal keys are passed to the consumer as pairs (every record of the first
+     * reader with every record of the second reader that has the same key) and,
+     * depending on the join type, records without a match are passed paired with
+     * null. The records of the second reader with one key are held in memory
+     * while they are paired. Both readers must be sorted by their key using the
+     * given comparator.
+     * 
+     * @param <A>
+     *            record type of the first reader
+     * @param <B>
+     *            record type of the second reader
+     * @param <K>
+     *            key type
+     * @param readerA
+     *            first reader
+     * @param keyA
+     *            key of a record of the first reader
+     * @param readerB
+     *            second reader
+     * @param keyB
+     *            key of a record of the second reader
+     * @param comparator
+     *            comparator of keys
+     * @param joinType
+     *            which records are passed to the consumer
+     * @param consumer
+     *            consumer of joined records
+     * @throws IOException
+     *             I/O exception
+     */
+    public static <A, B, K> void join(Reader<? extends A> readerA, Function<? super A, ? extends K> keyA,
+            Reader<? extends B> readerB, Function<? super B, ? extends K> keyB, Comparator<? super K> comparator,
+            JoinType joinType, BiConsumer<? super A, ? super B> consumer) throws IOException {
+        Preconditions.checkNotNull(joinType, "joinType cannot be null");
+        Preconditions.checkNotNull(consumer, "consumer cannot be null");
+        boolean unmatchedA = joinType == JoinType.LEFT || joinType == JoinType.FULL;
+        boolean unmatchedB = joinType == JoinType.RIGHT || joinType == JoinType.FULL;
+        A a = readerA.read();
+        K ka = a == null ? null : keyA.apply(a);
+        B b = readerB.read();
+        K kb = b == null ? null : keyB.apply(b);
+        List<B> group = Lists.newArrayList();
+        while ((a != null && (b != null || unmatchedA)) || (b != null && unmatchedB)) {
+            int compare;
+            if (a == null) {
+                compare = 1;
+            } else if (b == null) {
+                compare = -1;
+            } else {
+                compare = comparator.compare(ka, kb);
+            }
+            if (compare < 0) {
+                if (unmatchedA) {
+                    accept(consumer, a, null);
+                }
+                a = readerA.read();
+                ka = a == null ? null : keyA.apply(a);
+            } else if (compare > 0) {
+                if (unmatchedB) {
+                    accept(consumer, null, b);
+                }
+                b = readerB.read();
+                kb = b == null ? null : keyB.apply(b);
+            } else {
+                // hold the records of B with the key and pair them with each record
+                // of A with the key
+                K key = kb;
+                group.clear();
+                while (b != null && comparator.compare(key, kb) == 0) {
+                    group.add(b);
+                    b = readerB.read();
+                    kb = b == null ? null : keyB.apply(b);
+                }
+                while (a != null && comparator.compare(ka, key) == 0) {
+                    for (B x : group) {
+                        accept(consumer, a, x);
+                    }
+                    a = readerA.read();
+                    ka = a == null ? null : keyA.apply(a);
+                }
+            }
+        }
+    }
+
+    /**
+     * Joins two sorted files of possibly different record types on a key
+     * extracted from each record (see
+     * {@link #join(Reader, Function, Reader, Function, Comparator, JoinType, BiConsumer)}).
+     * 
+     * @param <A>
+     *            record type of the first file
+     * @param <B>
+     *            record type of the second file
+     * @param <K>
+     *            key type
+     * @param a
+     *            first file
+     * @param serializerA
+     *            serializer of the first file
+     * @param keyA
+     *            key of a record of the first file
+     * @param b
+     *            second file
+     * @param serializerB
+     *            serializer of the second file
+     * @param keyB
+     *            key of a record of the second file
+     * @param comparator
+     *            comparator of keys
+     * @param joinType
+     *            which records are passed to the consumer
+     * @param consumer
+     *            consumer of joined records
+     * @throws IOException
+     *             I/O exception
+     */
+    public static <A, B, K> void join(File a, Serializer<A> serializerA, Function<? super A, ? extends K> keyA,
+            File b, Serializer<B> serializerB, Function<? super B, ? extends K> keyB,
+            Comparator<? super K> comparator, JoinType joinType, BiConsumer<? super A, ? super B> consumer)
+            throws IOException {
+        try (Reader<A> readerA = serializerA.createReader(a); Reader<B> readerB = serializerB.createReader(b)) {
+            join(readerA, keyA, readerB, keyB, comparator, joinType, consumer);
+        }
+    }
+
+    private static <A, B> void accept(BiConsumer<? super A, ? super B> consumer, A a, B b) throws IOException {
+        try {
+            consumer.accept(a, b);
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     public static <T> List<File> splitByCount(File input, Serializer<T> serializer, long count) throws IOException {
         return splitByCount( //
                 input, //
@@ -345,6 +999,25 @@ public final class Util {
         }
     }
 
+    // forces the content of the file to the storage device so that a crash after
+    // a rename or a manifest update cannot expose a file that was never written
+    static void sync(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    static int compareUnsigned(byte[] a, int aOffset, int aLength, byte[] b, int bOffset, int bLength) {
+        int n = Math.min(aLength, bLength);
+        for (int i = 0; i < n; i++) {
+            int c = (a[aOffset + i] & 0xff) - (b[bOffset + i] & 0xff);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return aLength - bLength;
+    }
+
     static RuntimeException toRuntimeException(Throwable e) {
         if (e instanceof IOException) {
             return new UncheckedIOException((IOException) e);
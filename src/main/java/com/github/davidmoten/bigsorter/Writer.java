@@ -6,6 +6,14 @@ import java.util.function.Function;
 
 public interface Writer<T> extends Closeable {
 
+    /**
+     * Writes the value. The writer should not keep a reference to the value after
+     * the call returns because a caller may reuse it (see
+     * {@link Reader#readInto(Object)}).
+     * 
+     * @param value value to write
+     * @throws IOException on IO problem
+     */
     void write(T value) throws IOException;
     
     void flush() throws IOException;
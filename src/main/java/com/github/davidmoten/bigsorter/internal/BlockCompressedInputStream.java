@@ -0,0 +1,110 @@
+package com.github.davidmoten.bigsorter.internal;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.github.davidmoten.bigsorter.Codec;
+import com.github.davidmoten.guavamini.Preconditions;
+
+/**
+ * Reads the blocks written by {@link BlockCompressedOutputStream}.
+ */
+public final class BlockCompressedInputStream extends InputStream {
+
+    private final InputStream in;
+    private final Codec codec;
+    private final byte[] header = new byte[BlockCompressedOutputStream.HEADER_LENGTH];
+    private byte[] compressed = new byte[0];
+    private byte[] block = new byte[0];
+    private int position;
+    private int length;
+
+    public BlockCompressedInputStream(InputStream in, Codec codec) {
+        Preconditions.checkNotNull(in, "in cannot be null");
+        Preconditions.checkNotNull(codec, "codec cannot be null");
+        this.in = in;
+        this.codec = codec;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureRemaining()) {
+            return -1;
+        }
+        return block[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureRemaining()) {
+            return -1;
+        }
+        int n = Math.min(len, length - position);
+        System.arraycopy(block, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return length - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private boolean ensureRemaining() throws IOException {
+        while (position == length) {
+            int n = readFully(header, header.length);
+            if (n == 0) {
+                return false;
+            } else if (n < header.length) {
+                throw new EOFException("truncated block header");
+            }
+            int uncompressedLength = BlockCompressedOutputStream.readInt(header, 1);
+            int storedLength = BlockCompressedOutputStream.readInt(header, 5);
+            if (block.length < uncompressedLength) {
+                block = new byte[uncompressedLength];
+            }
+            if (header[0] == BlockCompressedOutputStream.STORED) {
+                readBlock(block, storedLength);
+            } else if (header[0] == BlockCompressedOutputStream.COMPRESSED) {
+                if (compressed.length < storedLength) {
+                    compressed = new byte[storedLength];
+                }
+                readBlock(compressed, storedLength);
+                codec.decompress(compressed, storedLength, block, uncompressedLength);
+            } else {
+                throw new IOException("unknown block type " + header[0]);
+            }
+            position = 0;
+            length = uncompressedLength;
+        }
+        return true;
+    }
+
+    private void readBlock(byte[] b, int len) throws IOException {
+        if (readFully(b, len) != len) {
+            throw new EOFException("truncated block");
+        }
+    }
+
+    private int readFully(byte[] b, int len) throws IOException {
+        int n = 0;
+        while (n < len) {
+            int count = in.read(b, n, len - n);
+            if (count == -1) {
+                break;
+            }
+            n += count;
+        }
+        return n;
+    }
+
+}
@@ -0,0 +1,194 @@
+package com.github.davidmoten.bigsorter.internal;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.github.davidmoten.bigsorter.Codec;
+import com.github.davidmoten.guavamini.Preconditions;
+
+/**
+ * Writes bytes as a sequence of independently compressed blocks. Each block is
+ * a header (a flag byte, the uncompressed length and the stored length as 4
+ * byte big-endian ints) followed by the stored bytes. Blocks that do not
+ * shrink are stored uncompressed. Because every block stands alone the
+ * concatenation of two such streams is itself a valid stream (see
+ * {@link BlockCompressedInputStream}).
+ *
+ * <p>
+ * If an executor is given then blocks are compressed on its threads while the
+ * caller fills the next block. Blocks are always written to the underlying
+ * stream in order on the calling thread.
+ */
+public final class BlockCompressedOutputStream extends OutputStream {
+
+    static final int HEADER_LENGTH = 9;
+    static final byte STORED = 0;
+    static final byte COMPRESSED = 1;
+
+    private final OutputStream out;
+    private final Codec codec;
+    private final int blockSize;
+    private final ExecutorService executor;
+    private final int maxPendingBlocks;
+    private final Deque<Future<Block>> pending = new ArrayDeque<>();
+    private final Deque<Block> free = new ArrayDeque<>();
+    private Block block;
+    private boolean closed;
+
+    /**
+     * Constructor.
+     * 
+     * @param out              destination of compressed blocks
+     * @param codec            codec
+     * @param blockSize        number of uncompressed bytes in each block
+     * @param executor         executor to compress blocks on, or null to
+     *                         compress on the calling thread
+     * @param maxPendingBlocks maximum number of blocks being compressed before the
+     *                         caller waits
+     */
+    public BlockCompressedOutputStream(OutputStream out, Codec codec, int blockSize, ExecutorService executor,
+            int maxPendingBlocks) {
+        Preconditions.checkNotNull(out, "out cannot be null");
+        Preconditions.checkNotNull(codec, "codec cannot be null");
+        Preconditions.checkArgument(blockSize > 0, "blockSize must be greater than 0");
+        Preconditions.checkArgument(maxPendingBlocks > 0, "maxPendingBlocks must be greater than 0");
+        this.out = out;
+        this.codec = codec;
+        this.blockSize = blockSize;
+        this.executor = executor;
+        this.maxPendingBlocks = maxPendingBlocks;
+        this.block = new Block(blockSize, codec);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (block.length == blockSize) {
+            submit();
+        }
+        block.input[block.length++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (block.length == blockSize) {
+                submit();
+            }
+            int n = Math.min(len, blockSize - block.length);
+            System.arraycopy(b, off, block.input, block.length, n);
+            block.length += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (block.length > 0) {
+            submit();
+        }
+        while (!pending.isEmpty()) {
+            writeNext();
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            try {
+                flush();
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    private void submit() throws IOException {
+        Block b = block;
+        if (executor == null) {
+            b.compress();
+            write(b);
+            b.length = 0;
+        } else {
+            pending.offer(executor.submit(() -> {
+                b.compress();
+                return b;
+            }));
+            while (pending.size() >= maxPendingBlocks) {
+                writeNext();
+            }
+            block = free.isEmpty() ? new Block(blockSize, codec) : free.poll();
+        }
+    }
+
+    private void writeNext() throws IOException {
+        Block b;
+        try {
+            b = pending.poll().get();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+        write(b);
+        b.length = 0;
+        free.offer(b);
+    }
+
+    private void write(Block b) throws IOException {
+        byte[] header = b.header;
+        if (b.compressedLength < b.length) {
+            header[0] = COMPRESSED;
+            writeInt(header, 1, b.length);
+            writeInt(header, 5, b.compressedLength);
+            out.write(header);
+            out.write(b.output, 0, b.compressedLength);
+        } else {
+            header[0] = STORED;
+            writeInt(header, 1, b.length);
+            writeInt(header, 5, b.length);
+            out.write(header);
+            out.write(b.input, 0, b.length);
+        }
+    }
+
+    private static void writeInt(byte[] b, int offset, int value) {
+        b[offset] = (byte) (value >>> 24);
+        b[offset + 1] = (byte) (value >>> 16);
+        b[offset + 2] = (byte) (value >>> 8);
+        b[offset + 3] = (byte) value;
+    }
+
+    static int readInt(byte[] b, int offset) {
+        return ((b[offset] & 0xff) << 24) | ((b[offset + 1] & 0xff) << 16) | ((b[offset + 2] & 0xff) << 8)
+                | (b[offset + 3] & 0xff);
+    }
+
+    private static final class Block {
+        final Codec codec;
+        final byte[] input;
+        final byte[] output;
+        final byte[] header = new byte[HEADER_LENGTH];
+        int length;
+        int compressedLength;
+
+        Block(int blockSize, Codec codec) {
+            this.codec = codec;
+            this.input = new byte[blockSize];
+            this.output = new byte[codec.maxCompressedLength(blockSize)];
+        }
+
+        void compress() {
+            compressedLength = codec.compress(input, length, output);
+        }
+    }
+
+}
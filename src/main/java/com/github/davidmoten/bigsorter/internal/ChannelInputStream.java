@@ -0,0 +1,125 @@
+package com.github.davidmoten.bigsorter.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import com.github.davidmoten.guavamini.Preconditions;
+
+/**
+ * Reads a file or a region of a file using {@link FileChannel} positional
+ * reads into a direct buffer.
+ */
+public final class ChannelInputStream extends InputStream {
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    // position in the file after the last byte to read
+    private final long end;
+    private final boolean closeChannel;
+    // position in the file of the next read from the channel
+    private long position;
+
+    public ChannelInputStream(File file, int bufferSize) throws IOException {
+        this(FileChannel.open(file.toPath(), StandardOpenOption.READ), 0, Long.MAX_VALUE, bufferSize, true);
+    }
+
+    /**
+     * Reads at most {@code length} bytes of the channel starting at
+     * {@code position}. The position of the channel is not used or changed so
+     * many streams can read the same channel.
+     * 
+     * @param channel      channel to read
+     * @param position     position of the first byte to read
+     * @param length       maximum number of bytes to read
+     * @param bufferSize   size of the direct buffer
+     * @param closeChannel whether to close the channel when the stream is closed
+     */
+    public ChannelInputStream(FileChannel channel, long position, long length, int bufferSize,
+            boolean closeChannel) {
+        Preconditions.checkArgument(bufferSize > 0, "bufferSize must be greater than 0");
+        Preconditions.checkArgument(position >= 0, "position cannot be negative");
+        Preconditions.checkArgument(length >= 0, "length cannot be negative");
+        this.channel = channel;
+        this.position = position;
+        this.end = length > Long.MAX_VALUE - position ? Long.MAX_VALUE : position + length;
+        this.closeChannel = closeChannel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        // start with nothing to read
+        buffer.flip();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureRemaining()) {
+            return -1;
+        }
+        return buffer.get() & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureRemaining()) {
+            return -1;
+        }
+        int n = Math.min(len, buffer.remaining());
+        buffer.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        if (n <= buffer.remaining()) {
+            buffer.position(buffer.position() + (int) n);
+            return n;
+        }
+        long skipped = buffer.remaining();
+        long target = Math.min(Math.min(end, channel.size()), position + n - skipped);
+        skipped += target - position;
+        position = target;
+        buffer.clear();
+        buffer.flip();
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return buffer.remaining();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closeChannel) {
+            channel.close();
+        }
+    }
+
+    private boolean ensureRemaining() throws IOException {
+        while (!buffer.hasRemaining()) {
+            if (position >= end) {
+                return false;
+            }
+            buffer.clear();
+            if (end - position < buffer.capacity()) {
+                buffer.limit((int) (end - position));
+            }
+            int n = channel.read(buffer, position);
+            buffer.flip();
+            if (n == -1) {
+                return false;
+            }
+            position += n;
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,69 @@
+package com.github.davidmoten.bigsorter.internal;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.github.davidmoten.bigsorter.Codec;
+
+/**
+ * A zlib codec. Each thread keeps one {@link Deflater} and one {@link Inflater}
+ * and resets them between blocks rather than allocating (and ending) native
+ * zlib state for every block.
+ */
+public final class DeflateCodec implements Codec {
+
+    private final ThreadLocal<Deflater> deflater;
+    private final ThreadLocal<Inflater> inflater = ThreadLocal.withInitial(Inflater::new);
+
+    public DeflateCodec(int level) {
+        this.deflater = ThreadLocal.withInitial(() -> new Deflater(level));
+    }
+
+    @Override
+    public int maxCompressedLength(int length) {
+        // generous bound for zlib framing and stored blocks
+        return length + (length >> 12) + (length >> 14) + (length >> 25) + 13 + 6;
+    }
+
+    @Override
+    public int compress(byte[] input, int length, byte[] output) {
+        Deflater d = deflater.get();
+        try {
+            d.setInput(input, 0, length);
+            d.finish();
+            int n = 0;
+            while (!d.finished()) {
+                n += d.deflate(output, n, output.length - n);
+            }
+            return n;
+        } finally {
+            d.reset();
+        }
+    }
+
+    @Override
+    public void decompress(byte[] input, int length, byte[] output, int uncompressedLength) {
+        Inflater inf = inflater.get();
+        try {
+            inf.setInput(input, 0, length);
+            int n = 0;
+            while (n < uncompressedLength && !inf.finished()) {
+                int count = inf.inflate(output, n, uncompressedLength - n);
+                if (count == 0 && (inf.needsInput() || inf.needsDictionary())) {
+                    break;
+                }
+                n += count;
+            }
+            if (n != uncompressedLength) {
+                throw new IllegalStateException(
+                        "corrupt block, expected " + uncompressedLength + " bytes but decompressed " + n);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            inf.reset();
+        }
+    }
+
+}
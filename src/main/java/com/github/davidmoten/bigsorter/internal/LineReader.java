@@ -0,0 +1,180 @@
+package com.github.davidmoten.bigsorter.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import com.github.davidmoten.bigsorter.Reader;
+
+/**
+ * Reads lines from a stream of bytes in a charset where the bytes {@code \r}
+ * and {@code \n} only ever encode those characters (see
+ * {@link #supports(Charset)}). Lines end at {@code \n}, {@code \r} or
+ * {@code \r\n} as for {@link java.io.BufferedReader#readLine()}.
+ *
+ * <p>
+ * The buffer is scanned eight bytes at a time for a delimiter by treating each
+ * eight bytes as a long and only the bytes of a line are decoded. Lines that
+ * are all ASCII (the common case) are decoded without going through the
+ * charset decoder.
+ */
+public final class LineReader implements Reader<String> {
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long LINE_FEEDS = ONES * '\n';
+    private static final long CARRIAGE_RETURNS = ONES * '\r';
+
+    private final InputStream in;
+    private final Charset charset;
+    private byte[] buffer;
+    // little endian view of buffer for reading eight bytes at a time
+    private ByteBuffer words;
+    // position of the next byte to read
+    private int position;
+    // number of bytes in buffer
+    private int limit;
+    // true if the last line ended with \r so a following \n should be skipped
+    private boolean skipLineFeed;
+
+    public LineReader(InputStream in, Charset charset) {
+        this(in, charset, DEFAULT_BUFFER_SIZE);
+    }
+
+    public LineReader(InputStream in, Charset charset, int bufferSize) {
+        this.in = in;
+        this.charset = charset;
+        setBuffer(new byte[Math.max(16, bufferSize)]);
+    }
+
+    /**
+     * Returns true if the charset can be read by this class.
+     * 
+     * @param charset charset
+     * @return true if supported
+     */
+    public static boolean supports(Charset charset) {
+        return charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.US_ASCII)
+                || charset.equals(StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    public String read() throws IOException {
+        if (skipLineFeed) {
+            skipLineFeed = false;
+            if (position == limit && !fill()) {
+                return null;
+            }
+            if (buffer[position] == '\n') {
+                position++;
+            }
+        }
+        int start = position;
+        int i = position;
+        // has the high bit set in any byte if a byte of the line is not ASCII
+        long high = 0;
+        while (true) {
+            while (i + 8 <= limit) {
+                long word = words.getLong(i);
+                long match = zeroBytes(word ^ LINE_FEEDS) | zeroBytes(word ^ CARRIAGE_RETURNS);
+                if (match != 0) {
+                    // little endian so the lowest set bit is in the first matching byte
+                    int n = Long.numberOfTrailingZeros(match) >>> 3;
+                    high |= word & ((1L << (n << 3)) - 1);
+                    return line(start, i + n, high);
+                }
+                high |= word;
+                i += 8;
+            }
+            while (i < limit) {
+                byte b = buffer[i];
+                if (b == '\n' || b == '\r') {
+                    return line(start, i, high);
+                }
+                high |= b;
+                i++;
+            }
+            // no delimiter so make room and read more
+            if (start > 0) {
+                System.arraycopy(buffer, start, buffer, 0, limit - start);
+                limit -= start;
+                i -= start;
+                start = 0;
+            }
+            if (limit == buffer.length) {
+                byte[] b = new byte[buffer.length * 2];
+                System.arraycopy(buffer, 0, b, 0, limit);
+                setBuffer(b);
+            }
+            int n = in.read(buffer, limit, buffer.length - limit);
+            if (n == -1) {
+                position = limit;
+                if (limit > start) {
+                    return decode(start, limit, high);
+                } else {
+                    return null;
+                }
+            }
+            limit += n;
+        }
+    }
+
+    /**
+     * Returns a long with the high bit set in the lowest byte of x that is zero
+     * (and possibly in higher bytes).
+     */
+    private static long zeroBytes(long x) {
+        return (x - ONES) & ~x & HIGH_BITS;
+    }
+
+    private String line(int start, int end, long high) {
+        position = end + 1;
+        if (buffer[end] == '\r') {
+            if (position < limit) {
+                if (buffer[position] == '\n') {
+                    position++;
+                }
+            } else {
+                skipLineFeed = true;
+            }
+        }
+        return decode(start, end, high);
+    }
+
+    private String decode(int start, int end, long high) {
+        if ((high & HIGH_BITS) == 0) {
+            return new String(buffer, start, end - start, StandardCharsets.ISO_8859_1);
+        } else {
+            return new String(buffer, start, end - start, charset);
+        }
+    }
+
+    private boolean fill() throws IOException {
+        position = 0;
+        limit = 0;
+        int n;
+        do {
+            n = in.read(buffer, 0, buffer.length);
+        } while (n == 0);
+        if (n == -1) {
+            return false;
+        }
+        limit = n;
+        return true;
+    }
+
+    private void setBuffer(byte[] b) {
+        buffer = b;
+        words = ByteBuffer.wrap(b).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+}
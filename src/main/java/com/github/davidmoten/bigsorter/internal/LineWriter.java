@@ -0,0 +1,94 @@
+package com.github.davidmoten.bigsorter.internal;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import com.github.davidmoten.bigsorter.Writer;
+
+/**
+ * Writes lines to a stream of bytes in a charset supported by
+ * {@link LineReader#supports(Charset)}. Characters that encode as a single
+ * byte are copied straight into a reusable buffer and only lines with other
+ * characters go through the charset encoder.
+ */
+public final class LineWriter implements Writer<String> {
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final OutputStream out;
+    private final Charset charset;
+    private final byte[] delimiter;
+    // characters below this value are encoded as the same single byte
+    private final char singleByteLimit;
+    private final byte[] buffer;
+    private int position;
+
+    public LineWriter(OutputStream out, Charset charset, String delimiter) {
+        this(out, charset, delimiter, DEFAULT_BUFFER_SIZE);
+    }
+
+    public LineWriter(OutputStream out, Charset charset, String delimiter, int bufferSize) {
+        this.out = out;
+        this.charset = charset;
+        this.delimiter = delimiter.getBytes(charset);
+        this.singleByteLimit = charset.equals(StandardCharsets.ISO_8859_1) ? (char) 0x100 : (char) 0x80;
+        this.buffer = new byte[Math.max(16, bufferSize)];
+    }
+
+    @Override
+    public void write(String value) throws IOException {
+        int length = value.length();
+        if (position + length > buffer.length) {
+            flushBuffer();
+        }
+        if (length > buffer.length) {
+            out.write(value.getBytes(charset));
+        } else {
+            int start = position;
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c >= singleByteLimit) {
+                    position = start;
+                    writeBytes(value.getBytes(charset));
+                    break;
+                }
+                buffer[position++] = (byte) c;
+            }
+        }
+        writeBytes(delimiter);
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        if (position + bytes.length > buffer.length) {
+            flushBuffer();
+            if (bytes.length > buffer.length) {
+                out.write(bytes);
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flushBuffer();
+        out.close();
+    }
+
+}
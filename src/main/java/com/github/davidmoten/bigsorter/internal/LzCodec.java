@@ -0,0 +1,147 @@
+package com.github.davidmoten.bigsorter.internal;
+
+import com.github.davidmoten.bigsorter.Codec;
+
+/**
+ * A byte oriented LZ77 codec using the sequence layout of the LZ4 block
+ * format: a token (literal length in the high nibble, match length - 4 in the
+ * low nibble), extended lengths as runs of 255, literals, then a 2 byte little
+ * endian match offset. The final sequence holds literals only.
+ */
+public final class LzCodec implements Codec {
+
+    public static final LzCodec INSTANCE = new LzCodec();
+
+    private static final int MIN_MATCH = 4;
+    private static final int MAX_OFFSET = 65535;
+    private static final int HASH_BITS = 12;
+
+    private LzCodec() {
+    }
+
+    @Override
+    public int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    @Override
+    public int compress(byte[] input, int length, byte[] output) {
+        // positions + 1 so that zero means empty
+        int[] table = new int[1 << HASH_BITS];
+        int anchor = 0;
+        int i = 0;
+        int d = 0;
+        int limit = length - MIN_MATCH;
+        while (i <= limit) {
+            int sequence = readInt(input, i);
+            int h = hash(sequence);
+            int ref = table[h] - 1;
+            table[h] = i + 1;
+            if (ref >= 0 && i - ref <= MAX_OFFSET && readInt(input, ref) == sequence) {
+                int matchLength = MIN_MATCH;
+                while (i + matchLength < length && input[ref + matchLength] == input[i + matchLength]) {
+                    matchLength++;
+                }
+                d = writeSequence(input, anchor, i - anchor, i - ref, matchLength, output, d);
+                i += matchLength;
+                anchor = i;
+            } else {
+                i++;
+            }
+        }
+        return writeLiterals(input, anchor, length - anchor, 0, output, d);
+    }
+
+    @Override
+    public void decompress(byte[] input, int length, byte[] output, int uncompressedLength) {
+        int s = 0;
+        int d = 0;
+        try {
+            while (s < length) {
+                int token = input[s++] & 0xff;
+                int literals = token >>> 4;
+                if (literals == 15) {
+                    int b;
+                    do {
+                        b = input[s++] & 0xff;
+                        literals += b;
+                    } while (b == 255);
+                }
+                System.arraycopy(input, s, output, d, literals);
+                s += literals;
+                d += literals;
+                if (s >= length) {
+                    break;
+                }
+                int offset = (input[s++] & 0xff) | ((input[s++] & 0xff) << 8);
+                int matchLength = token & 15;
+                if (matchLength == 15) {
+                    int b;
+                    do {
+                        b = input[s++] & 0xff;
+                        matchLength += b;
+                    } while (b == 255);
+                }
+                matchLength += MIN_MATCH;
+                int ref = d - offset;
+                if (offset == 0 || ref < 0) {
+                    throw new IllegalStateException("corrupt block, invalid match offset " + offset);
+                }
+                if (offset >= matchLength) {
+                    System.arraycopy(output, ref, output, d, matchLength);
+                    d += matchLength;
+                } else {
+                    // overlapping copy repeats the pattern
+                    for (int k = 0; k < matchLength; k++) {
+                        output[d++] = output[ref++];
+                    }
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IllegalStateException("corrupt block", e);
+        }
+        if (d != uncompressedLength) {
+            throw new IllegalStateException(
+                    "corrupt block, expected " + uncompressedLength + " bytes but decompressed " + d);
+        }
+    }
+
+    private static int writeSequence(byte[] input, int literalStart, int literals, int offset, int matchLength,
+            byte[] output, int d) {
+        d = writeLiterals(input, literalStart, literals, Math.min(matchLength - MIN_MATCH, 15), output, d);
+        output[d++] = (byte) offset;
+        output[d++] = (byte) (offset >>> 8);
+        if (matchLength - MIN_MATCH >= 15) {
+            d = writeLength(matchLength - MIN_MATCH - 15, output, d);
+        }
+        return d;
+    }
+
+    private static int writeLiterals(byte[] input, int start, int literals, int matchNibble, byte[] output,
+            int d) {
+        output[d++] = (byte) ((Math.min(literals, 15) << 4) | matchNibble);
+        if (literals >= 15) {
+            d = writeLength(literals - 15, output, d);
+        }
+        System.arraycopy(input, start, output, d, literals);
+        return d + literals;
+    }
+
+    private static int writeLength(int n, byte[] output, int d) {
+        while (n >= 255) {
+            output[d++] = (byte) 255;
+            n -= 255;
+        }
+        output[d++] = (byte) n;
+        return d;
+    }
+
+    private static int readInt(byte[] b, int i) {
+        return (b[i] & 0xff) | ((b[i + 1] & 0xff) << 8) | ((b[i + 2] & 0xff) << 16) | ((b[i + 3] & 0xff) << 24);
+    }
+
+    private static int hash(int sequence) {
+        return (sequence * -1640531535) >>> (32 - HASH_BITS);
+    }
+
+}
@@ -0,0 +1,108 @@
+package com.github.davidmoten.bigsorter.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+
+import com.github.davidmoten.guavamini.Preconditions;
+import com.github.davidmoten.guavamini.annotations.VisibleForTesting;
+
+/**
+ * Reads a file by memory mapping consecutive windows of it (a single
+ * {@link MappedByteBuffer} cannot exceed 2GB). Reads copy from the mapping
+ * into the caller's array.
+ */
+public final class MappedFileInputStream extends InputStream {
+
+    private static final int DEFAULT_WINDOW_SIZE = 1 << 30;
+
+    private final FileChannel channel;
+    private final long size;
+    private final int windowSize;
+    private MappedByteBuffer buffer;
+    // position in the file of the start of buffer
+    private long position;
+
+    public MappedFileInputStream(File file) throws IOException {
+        this(file, DEFAULT_WINDOW_SIZE);
+    }
+
+    @VisibleForTesting
+    MappedFileInputStream(File file, int windowSize) throws IOException {
+        Preconditions.checkArgument(windowSize > 0, "windowSize must be greater than 0");
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.size = channel.size();
+        this.windowSize = windowSize;
+        this.position = 0;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureRemaining()) {
+            return -1;
+        }
+        return buffer.get() & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureRemaining()) {
+            return -1;
+        }
+        int n = Math.min(len, buffer.remaining());
+        buffer.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        long current = buffer == null ? position : position + buffer.position();
+        long target = Math.min(size, current + n);
+        // remap from the new position on the next read
+        buffer = null;
+        position = target;
+        return target - current;
+    }
+
+    @Override
+    public int available() throws IOException {
+        if (buffer == null) {
+            return (int) Math.min(Integer.MAX_VALUE, size - position);
+        } else {
+            return (int) Math.min(Integer.MAX_VALUE, size - position - buffer.position());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer = null;
+        channel.close();
+    }
+
+    private boolean ensureRemaining() throws IOException {
+        if (buffer != null && buffer.hasRemaining()) {
+            return true;
+        }
+        if (buffer != null) {
+            position += buffer.limit();
+        }
+        if (position >= size) {
+            buffer = null;
+            return false;
+        }
+        long length = Math.min(windowSize, size - position);
+        buffer = channel.map(MapMode.READ_ONLY, position, length);
+        return true;
+    }
+
+}
@@ -0,0 +1,85 @@
+package com.github.davidmoten.bigsorter.internal;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Variable length encoding of integers, seven bits per byte with the high bit
+ * set on all but the last byte (least significant group first). Small values
+ * take one byte.
+ */
+public final class VarInts {
+
+    private VarInts() {
+        // prevent instantiation
+    }
+
+    public static void writeUnsigned(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    public static long readUnsigned(InputStream in) throws IOException {
+        int b = in.read();
+        if (b == -1) {
+            throw new EOFException();
+        }
+        return readUnsigned(in, b);
+    }
+
+    /**
+     * Reads an unsigned value whose first byte has already been read (so that
+     * the caller can tell the end of the stream from a truncated value).
+     * 
+     * @param in        input
+     * @param firstByte first byte of the value
+     * @return value
+     * @throws IOException on IO problem or if the stream ends within the value
+     */
+    public static long readUnsigned(InputStream in, int firstByte) throws IOException {
+        long value = 0;
+        int b = firstByte;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (shift > 0) {
+                b = in.read();
+                if (b == -1) {
+                    throw new EOFException();
+                }
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("varint too long");
+    }
+
+    /**
+     * Maps signed values to unsigned values so that values of small magnitude
+     * (negative or positive) have a short encoding.
+     * 
+     * @param value signed value
+     * @return zig-zag encoded value
+     */
+    public static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    public static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public static void writeSigned(OutputStream out, long value) throws IOException {
+        writeUnsigned(out, zigZag(value));
+    }
+
+    public static long readSigned(InputStream in) throws IOException {
+        return unZigZag(readUnsigned(in));
+    }
+
+}
@@ -0,0 +1,28 @@
+package org.apache.commons.csv;
+
+/**
+ * Creates {@link CSVRecord} values from field values that are already decoded.
+ * {@code CSVRecord} has no public constructor so this class lives in the
+ * commons-csv package. It is used by the binary CSV spill serializer of
+ * big-sorter so that records read back from temporary files are not printed
+ * and parsed as CSV text on every merge pass.
+ */
+public final class BigSorterCsvRecords {
+
+    private BigSorterCsvRecords() {
+        // prevent instantiation
+    }
+
+    /**
+     * Returns a record holding the given values.
+     * 
+     * @param parser       the parser that supplies the header names of the record
+     * @param values       field values (null for null values)
+     * @param recordNumber the record number (starting at 1)
+     * @return record
+     */
+    public static CSVRecord create(CSVParser parser, String[] values, long recordNumber) {
+        return new CSVRecord(parser, values, null, recordNumber, 0, 0);
+    }
+
+}
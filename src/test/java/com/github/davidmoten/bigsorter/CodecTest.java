@@ -0,0 +1,110 @@
+package com.github.davidmoten.bigsorter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class CodecTest {
+
+    @Test
+    public void testLzRoundTrip() {
+        checkRoundTrips(Codec.lz());
+    }
+
+    @Test
+    public void testDeflateRoundTrip() {
+        checkRoundTrips(Codec.deflate());
+    }
+
+    @Test
+    public void testLzCompressesRepetitiveText() {
+        StringBuilder s = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            s.append("https://example.com/path/to/resource?id=" + i + "\n");
+        }
+        byte[] bytes = s.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] output = new byte[Codec.lz().maxCompressedLength(bytes.length)];
+        int n = Codec.lz().compress(bytes, bytes.length, output);
+        assertTrue(n < bytes.length / 3);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testLzCorruptInput() {
+        byte[] input = new byte[] { 0x0f, 1, 0 };
+        Codec.lz().decompress(input, input.length, new byte[100], 100);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDeflateInvalidLevel() {
+        Codec.deflate(10);
+    }
+
+    @Test
+    public void testDeflateUsableAfterCorruptBlock() {
+        Codec codec = Codec.deflate();
+        byte[] corrupt = new byte[] { 1, 2, 3, 4, 5 };
+        try {
+            codec.decompress(corrupt, corrupt.length, new byte[100], 100);
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        checkRoundTrips(codec);
+    }
+
+    @Test
+    public void testDeflateConcurrentUse() throws InterruptedException, ExecutionException {
+        Codec codec = Codec.deflate();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> checkRoundTrips(codec)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void checkRoundTrips(Codec codec) {
+        Random random = new Random(12345);
+        for (int length : new int[] { 0, 1, 3, 4, 5, 15, 16, 19, 100, 300, 1000, 65536 }) {
+            // random bytes
+            byte[] bytes = new byte[length];
+            random.nextBytes(bytes);
+            checkRoundTrip(codec, bytes);
+            // long runs to exercise long match and literal lengths
+            Arrays.fill(bytes, (byte) 7);
+            checkRoundTrip(codec, bytes);
+            // few distinct values
+            for (int i = 0; i < length; i++) {
+                bytes[i] = (byte) random.nextInt(3);
+            }
+            checkRoundTrip(codec, bytes);
+        }
+    }
+
+    private static void checkRoundTrip(Codec codec, byte[] bytes) {
+        byte[] compressed = new byte[codec.maxCompressedLength(bytes.length)];
+        int n = codec.compress(bytes, bytes.length, compressed);
+        byte[] decompressed = new byte[bytes.length];
+        codec.decompress(compressed, n, decompressed, bytes.length);
+        assertArrayEquals(bytes, decompressed);
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.github.davidmoten.bigsorter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.Test;
+
+public class CsvBinarySerializerTest {
+
+    @Test
+    public void testRoundTripWithHeader() throws IOException {
+        List<CSVRecord> records = CSVFormat.DEFAULT.builder().setHeader().setSkipHeaderRecord(true).build()
+                .parse(new StringReader("a,b\n1,\"hello, there\"\n2,é中\n")).getRecords();
+        List<CSVRecord> list = roundTrip(records);
+        assertEquals(2, list.size());
+        assertEquals("hello, there", list.get(0).get("b"));
+        assertEquals("2", list.get(1).get("a"));
+        assertEquals("é中", list.get(1).get(1));
+        assertEquals(Arrays.asList("a", "b"), list.get(0).getParser().getHeaderNames());
+    }
+
+    @Test
+    public void testRoundTripWithoutHeaderAndNullValue() throws IOException {
+        List<CSVRecord> records = CSVFormat.DEFAULT.builder().setNullString("NULL").build()
+                .parse(new StringReader("x,NULL,\n")).getRecords();
+        List<CSVRecord> list = roundTrip(records);
+        assertEquals(1, list.size());
+        CSVRecord r = list.get(0);
+        assertEquals(3, r.size());
+        assertEquals("x", r.get(0));
+        assertNull(r.get(1));
+        assertEquals("", r.get(2));
+        assertEquals(0, r.getParser().getHeaderNames().size());
+    }
+
+    @Test
+    public void testConcatenatedWriters() throws IOException {
+        List<CSVRecord> a = CSVFormat.DEFAULT.builder().setHeader().setSkipHeaderRecord(true).build()
+                .parse(new StringReader("a,b\n1,2\n")).getRecords();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        write(a, bytes);
+        write(a, bytes);
+        List<CSVRecord> list = Serializer.csvBinary().createReader(new ByteArrayInputStream(bytes.toByteArray()))
+                .stream().collect(Collectors.toList());
+        assertEquals(2, list.size());
+        assertEquals("2", list.get(1).get("b"));
+    }
+
+    @Test
+    public void testQuotedValuesAndChangingHeaders() throws IOException {
+        List<CSVRecord> a = CSVFormat.DEFAULT.builder().setHeader().setSkipHeaderRecord(true).get()
+                .parse(new StringReader("a,b\n\"line1\nline2\",\"say \"\"hi\"\"\"\n")).getRecords();
+        List<CSVRecord> b = CSVFormat.DEFAULT.parse(new StringReader("\"\"\n")).getRecords();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        write(a, bytes);
+        write(b, bytes);
+        write(a, bytes);
+        List<CSVRecord> list = Serializer.csvBinary().createReader(new ByteArrayInputStream(bytes.toByteArray()))
+                .stream().collect(Collectors.toList());
+        assertEquals(3, list.size());
+        assertEquals("line1\nline2", list.get(0).get("a"));
+        assertEquals("say \"hi\"", list.get(0).get("b"));
+        assertEquals(1, list.get(1).size());
+        assertEquals("", list.get(1).get(0));
+        assertEquals(0, list.get(1).getParser().getHeaderNames().size());
+        assertEquals("say \"hi\"", list.get(2).get("b"));
+    }
+
+    private static List<CSVRecord> roundTrip(List<CSVRecord> records) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        write(records, bytes);
+        return Serializer.csvBinary().createReader(new ByteArrayInputStream(bytes.toByteArray())).stream()
+                .collect(Collectors.toList());
+    }
+
+    private static void write(List<CSVRecord> records, ByteArrayOutputStream bytes) throws IOException {
+        try (Writer<CSVRecord> w = Serializer.csvBinary().createWriter(bytes)) {
+            for (CSVRecord r : records) {
+                w.write(r);
+            }
+        }
+    }
+
+}
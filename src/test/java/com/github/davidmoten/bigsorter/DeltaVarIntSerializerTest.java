@@ -0,0 +1,84 @@
+package com.github.davidmoten.bigsorter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class DeltaVarIntSerializerTest {
+
+    private static final Serializer<Long> LONGS = IntegralSerializer.LONGS.sortedRunSerializer().get();
+
+    @Test
+    public void testRoundTripExtremes() throws IOException {
+        List<Long> values = Arrays.asList(Long.MIN_VALUE, -1L, 0L, 1L, Long.MAX_VALUE, Long.MIN_VALUE, 5L);
+        assertEquals(values, read(write(values)));
+    }
+
+    @Test
+    public void testSortedValuesAreCompact() throws IOException {
+        List<Long> values = new ArrayList<>();
+        for (long i = 0; i < 3000; i++) {
+            values.add(1_000_000_000_000L + i * 3);
+        }
+        byte[] bytes = write(values);
+        // one byte per value after the first of each block
+        assertTrue(bytes.length < 3100);
+        assertEquals(values, read(bytes));
+    }
+
+    @Test
+    public void testConcatenated() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(write(Arrays.asList(100L, 200L)));
+        out.write(write(Arrays.asList(7L)));
+        assertEquals(Arrays.asList(100L, 200L, 7L), read(out.toByteArray()));
+    }
+
+    @Test
+    public void testFlushEndsBlock() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Writer<Long> w = LONGS.createWriter(out);
+        w.write(3L);
+        w.flush();
+        assertEquals(2, out.size());
+        w.write(4L);
+        w.close();
+        assertEquals(Arrays.asList(3L, 4L), read(out.toByteArray()));
+    }
+
+    @Test
+    public void testIntegers() throws IOException {
+        Serializer<Integer> s = IntegralSerializer.INTEGERS.sortedRunSerializer().get();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Writer<Integer> w = s.createWriter(out)) {
+            w.write(Integer.MIN_VALUE);
+            w.write(Integer.MAX_VALUE);
+        }
+        assertEquals(Arrays.asList(Integer.MIN_VALUE, Integer.MAX_VALUE),
+                s.createReader(new ByteArrayInputStream(out.toByteArray())).stream().collect(Collectors.toList()));
+    }
+
+    private static byte[] write(List<Long> values) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Writer<Long> w = LONGS.createWriter(out)) {
+            for (Long v : values) {
+                w.write(v);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static List<Long> read(byte[] bytes) {
+        return LONGS.createReader(new ByteArrayInputStream(bytes)).stream().collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,100 @@
+package com.github.davidmoten.bigsorter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class FramedDataSerializerTest {
+
+    @Test
+    public void testRoundTripWithoutEofException() throws IOException {
+        Serializer<Integer> s = new Ints().framed(10);
+        byte[] bytes = write(s, 100);
+        Reader<Integer> r = s.createReader(new ByteArrayInputStream(bytes));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, (int) r.read());
+        }
+        assertNull(r.read());
+        assertNull(r.read());
+    }
+
+    @Test
+    public void testSkipDoesNotDecodeWholeBlocks() throws IOException {
+        Ints ints = new Ints();
+        // blocks of 3 values (12 bytes)
+        Serializer<Integer> s = ints.framed(12);
+        byte[] bytes = write(s, 100);
+        Reader<Integer> r = s.createReader(new ByteArrayInputStream(bytes));
+        assertEquals(0, (int) r.read());
+        ints.reads.set(0);
+        assertEquals(50, r.skip(50));
+        assertEquals(51, (int) r.read());
+        // 2 values decoded from the first block, the next 16 blocks skipped whole
+        // then the value returned
+        assertEquals(2 + 1, ints.reads.get());
+        assertEquals(48, r.skip(1000));
+        assertNull(r.read());
+    }
+
+    @Test
+    public void testEmptyAndConcatenated() throws IOException {
+        Serializer<Integer> s = new Ints().framed();
+        assertEquals(0, write(s, 0).length);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(write(s, 2));
+        out.write(write(s, 3));
+        assertEquals(5, s.createReader(new ByteArrayInputStream(out.toByteArray())).stream().count());
+    }
+
+    @Test
+    public void testSortWithFramedSpill() {
+        Ints ints = new Ints();
+        List<Integer> list = Sorter.serializer(ints) //
+                .comparator(Integer::compare) //
+                .inputItems(9, 3, 7, 1, 5) //
+                .outputAsStream() //
+                .maxItemsPerFile(2) //
+                .spillSerializer(ints.framed(8)) //
+                .sort() //
+                .collect(Collectors.toList());
+        assertEquals(Arrays.asList(1, 3, 5, 7, 9), list);
+    }
+
+    private static byte[] write(Serializer<Integer> s, int n) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Writer<Integer> w = s.createWriter(out)) {
+            for (int i = 0; i < n; i++) {
+                w.write(i);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static final class Ints extends DataSerializer<Integer> {
+
+        final AtomicInteger reads = new AtomicInteger();
+
+        @Override
+        public Integer read(DataInputStream dis) throws IOException {
+            reads.incrementAndGet();
+            return dis.readInt();
+        }
+
+        @Override
+        public void write(DataOutputStream dos, Integer value) throws IOException {
+            dos.writeInt(value);
+        }
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.github.davidmoten.bigsorter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class FrontCodedSerializerTest {
+
+    @Test
+    public void testRoundTripStrings() throws IOException {
+        List<String> values = Arrays.asList("", "a", "ab", "abc", "abé", "abé中", "b", "", "zzz");
+        assertEquals(values, read(write(values)));
+    }
+
+    @Test
+    public void testSharedPrefixesAreCompact() throws IOException {
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            values.add(String.format("https://example.com/some/long/path/to/resource/%06d", i));
+        }
+        int full = values.stream().mapToInt(s -> s.length() + 1).sum();
+        byte[] bytes = write(values);
+        assertTrue(bytes.length * 5 < full);
+        assertEquals(values, read(bytes));
+    }
+
+    @Test
+    public void testConcatenated() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(write(Arrays.asList("abc", "abd")));
+        out.write(write(Arrays.asList("abe")));
+        assertEquals(Arrays.asList("abc", "abd", "abe"), read(out.toByteArray()));
+    }
+
+    @Test
+    public void testBytesWriterDoesNotKeepCallersArray() throws IOException {
+        Serializer<byte[]> s = Serializer.frontCodedBytes();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[] { 1, 2, 3 };
+        try (Writer<byte[]> w = s.createWriter(out)) {
+            w.write(buffer);
+            // the caller reuses its buffer for the next record
+            buffer[2] = 4;
+            w.write(buffer);
+        }
+        Reader<byte[]> r = s.createReader(new ByteArrayInputStream(out.toByteArray()));
+        assertArrayEquals(new byte[] { 1, 2, 3 }, r.read());
+        assertArrayEquals(new byte[] { 1, 2, 4 }, r.read());
+        assertNull(r.read());
+    }
+
+    @Test
+    public void testBytes() throws IOException {
+        Serializer<byte[]> s = Serializer.frontCodedBytes();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Writer<byte[]> w = s.createWriter(out)) {
+            w.write(new byte[] { 1, 2, 3 });
+            w.write(new byte[] { 1, 2 });
+        }
+        Reader<byte[]> r = s.createReader(new ByteArrayInputStream(out.toByteArray()));
+        byte[] a = r.read();
+        byte[] b = r.read();
+        assertArrayEquals(new byte[] { 1, 2, 3 }, a);
+        assertArrayEquals(new byte[] { 1, 2 }, b);
+        assertNull(r.read());
+    }
+
+    private static byte[] write(List<String> values) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Writer<String> w = Serializer.frontCodedStrings().createWriter(out)) {
+            for (String v : values) {
+                w.write(v);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static List<String> read(byte[] bytes) {
+        return Serializer.frontCodedStrings().createReader(new ByteArrayInputStream(bytes)).stream()
+                .collect(Collectors.toList());
+    }
+
+}
@@ -1,10 +1,16 @@
 package com.github.davidmoten.bigsorter;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
 
 import org.junit.Test;
 
@@ -28,4 +34,44 @@ public class JavaSerializerTest {
         assertTrue(out.flushed);
     }
     
+    @Test
+    public void testResetForgetsWrittenObjects() throws IOException {
+        // without a reset the second write of the same instance would be a back
+        // reference to the first and the change would be lost
+        ArrayList<Integer> list = new ArrayList<>();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Serializer<ArrayList<Integer>> s = Serializer.java(1);
+        try (Writer<ArrayList<Integer>> w = s.createWriter(out)) {
+            list.add(1);
+            w.write(list);
+            list.add(2);
+            w.write(list);
+        }
+        Reader<ArrayList<Integer>> r = s.createReader(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(Arrays.asList(1), r.read());
+        assertEquals(Arrays.asList(1, 2), r.read());
+        assertNull(r.read());
+    }
+
+    @Test
+    public void testRoundTripAcrossResets() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Serializer<Long> s = Serializer.java();
+        try (Writer<Long> w = s.createWriter(out)) {
+            for (long i = 0; i < 2500; i++) {
+                w.write(i);
+            }
+        }
+        Reader<Long> r = s.createReader(new ByteArrayInputStream(out.toByteArray()));
+        for (long i = 0; i < 2500; i++) {
+            assertEquals(i, (long) r.read());
+        }
+        assertNull(r.read());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testResetIntervalMustBePositive() {
+        Serializer.java(0);
+    }
+
 }
@@ -0,0 +1,115 @@
+package com.github.davidmoten.bigsorter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class JobManifestTest {
+
+    @Test
+    public void testAppendReplaceAndReopen() throws IOException {
+        File dir = directory("target/job-manifest1");
+        JobManifest m = JobManifest.open(dir);
+        assertTrue(m.entries().isEmpty());
+        write(dir, "big-sorter-a", 3);
+        write(dir, "big-sorter-b", 4);
+        m.appendRun(new JobManifest.Entry("big-sorter-a", 1, 3, "QQ==", "Qg=="), 10);
+        m.appendRun(new JobManifest.Entry("big-sorter-b", 2, 4, "-", "-"), 20);
+        m = JobManifest.open(dir);
+        assertEquals(2, m.entries().size());
+        assertEquals(20, m.records());
+        assertFalse(m.splitComplete());
+        assertEquals("QQ==", m.entries().get(0).min);
+        m.replace(Collections.singletonList(m.entries().get(1)), true);
+        m = JobManifest.open(dir);
+        assertEquals(1, m.entries().size());
+        assertEquals("big-sorter-b", m.entries().get(0).name);
+        assertTrue(m.splitComplete());
+        // a is no longer referred to
+        assertFalse(new File(dir, "big-sorter-a").exists());
+        m.delete();
+        assertTrue(JobManifest.open(dir).entries().isEmpty());
+    }
+
+    @Test
+    public void testPartlyWrittenLineIgnored() throws IOException {
+        File dir = directory("target/job-manifest2");
+        JobManifest m = JobManifest.open(dir);
+        write(dir, "big-sorter-a", 3);
+        m.appendRun(new JobManifest.Entry("big-sorter-a", 1, 3, "-", "-"), 10);
+        write(dir, "big-sorter-b", 4);
+        Files.write(new File(dir, "manifest").toPath(), "run 20 big-sorter-b 2".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+        m = JobManifest.open(dir);
+        assertEquals(1, m.entries().size());
+        assertEquals(10, m.records());
+        // b was being registered so is deleted
+        assertFalse(new File(dir, "big-sorter-b").exists());
+        assertTrue(new File(dir, "big-sorter-a").exists());
+    }
+
+    @Test
+    public void testMissingRunStartsAgain() throws IOException {
+        File dir = directory("target/job-manifest3");
+        JobManifest m = JobManifest.open(dir);
+        write(dir, "big-sorter-a", 3);
+        write(dir, "big-sorter-b", 4);
+        m.appendRun(new JobManifest.Entry("big-sorter-a", 1, 3, "-", "-"), 10);
+        m.appendRun(new JobManifest.Entry("big-sorter-b", 2, 4, "-", "-"), 20);
+        new File(dir, "big-sorter-b").delete();
+        m = JobManifest.open(dir);
+        assertTrue(m.entries().isEmpty());
+        assertEquals(0, m.records());
+        assertEquals(0, dir.list().length);
+    }
+
+    @Test
+    public void testResumeKeepsFilesTheSorterDidNotCreate() throws IOException {
+        File dir = directory("target/job-manifest4");
+        JobManifest m = JobManifest.open(dir);
+        write(dir, "input.txt", 5);
+        write(dir, "big-sorter-a", 3);
+        write(dir, "big-sorter-orphan", 2);
+        write(dir, "manifest.tmp", 1);
+        m.appendRun(new JobManifest.Entry("big-sorter-a", 1, 3, "-", "-"), 10);
+        // valid resume deletes the unregistered temporary files only
+        m = JobManifest.open(dir);
+        assertEquals(1, m.entries().size());
+        assertFalse(new File(dir, "big-sorter-orphan").exists());
+        assertFalse(new File(dir, "manifest.tmp").exists());
+        assertTrue(new File(dir, "input.txt").exists());
+        // invalid resume (run has the wrong length) starts again but keeps input.txt
+        write(dir, "big-sorter-a", 4);
+        m = JobManifest.open(dir);
+        assertTrue(m.entries().isEmpty());
+        assertFalse(new File(dir, "big-sorter-a").exists());
+        assertFalse(new File(dir, "manifest").exists());
+        assertTrue(new File(dir, "input.txt").exists());
+        assertEquals(5, new File(dir, "input.txt").length());
+    }
+
+    private static File directory(String name) {
+        File dir = new File(name);
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        return dir;
+    }
+
+    private static void write(File dir, String name, int length) throws IOException {
+        Files.write(new File(dir, name).toPath(), new byte[length]);
+    }
+
+}
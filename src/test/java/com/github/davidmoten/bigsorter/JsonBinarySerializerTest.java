@@ -0,0 +1,224 @@
+package com.github.davidmoten.bigsorter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.Test;
+
+public class JsonBinarySerializerTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final JsonNodeFactory FACTORY = JsonNodeFactory.instance;
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        ObjectNode a = (ObjectNode) MAPPER.readTree(
+                "{\"s\":\"héllo\",\"i\":-3,\"l\":12345678901,\"d\":1.25,\"t\":true,\"f\":false,\"n\":null,"
+                        + "\"a\":[1,[],{}],\"o\":{\"x\":\"\"}}");
+        a.put("big", new BigInteger("123456789012345678901234567890"));
+        a.put("dec", new BigDecimal("1.000000000000000000001"));
+        a.put("fl", 2.5f);
+        a.put("bin", new byte[] { 1, 2, 3 });
+        ObjectNode b = MAPPER.createObjectNode();
+        List<ObjectNode> list = roundTrip(a, b);
+        assertEquals(Arrays.asList(a, b), list);
+    }
+
+    @Test
+    public void testNull() throws IOException {
+        JsonNode node = roundTripValue(FACTORY.nullNode());
+        assertTrue(node.isNull());
+    }
+
+    @Test
+    public void testBooleans() throws IOException {
+        assertEquals(FACTORY.booleanNode(true), roundTripValue(FACTORY.booleanNode(true)));
+        assertEquals(FACTORY.booleanNode(false), roundTripValue(FACTORY.booleanNode(false)));
+    }
+
+    @Test
+    public void testInts() throws IOException {
+        for (int v : new int[] { 0, 1, -1, 63, -64, 64, Integer.MAX_VALUE, Integer.MIN_VALUE }) {
+            assertEquals(FACTORY.numberNode(v), roundTripValue(FACTORY.numberNode(v)));
+        }
+    }
+
+    @Test
+    public void testLongs() throws IOException {
+        for (long v : new long[] { 1L + Integer.MAX_VALUE, Integer.MIN_VALUE - 1L, Long.MAX_VALUE, Long.MIN_VALUE }) {
+            assertEquals(FACTORY.numberNode(v), roundTripValue(FACTORY.numberNode(v)));
+        }
+    }
+
+    @Test
+    public void testLongInIntRangeReadAsInt() throws IOException {
+        JsonNode node = roundTripValue(FACTORY.numberNode(5L));
+        assertTrue(node.isInt());
+        assertEquals(5, node.intValue());
+    }
+
+    @Test
+    public void testBigIntegers() throws IOException {
+        for (String v : new String[] { "0", "-98765432109876543210987654321", "98765432109876543210987654321" }) {
+            JsonNode node = FACTORY.numberNode(new BigInteger(v));
+            assertEquals(node, roundTripValue(node));
+        }
+    }
+
+    @Test
+    public void testDoubles() throws IOException {
+        for (double v : new double[] { 0, -0.0, 1.5, -1e300, Double.MIN_VALUE, Double.MAX_VALUE, Double.NaN,
+                Double.POSITIVE_INFINITY }) {
+            JsonNode node = roundTripValue(FACTORY.numberNode(v));
+            assertTrue(node.isDouble());
+            assertEquals(Double.doubleToLongBits(v), Double.doubleToLongBits(node.doubleValue()));
+        }
+    }
+
+    @Test
+    public void testFloats() throws IOException {
+        JsonNode node = roundTripValue(FACTORY.numberNode(-3.25f));
+        assertTrue(node.isFloat());
+        assertEquals(-3.25f, node.floatValue(), 0);
+    }
+
+    @Test
+    public void testDecimals() throws IOException {
+        for (String v : new String[] { "0.1", "-1.000000000000000000001", "1E+400", "123.4500" }) {
+            JsonNode node = roundTripValue(FACTORY.numberNode(new BigDecimal(v)));
+            assertTrue(node.isBigDecimal());
+            // scale is kept as well as the value
+            assertEquals(new BigDecimal(v), node.decimalValue());
+        }
+    }
+
+    @Test
+    public void testEmptyArrayAndObject() throws IOException {
+        assertEquals(FACTORY.arrayNode(), roundTripValue(FACTORY.arrayNode()));
+        assertEquals(FACTORY.objectNode(), roundTripValue(FACTORY.objectNode()));
+        assertEquals(FACTORY.objectNode(), roundTrip(FACTORY.objectNode()).get(0));
+    }
+
+    @Test
+    public void testNestedArraysAndObjects() throws IOException {
+        ObjectNode node = (ObjectNode) MAPPER.readTree("{\"a\":[[],[[1,{\"b\":[null,{}]}]],{\"c\":{\"d\":{\"e\":[]}}}],"
+                + "\"f\":{\"g\":[true,\"x\",2.5]}}");
+        assertEquals(node, roundTrip(node).get(0));
+    }
+
+    @Test
+    public void testFieldOrderKept() throws IOException {
+        ObjectNode node = (ObjectNode) MAPPER.readTree("{\"z\":1,\"a\":2,\"m\":3}");
+        List<String> names = new ArrayList<>();
+        roundTrip(node).get(0).fieldNames().forEachRemaining(names::add);
+        assertEquals(Arrays.asList("z", "a", "m"), names);
+    }
+
+    @Test
+    public void testNonAsciiStrings() throws IOException {
+        ObjectNode node = FACTORY.objectNode();
+        node.put("é中", "héllo 世界");
+        // a character outside the basic multilingual plane (a surrogate pair)
+        node.put("emoji", "😀");
+        node.put("", "");
+        node.put("nul", "a\u0000b");
+        assertEquals(node, roundTrip(node).get(0));
+    }
+
+    @Test
+    public void testConcatenatedWriters() throws IOException {
+        ObjectNode a = (ObjectNode) MAPPER.readTree("{\"x\":1}");
+        ObjectNode b = (ObjectNode) MAPPER.readTree("{\"x\":2}");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        write(bytes, a);
+        write(bytes, b);
+        assertEquals(Arrays.asList(a, b), read(bytes.toByteArray()));
+    }
+
+    @Test
+    public void testSortWithManySpilledRunsKeepsOrder() throws IOException {
+        List<ObjectNode> input = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            int key = (i * 7919) % 500;
+            ObjectNode node = FACTORY.objectNode();
+            node.put("key", key);
+            node.put("name", "é" + key);
+            node.putArray("values").add(key * 1.5).add(new BigDecimal(key + ".10")).addNull().addObject()
+                    .put("big", BigInteger.valueOf(key).shiftLeft(70));
+            input.add(node);
+        }
+        List<ObjectNode> list = Sorter //
+                .serializer(Serializer.jsonBinary()) //
+                .comparator(Comparator.comparingInt((ObjectNode x) -> x.get("key").intValue())) //
+                .inputItems(input) //
+                .outputAsStream() //
+                .maxItemsPerFile(20) //
+                .maxFilesPerMerge(3) //
+                .sort() //
+                .collect(Collectors.toList());
+        assertEquals(500, list.size());
+        for (int i = 0; i < list.size(); i++) {
+            ObjectNode node = list.get(i);
+            assertEquals(i, node.get("key").intValue());
+            assertEquals(input.get(indexOf(input, i)), node);
+        }
+    }
+
+    private static int indexOf(List<ObjectNode> list, int key) {
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i).get("key").intValue() == key) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static JsonNode roundTripValue(JsonNode value) throws IOException {
+        ObjectNode node = FACTORY.objectNode();
+        node.set("v", value);
+        return roundTrip(node).get(0).get("v");
+    }
+
+    private static List<ObjectNode> roundTrip(ObjectNode... nodes) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        write(bytes, nodes);
+        return read(bytes.toByteArray());
+    }
+
+    private static void write(ByteArrayOutputStream bytes, ObjectNode... nodes) throws IOException {
+        try (Writer<ObjectNode> w = Serializer.jsonBinary().createWriter(bytes)) {
+            for (ObjectNode node : nodes) {
+                w.write(node);
+            }
+        }
+    }
+
+    private static List<ObjectNode> read(byte[] bytes) throws IOException {
+        try (Reader<ObjectNode> r = Serializer.jsonBinary().createReader(new ByteArrayInputStream(bytes))) {
+            List<ObjectNode> list = new ArrayList<>();
+            ObjectNode node;
+            while ((node = r.read()) != null) {
+                list.add(node);
+            }
+            assertNull(r.read());
+            return list;
+        }
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.github.davidmoten.bigsorter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class JsonLinesSerializerTest {
+
+    @Test
+    public void testReadKeysAndWriteVerbatim() throws IOException {
+        String s = "{\"name\" : \"fred\", \"a\":{\"b\":[1, {\"c\":2.5}]}, \"n\":12345678901234567890}\r\n" //
+                + "\n" //
+                + "  \n" //
+                + "{\"skip\":{\"name\":\"x\"},\"a\":[],\"name\":null}\n" //
+                + "[1,2]";
+        Serializer<JsonLine> ser = Serializer.jsonLines("/name", "/a/b/1/c", "/n", "/a/b/0");
+        List<JsonLine> lines = read(ser, s, 8);
+        assertEquals(3, lines.size());
+        JsonLine a = lines.get(0);
+        assertEquals("fred", a.key(0));
+        assertEquals(2.5, a.key(1));
+        assertEquals(new BigInteger("12345678901234567890"), a.key(2));
+        assertEquals(1, a.key(3));
+        JsonLine b = lines.get(1);
+        assertNull(b.key(0));
+        assertNull(b.key(1));
+        assertNull(lines.get(2).key(0));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Writer<JsonLine> w = ser.createWriter(out)) {
+            for (JsonLine line : lines) {
+                w.write(line);
+            }
+        }
+        assertEquals("{\"name\" : \"fred\", \"a\":{\"b\":[1, {\"c\":2.5}]}, \"n\":12345678901234567890}\n"
+                + "{\"skip\":{\"name\":\"x\"},\"a\":[],\"name\":null}\n" //
+                + "[1,2]\n", new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testLongLineGrowsBuffer() throws IOException {
+        StringBuilder b = new StringBuilder("{\"k\":\"");
+        for (int i = 0; i < 200000; i++) {
+            b.append('x');
+        }
+        b.append("\"}\n{\"k\":\"a\"}\n");
+        List<JsonLine> lines = read(Serializer.jsonLines("/k"), b.toString(), 0);
+        assertEquals(2, lines.size());
+        assertEquals(200000, ((String) lines.get(0).key(0)).length());
+        assertEquals("a", lines.get(1).key(0));
+    }
+
+    @Test
+    public void testComparator() throws IOException {
+        List<JsonLine> lines = read(Serializer.jsonLines("/k"),
+                "{\"k\":\"a\"}\n{\"k\":2.5}\n{\"k\":2}\n{}\n{\"k\":true}\n{\"k\":12345678901234567890}", 0);
+        lines.sort(JsonLine.comparator());
+        assertEquals("[{}, {\"k\":true}, {\"k\":2}, {\"k\":2.5}, {\"k\":12345678901234567890}, {\"k\":\"a\"}]",
+                lines.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyPointerNotAllowed() {
+        Serializer.jsonLines("");
+    }
+
+    private static List<JsonLine> read(Serializer<JsonLine> ser, String s, int chunk) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        // deliver the input in small pieces to exercise refilling the buffer
+        ByteArrayInputStream in = new ByteArrayInputStream(bytes) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, chunk == 0 ? len : Math.min(len, chunk));
+            }
+        };
+        List<JsonLine> list = ser.createReader(in).stream().collect(Collectors.toList());
+        assertTrue(list.stream().allMatch(x -> x.keyCount() > 0));
+        return list;
+    }
+
+}
@@ -1,11 +1,14 @@
 package com.github.davidmoten.bigsorter;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 
 import org.junit.Test;
 
@@ -61,4 +64,20 @@ public class LineSerializerTest {
         assertTrue(out.flushed);
     }
     
+    @Test
+    public void testConcatenableOnlyWithoutByteOrderMark() throws IOException {
+        assertTrue(Serializer.linesUtf8().concatenable());
+        assertTrue(Serializer.lines(StandardCharsets.UTF_16BE).concatenable());
+        assertFalse(Serializer.lines(StandardCharsets.UTF_16).concatenable());
+        // non-overlapping runs must not be joined as bytes with a BOM each
+        File output = new File("target/lines-utf16");
+        Sorter //
+                .lines(StandardCharsets.UTF_16) //
+                .input(StandardCharsets.UTF_16, "1\n2\n3\n4") //
+                .output(output) //
+                .maxItemsPerFile(2) //
+                .sort();
+        assertEquals("1\n2\n3\n4\n", new String(Files.readAllBytes(output.toPath()), StandardCharsets.UTF_16));
+    }
+
 }
@@ -0,0 +1,109 @@
+package com.github.davidmoten.bigsorter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class MemoryTempStorageTest {
+
+    private static final TempStorage DISK = TempStorage.disk(
+            Collections.singletonList(new File("target/temp-memory-storage")), TempFilePlacement.ROUND_ROBIN);
+
+    @Test
+    public void testRoundTripInMemory() throws IOException {
+        for (boolean offHeap : new boolean[] { false, true }) {
+            MemoryTempStorage storage = new MemoryTempStorage(10 * 1024 * 1024, offHeap, DISK);
+            byte[] bytes = bytes(100000);
+            TempBlob blob = write(storage, bytes);
+            assertFalse(blob.file().isPresent());
+            assertEquals(bytes.length, blob.length());
+            assertArrayEquals(bytes, read(blob));
+            // can be read more than once
+            assertArrayEquals(bytes, read(blob));
+            assertTrue(storage.used() > 0);
+            blob.delete();
+            if (!offHeap) {
+                assertEquals(0, storage.used());
+            }
+        }
+    }
+
+    @Test
+    public void testSpillsWhenBudgetExceeded() throws IOException {
+        MemoryTempStorage storage = new MemoryTempStorage(50000, false, DISK);
+        byte[] bytes = bytes(100000);
+        TempBlob blob = write(storage, bytes);
+        assertTrue(blob.file().isPresent());
+        assertEquals(bytes.length, blob.length());
+        assertEquals(bytes.length, blob.file().get().length());
+        assertArrayEquals(bytes, read(blob));
+        // memory released on spill
+        assertEquals(0, storage.used());
+        blob.delete();
+        assertFalse(blob.file().get().exists());
+    }
+
+    @Test
+    public void testPooledChunksReused() throws IOException {
+        MemoryTempStorage storage = new MemoryTempStorage(30000, true, DISK);
+        for (int i = 0; i < 10; i++) {
+            // fits in an 8KB chunk and a 16KB chunk
+            TempBlob blob = write(storage, bytes(20000));
+            assertFalse(blob.file().isPresent());
+            blob.delete();
+        }
+        assertEquals(8192 + 16384, storage.used());
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        TempBlob blob = new MemoryTempStorage(1000, false, DISK).create(Collections.emptyList());
+        assertEquals(0, blob.length());
+        assertEquals(0, read(blob).length);
+    }
+
+    private static byte[] bytes(int n) {
+        byte[] bytes = new byte[n];
+        for (int i = 0; i < n; i++) {
+            bytes[i] = (byte) (i * 31);
+        }
+        return bytes;
+    }
+
+    private static TempBlob write(TempStorage storage, byte[] bytes) throws IOException {
+        TempBlob blob = storage.create(Collections.emptyList());
+        try (OutputStream out = blob.openOutput()) {
+            // write in uneven pieces to cross chunk boundaries
+            int i = 0;
+            while (i < bytes.length) {
+                int n = Math.min(777, bytes.length - i);
+                out.write(bytes, i, n);
+                i += n;
+            }
+        }
+        return blob;
+    }
+
+    private static byte[] read(TempBlob blob) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (InputStream in = blob.openInput()) {
+            byte[] buffer = new byte[1000];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, n);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+}
@@ -1,9 +1,35 @@
 package com.github.davidmoten.bigsorter;
 
+import java.io.File;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
 public class QueryMain {
     
     public static void main(String[] args) {
-        
+        File output = new File("target/query-ints");
+        Random r = new Random();
+        int n = 10_000_000;
+        Sorter //
+                .serializer(Serializer.integers()) //
+                .naturalOrder() //
+                .inputItems(IntStream.range(0, n).map(i -> r.nextInt()).iterator()) //
+                .output(output) //
+                .outputIndex(1000) //
+                .loggerStdOut() //
+                .sort();
+
+        SortedIndex<Integer> index = SortedIndex.open(output, Serializer.integers(), Comparator.naturalOrder());
+        int lookups = 10000;
+        int found = 0;
+        long t = System.currentTimeMillis();
+        for (int i = 0; i < lookups; i++) {
+            if (index.find(r.nextInt()).isPresent()) {
+                found++;
+            }
+        }
+        System.out.println(lookups + " lookups (" + found + " found) in " + (System.currentTimeMillis() - t) + "ms");
     }
 
 }
@@ -0,0 +1,85 @@
+package com.github.davidmoten.bigsorter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.apache.commons.csv.CSVFormat;
+import org.junit.Test;
+
+public class RawCsvSerializerTest {
+
+    private static final CSVFormat WITH_HEADER = CSVFormat.DEFAULT.builder().setHeader().setSkipHeaderRecord(true)
+            .setRecordSeparator("\n").build();
+
+    @Test
+    public void testReadKeysAndWriteVerbatim() throws IOException {
+        String s = "a,b,c\r\n" //
+                + "1,\"x, \"\"y\"\"\nz\",  3 \r\n" //
+                + "\n" //
+                + "2,,é\n" //
+                + "3";
+        Serializer<RawCsvRecord> ser = Serializer.csvRaw(WITH_HEADER, StandardCharsets.UTF_8, 1, 2, 5);
+        List<RawCsvRecord> list = read(ser, s);
+        assertEquals(3, list.size());
+        assertEquals("x, \"y\"\nz", list.get(0).key(0));
+        assertEquals("  3 ", list.get(0).key(1));
+        assertNull(list.get(0).key(2));
+        assertEquals("", list.get(1).key(0));
+        assertEquals("é", list.get(1).key(1));
+        assertNull(list.get(2).key(0));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Writer<RawCsvRecord> w = ser.createWriter(out)) {
+            for (RawCsvRecord r : list) {
+                w.write(r);
+            }
+        }
+        assertEquals("a,b,c\n1,\"x, \"\"y\"\"\nz\",  3 \n2,,é\n3\n", new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testWithoutHeader() throws IOException {
+        Serializer<RawCsvRecord> ser = Serializer.csvRaw(CSVFormat.DEFAULT, StandardCharsets.UTF_8, 0);
+        List<RawCsvRecord> list = read(ser, "a,b\nc,d\n");
+        assertEquals(2, list.size());
+        assertEquals("a", list.get(0).key(0));
+        assertEquals("c,d", list.get(1).toString());
+    }
+
+    @Test
+    public void testLatin1WithoutQuoteCharacter() {
+        // 0xFF is ÿ in ISO-8859-1 and must not be taken for a quote
+        CSVFormat format = CSVFormat.DEFAULT.builder().setQuote(null).get();
+        Serializer<RawCsvRecord> ser = Serializer.csvRaw(format, StandardCharsets.ISO_8859_1, 1);
+        List<RawCsvRecord> list = ser
+                .createReader(new ByteArrayInputStream("ÿa,b\nc,ÿd\"e\n".getBytes(StandardCharsets.ISO_8859_1)))
+                .stream() //
+                .collect(Collectors.toList());
+        assertEquals(2, list.size());
+        assertEquals("b", list.get(0).key(0));
+        assertEquals("ÿd\"e", list.get(1).key(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedCharset() {
+        Serializer.csvRaw(CSVFormat.DEFAULT, StandardCharsets.UTF_16, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEscapeNotSupported() {
+        Serializer.csvRaw(CSVFormat.DEFAULT.builder().setEscape('\\').build(), StandardCharsets.UTF_8, 0);
+    }
+
+    private static List<RawCsvRecord> read(Serializer<RawCsvRecord> ser, String s) {
+        return ser.createReader(new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8))) //
+                .stream() //
+                .collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,111 @@
+package com.github.davidmoten.bigsorter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class SegmentedTempStorageTest {
+
+    private static final File DIRECTORY = new File("target/temp-segments");
+
+    @Test
+    public void testBlobsShareSegments() throws IOException {
+        SegmentedTempStorage storage = new SegmentedTempStorage(Collections.singletonList(DIRECTORY), 1000);
+        byte[] a = bytes(300, 1);
+        byte[] b = bytes(300, 2);
+        TempBlob x = write(storage, a);
+        TempBlob y = write(storage, b);
+        assertEquals(1, storage.segments());
+        assertFalse(x.file().isPresent());
+        assertArrayEquals(a, read(x));
+        assertArrayEquals(b, read(y));
+        x.delete();
+        assertEquals(1, storage.segments());
+        y.delete();
+        assertEquals(0, storage.segments());
+    }
+
+    @Test
+    public void testBlobSpansSegments() throws IOException {
+        SegmentedTempStorage storage = new SegmentedTempStorage(Collections.singletonList(DIRECTORY), 1000);
+        TempBlob x = write(storage, bytes(300, 1));
+        byte[] b = bytes(2500, 2);
+        TempBlob y = write(storage, b);
+        assertEquals(b.length, y.length());
+        assertEquals(3, storage.segments());
+        assertArrayEquals(b, read(y));
+        y.delete();
+        // the first segment holds part of x
+        assertEquals(1, storage.segments());
+        x.delete();
+        assertEquals(0, storage.segments());
+    }
+
+    @Test
+    public void testConcurrentWritersUseDifferentSegments() throws IOException {
+        SegmentedTempStorage storage = new SegmentedTempStorage(Collections.singletonList(DIRECTORY), 1000);
+        byte[] a = bytes(100, 1);
+        byte[] b = bytes(100, 2);
+        TempBlob x = storage.create(Collections.emptyList());
+        TempBlob y = storage.create(Collections.emptyList());
+        try (OutputStream outX = x.openOutput(); OutputStream outY = y.openOutput()) {
+            for (int i = 0; i < 100; i += 10) {
+                outX.write(a, i, 10);
+                outY.write(b, i, 10);
+            }
+        }
+        assertEquals(2, storage.segments());
+        assertArrayEquals(a, read(x));
+        assertArrayEquals(b, read(y));
+        x.delete();
+        y.delete();
+        assertEquals(0, storage.segments());
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        SegmentedTempStorage storage = new SegmentedTempStorage(Collections.singletonList(DIRECTORY), 1000);
+        TempBlob x = write(storage, new byte[0]);
+        assertEquals(0, storage.segments());
+        assertEquals(0, read(x).length);
+        x.delete();
+    }
+
+    private static byte[] bytes(int n, int seed) {
+        byte[] bytes = new byte[n];
+        for (int i = 0; i < n; i++) {
+            bytes[i] = (byte) (i * seed + seed);
+        }
+        return bytes;
+    }
+
+    private static TempBlob write(TempStorage storage, byte[] bytes) throws IOException {
+        TempBlob blob = storage.create(Collections.emptyList());
+        try (OutputStream out = blob.openOutput()) {
+            out.write(bytes);
+        }
+        return blob;
+    }
+
+    private static byte[] read(TempBlob blob) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (InputStream in = blob.openInput()) {
+            byte[] buffer = new byte[128];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, n);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+}
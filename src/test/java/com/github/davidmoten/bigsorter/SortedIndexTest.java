@@ -0,0 +1,100 @@
+package com.github.davidmoten.bigsorter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class SortedIndexTest {
+
+    @Test
+    public void testLookupsWithDuplicatesAcrossBlocks() {
+        File output = new File("target/sorted-index1");
+        List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            // each value appears 3 times so duplicates cross block boundaries
+            values.add((i * 37 % 1000) / 3 * 2);
+        }
+        Sorter //
+                .serializer(Serializer.integers()) //
+                .naturalOrder() //
+                .inputItems(values) //
+                .output(output) //
+                .maxItemsPerFile(100) //
+                .outputIndex(10) //
+                .sort();
+        Collections.sort(values);
+        SortedIndex<Integer> index = SortedIndex.open(output, Serializer.integers(), Comparator.naturalOrder());
+        assertEquals(100, index.blocks());
+        assertEquals(values, read(index.from(Integer.MIN_VALUE)));
+        assertEquals(Optional.of(100), index.find(100));
+        assertEquals(Optional.empty(), index.find(101));
+        assertEquals(Optional.empty(), index.find(100000));
+        assertEquals(Arrays.asList(100, 100, 100, 102, 102, 102), read(index.range(99, 104)));
+        assertEquals(Arrays.asList(664, 664, 664, 666), read(index.from(663)));
+        assertEquals(Collections.emptyList(), read(index.range(101, 102)));
+    }
+
+    @Test
+    public void testLinesIndex() throws IOException {
+        File output = new File("target/sorted-index2");
+        Sorter //
+                .linesUtf8() //
+                .input("fig\napple\ndate\ncherry\nbanana\negg\n") //
+                .output(output) //
+                .outputIndex(2) //
+                .sort();
+        assertEquals("apple\nbanana\ncherry\ndate\negg\nfig\n",
+                new String(Files.readAllBytes(output.toPath()), "UTF-8"));
+        SortedIndex<String> index = SortedIndex.open(output, Serializer.linesUtf8(), Comparator.naturalOrder());
+        assertEquals(3, index.blocks());
+        assertEquals(Arrays.asList("cherry", "date"), read(index.range("c", "e")));
+        assertEquals(Optional.of("egg"), index.find("egg"));
+    }
+
+    @Test
+    public void testEmptyOutput() {
+        File output = new File("target/sorted-index3");
+        Sorter //
+                .linesUtf8() //
+                .input("") //
+                .output(output) //
+                .outputIndex(2) //
+                .sort();
+        SortedIndex<String> index = SortedIndex.open(output, Serializer.linesUtf8(), Comparator.naturalOrder());
+        assertEquals(0, index.blocks());
+        assertFalse(index.find("a").isPresent());
+        assertTrue(read(index.from("a")).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNeedsConcatenableSerializer() {
+        Sorter //
+                .serializer(Serializer.jsonArray()) //
+                .comparator((x, y) -> 0) //
+                .input("[]") //
+                .output(new File("target/sorted-index4")) //
+                .outputIndex(2);
+    }
+
+    private static <T> List<T> read(Reader<T> r) {
+        try (Reader<T> reader = r) {
+            return reader.stream().collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}
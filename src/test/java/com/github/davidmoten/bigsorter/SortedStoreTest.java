@@ -0,0 +1,194 @@
+package com.github.davidmoten.bigsorter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+public class SortedStoreTest {
+
+    @Test
+    public void testAddBatchesAndCompact() {
+        File dir = directory("target/sorted-store1");
+        List<Integer> all = new ArrayList<>();
+        Random random = new Random(1);
+        try (SortedStore<Integer> store = store(dir, false)) {
+            for (int i = 0; i < 10; i++) {
+                List<Integer> batch = new ArrayList<>();
+                for (int j = 0; j < 100; j++) {
+                    batch.add(random.nextInt(1000));
+                }
+                store.add(batch);
+                all.addAll(batch);
+            }
+            Collections.sort(all);
+            assertEquals(all, list(store));
+            // 10 batches with 3 runs per level: 9 batches become one run on level 2
+            assertEquals(Arrays.asList("run-0-9-9", "run-2-0-8"), store.runNames());
+        }
+    }
+
+    @Test
+    public void testReaderSeesSnapshotAndKeepsMergedRuns() throws IOException {
+        File dir = directory("target/sorted-store2");
+        try (SortedStore<Integer> store = store(dir, false)) {
+            store.add(Arrays.asList(5, 1));
+            store.add(Arrays.asList(4, 2));
+            try (Reader<Integer> r = store.reader()) {
+                assertEquals(1, (int) r.read());
+                // merges the two runs with this one
+                store.add(Arrays.asList(3));
+                assertEquals(Arrays.asList("run-1-0-2"), store.runNames());
+                // the merged away runs are still being read
+                assertTrue(new File(dir, "run-0-0-0").exists());
+                assertEquals(Arrays.asList(2, 4, 5), r.stream().collect(Collectors.toList()));
+            }
+            assertFalse(new File(dir, "run-0-0-0").exists());
+            assertEquals(Arrays.asList(1, 2, 3, 4, 5), list(store));
+        }
+    }
+
+    @Test
+    public void testReopenDeletesRunsCoveredByMergedRun() throws IOException {
+        File dir = directory("target/sorted-store3");
+        try (SortedStore<Integer> store = store(dir, false)) {
+            store.add(Arrays.asList(3, 1));
+            store.add(Arrays.asList(2));
+        }
+        // as if stopped after installing a merged run but before deleting its inputs
+        try (Writer<Integer> w = Serializer.integers()
+                .createWriter(new FileOutputStream(new File(dir, "run-1-0-1")))) {
+            w.write(1);
+            w.write(2);
+            w.write(3);
+        }
+        new File(dir, "merge-0-1.tmp").createNewFile();
+        try (SortedStore<Integer> store = store(dir, false)) {
+            assertEquals(Arrays.asList("run-1-0-1"), store.runNames());
+            assertEquals(Arrays.asList(1, 2, 3), list(store));
+            store.add(Arrays.asList(0));
+            assertEquals(Arrays.asList("run-0-2-2", "run-1-0-1"), store.runNames());
+            assertEquals(Arrays.asList(0, 1, 2, 3), list(store));
+        }
+        assertFalse(new File(dir, "merge-0-1.tmp").exists());
+    }
+
+    @Test
+    public void testBackgroundCompaction() {
+        File dir = directory("target/sorted-store4");
+        List<Integer> all = new ArrayList<>();
+        try (SortedStore<Integer> store = store(dir, true)) {
+            for (int i = 0; i < 30; i++) {
+                List<Integer> batch = Arrays.asList(i * 7 % 31, i * 13 % 17);
+                store.add(batch);
+                all.addAll(batch);
+                // reading while merging always sees every value added
+                assertEquals(all.size(), list(store).size());
+            }
+        }
+        try (SortedStore<Integer> store = store(dir, true)) {
+            store.compact();
+            Collections.sort(all);
+            assertEquals(all, list(store));
+            assertEquals(Arrays.asList("run-1-27-29", "run-3-0-26"), store.runNames());
+        }
+    }
+
+    @Test
+    public void testEmptyAndFailedBatchesDoNotStopCompaction() {
+        File dir = directory("target/sorted-store5");
+        try (SortedStore<Integer> store = store(dir, false)) {
+            store.add(Arrays.asList(1));
+            store.add(Collections.emptyList());
+            try {
+                store.add(() -> new Iterator<Integer>() {
+
+                    @Override
+                    public boolean hasNext() {
+                        return true;
+                    }
+
+                    @Override
+                    public Integer next() {
+                        throw new IllegalStateException("boom");
+                    }
+                });
+                fail();
+            } catch (IllegalStateException e) {
+                // expected
+            }
+            store.add(Arrays.asList(2));
+            store.add(Arrays.asList(3));
+            // the sequence number of the failed batch is skipped by the merge
+            assertEquals(Arrays.asList("run-1-0-3"), store.runNames());
+            assertEquals(Arrays.asList(1, 2, 3), list(store));
+        }
+        try (SortedStore<Integer> store = store(dir, false)) {
+            assertEquals(Arrays.asList("run-1-0-3"), store.runNames());
+        }
+    }
+
+    @Test
+    public void testBackgroundCompactionErrorThrownOnClose() {
+        File dir = directory("target/sorted-store6");
+        SortedStore<Integer> store = SortedStore //
+                .directory(dir, Serializer.integers(), (Integer x, Integer y) -> {
+                    if (x == 99 || y == 99) {
+                        throw new IllegalStateException("boom");
+                    }
+                    return Integer.compare(x, y);
+                }) //
+                .runsPerLevel(3) //
+                .open();
+        store.add(Arrays.asList(99));
+        store.add(Arrays.asList(1));
+        store.add(Arrays.asList(2));
+        try {
+            store.close();
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("boom", e.getMessage());
+        }
+    }
+
+    private static SortedStore<Integer> store(File dir, boolean background) {
+        return SortedStore //
+                .directory(dir, Serializer.integers(), Comparator.<Integer>naturalOrder()) //
+                .runsPerLevel(3) //
+                .backgroundCompaction(background) //
+                .open();
+    }
+
+    private static List<Integer> list(SortedStore<Integer> store) {
+        try (Stream<Integer> s = store.stream()) {
+            return s.collect(Collectors.toList());
+        }
+    }
+
+    private static File directory(String name) {
+        File dir = new File(name);
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        return dir;
+    }
+
+}
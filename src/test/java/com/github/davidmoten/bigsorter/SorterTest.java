@@ -1,5 +1,6 @@
 package com.github.davidmoten.bigsorter;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
@@ -31,16 +32,21 @@ import java.security.SecureRandom;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVRecord;
+import org.junit.Assert;
 import org.junit.Test;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.github.davidmoten.guavamini.Lists;
 
@@ -187,6 +193,448 @@ public class SorterTest {
         assertEquals("ab\nc\ndef", readOutput());
     }
     
+    @Test
+    public void testNonOverlappingRunsAreConcatenated() throws IOException {
+        List<String> messages = Lists.newArrayList();
+        Sorter //
+                .linesUtf8() //
+                .input("1\n2\n3\n4\n5\n6") //
+                .output(OUTPUT) //
+                .maxItemsPerFile(2) //
+                .maxFilesPerMerge(2) //
+                .logger(messages::add) //
+                .sort();
+        assertEquals("1\n2\n3\n4\n5\n6", readOutput());
+        assertTrue(messages.contains("merging 3 files in 3 non-overlapping sections"));
+    }
+
+    @Test
+    public void testPartiallyOverlappingRunsAreMergedAndConcatenated() throws IOException {
+        List<String> messages = Lists.newArrayList();
+        Sorter //
+                .linesUtf8() //
+                .input("1\n3\n2\n4\n5\n6\n0\n7") //
+                .output(OUTPUT) //
+                .maxItemsPerFile(2) //
+                .maxFilesPerMerge(2) //
+                .logger(messages::add) //
+                .sort();
+        assertEquals("0\n1\n2\n3\n4\n5\n6\n7", readOutput());
+        assertTrue(messages.contains("merging 2 files in 2 non-overlapping sections"));
+    }
+
+    @Test
+    public void testDisjointKeyRangesStayConcatenatedUnderTempBudget() throws IOException {
+        // keys 0..299 in three overlapping runs then keys 1000..1249 in two
+        // overlapping runs and a small run
+        List<Integer> input = Lists.newArrayList();
+        IntStream.range(0, 300).map(i -> i * 7 % 300).forEach(input::add);
+        IntStream.range(0, 250).map(i -> 1000 + i * 7 % 250).forEach(input::add);
+        List<String> messages = Lists.newArrayList();
+        Sorter //
+                .serializer(Serializer.dataSerializer(dis -> (Integer) dis.readInt(),
+                        (dos, v) -> dos.writeInt(v))) //
+                .comparator(Comparator.<Integer>naturalOrder()) //
+                .inputItems(input) //
+                .output(OUTPUT) //
+                .maxItemsPerFile(100) //
+                .maxFilesPerMerge(2) //
+                .maxTempBytes(3600) //
+                .logger(messages::add) //
+                .sort();
+        // the smallest run is not merged with a run of the other key range
+        assertTrue(messages.contains("merging 4 files in 2 non-overlapping sections"));
+        Collections.sort(input);
+        try (DataInputStream dis = new DataInputStream(new FileInputStream(OUTPUT))) {
+            for (int x : input) {
+                assertEquals(x, dis.readInt());
+            }
+            assertEquals(-1, dis.read());
+        }
+    }
+
+    @Test
+    public void testUniqueWhenRunsShareBoundaryValue() throws IOException {
+        Sorter //
+                .linesUtf8() //
+                .input("a\nb\nb\nc") //
+                .output(OUTPUT) //
+                .unique() //
+                .maxItemsPerFile(2) //
+                .sort();
+        assertEquals("a\nb\nc", readOutput());
+    }
+
+    @Test
+    public void testRunsSharingBoundaryValueConcatenatedWhenNotUnique() throws IOException {
+        List<String> messages = Lists.newArrayList();
+        Sorter //
+                .linesUtf8() //
+                .input("a\nb\nb\nc") //
+                .output(OUTPUT) //
+                .maxItemsPerFile(2) //
+                .logger(messages::add) //
+                .sort();
+        assertEquals("a\nb\nb\nc", readOutput());
+        assertTrue(messages.contains("merging 2 files in 2 non-overlapping sections"));
+    }
+
+    @Test
+    public void testTempFileReadModes() throws IOException {
+        for (TempFileReadMode mode : TempFileReadMode.values()) {
+            Sorter //
+                    .linesUtf8() //
+                    .input("c\nf\nb\ne\na\nd") //
+                    .output(OUTPUT) //
+                    .maxItemsPerFile(2) //
+                    .maxFilesPerMerge(2) //
+                    .tempFileReadMode(mode) //
+                    .sort();
+            assertEquals("a\nb\nc\nd\ne\nf", readOutput());
+        }
+    }
+
+    @Test
+    public void testTempFileCompression() throws IOException {
+        for (Codec codec : Arrays.asList(Codec.lz(), Codec.deflate())) {
+            // non-overlapping runs are concatenated, overlapping runs merged
+            Sorter //
+                    .linesUtf8() //
+                    .input("c\nf\nb\ne\na\nd\ng\nh") //
+                    .output(OUTPUT) //
+                    .maxItemsPerFile(2) //
+                    .maxFilesPerMerge(2) //
+                    .tempFileCompression(codec) //
+                    .sort();
+            assertEquals("a\nb\nc\nd\ne\nf\ng\nh", readOutput());
+        }
+    }
+
+    @Test
+    public void testTempFileCompressionWithOutputMapper() throws IOException {
+        Serializer<Integer> intSerializer = Serializer.dataSerializer( //
+                dis -> (Integer) dis.readInt(), //
+                (dos, v) -> dos.writeInt(v));
+        Sorter //
+                .serializer(intSerializer) //
+                .inputMapper(Serializer.linesUtf8(), line -> Integer.parseInt(line)) //
+                .naturalOrder() //
+                .input("456", "123", "234") //
+                .output(OUTPUT) //
+                .outputMapper(Serializer.linesUtf8(), x -> Integer.toString(x)) //
+                .maxItemsPerFile(1) //
+                .tempFileCompression(Codec.lz()) //
+                .sort();
+        assertEquals("123\n234\n456", readOutput());
+    }
+
+    @Test
+    public void testTempFileCompressionEmpty() throws IOException {
+        Sorter //
+                .linesUtf8() //
+                .input("") //
+                .output(OUTPUT) //
+                .tempFileCompression(Codec.lz()) //
+                .sort();
+        assertEquals("", readOutput());
+    }
+
+    @Test
+    public void testMultipleTempDirectories() throws IOException {
+        for (TempFilePlacement placement : TempFilePlacement.values()) {
+            File dir1 = new File("target/temp1");
+            File dir2 = new File("target/temp2");
+            List<Integer> counts = Lists.newArrayList();
+            Sorter //
+                    .linesUtf8() //
+                    .input("c\nf\nb\ne\na\nd") //
+                    .output(OUTPUT) //
+                    .maxItemsPerFile(1) //
+                    .maxFilesPerMerge(2) //
+                    .tempDirectories(dir1, dir2) //
+                    .tempFilePlacement(placement) //
+                    .logger(msg -> {
+                        if (msg.startsWith("merging")) {
+                            counts.add(dir1.list().length);
+                            counts.add(dir2.list().length);
+                        }
+                    }) //
+                    .sort();
+            assertEquals("a\nb\nc\nd\ne\nf", readOutput());
+            if (placement == TempFilePlacement.ROUND_ROBIN) {
+                // runs are spread over both directories
+                assertTrue(counts.get(0) > 0);
+                assertTrue(counts.get(1) > 0);
+            }
+            // temporary files cleaned up
+            assertEquals(0, dir1.list().length);
+            assertEquals(0, dir2.list().length);
+        }
+    }
+
+    @Test
+    public void testTempMemoryDoesNotTouchTempDirectory() throws IOException {
+        for (boolean offHeap : new boolean[] { false, true }) {
+            File dir = new File("target/temp-memory");
+            List<Integer> counts = Lists.newArrayList();
+            Sorter //
+                    .linesUtf8() //
+                    .input("c\nf\nb\ne\na\nd") //
+                    .output(OUTPUT) //
+                    .maxItemsPerFile(1) //
+                    .maxFilesPerMerge(2) //
+                    .tempDirectory(dir) //
+                    .tempMemory(1024 * 1024, offHeap) //
+                    .logger(msg -> {
+                        if (msg.startsWith("merging")) {
+                            counts.add(dir.exists() ? dir.list().length : 0);
+                        }
+                    }) //
+                    .sort();
+            assertEquals("a\nb\nc\nd\ne\nf", readOutput());
+            assertFalse(counts.isEmpty());
+            assertTrue(counts.stream().allMatch(n -> n == 0));
+        }
+    }
+
+    @Test
+    public void testTempMemorySpillsToDisk() throws IOException {
+        List<Integer> list = IntStream.range(0, 100000).map(i -> 99999 - i).boxed().collect(Collectors.toList());
+        for (TempFileReadMode mode : TempFileReadMode.values()) {
+            Sorter //
+                    .serializer(Serializer.dataSerializer(dis -> (Integer) dis.readInt(),
+                            (dos, v) -> dos.writeInt(v))) //
+                    .comparator(Comparator.<Integer>naturalOrder()) //
+                    .inputItems(list) //
+                    .output(OUTPUT) //
+                    .maxItemsPerFile(10000) //
+                    .maxFilesPerMerge(3) //
+                    .tempDirectory(new File("target/temp-spill")) //
+                    .tempMemory(100000) //
+                    .tempFileReadMode(mode) //
+                    .tempFileCompression(Codec.lz()) //
+                    .sort();
+            try (DataInputStream dis = new DataInputStream(new FileInputStream(OUTPUT))) {
+                for (int i = 0; i < list.size(); i++) {
+                    assertEquals(i, dis.readInt());
+                }
+                assertEquals(-1, dis.read());
+            }
+            assertEquals(0, new File("target/temp-spill").list().length);
+        }
+    }
+
+    @Test
+    public void testTempSegments() throws IOException {
+        File dir = new File("target/temp-segmented");
+        List<Integer> counts = Lists.newArrayList();
+        Sorter //
+                .linesUtf8() //
+                .input("c\nf\nb\ne\na\nd\nh\ng") //
+                .output(OUTPUT) //
+                .maxItemsPerFile(1) //
+                .maxFilesPerMerge(2) //
+                .tempDirectory(dir) //
+                .tempSegmentSize(1024) //
+                .logger(msg -> {
+                    if (msg.startsWith("merging")) {
+                        counts.add(dir.list().length);
+                    }
+                }) //
+                .sort();
+        assertEquals("a\nb\nc\nd\ne\nf\ng\nh", readOutput());
+        // all runs fit in one segment file
+        assertEquals(1, (int) counts.get(0));
+        assertEquals(0, dir.list().length);
+    }
+
+    @Test
+    public void testMaxTempBytesAllowsSortWithinBudget() throws IOException {
+        // 10 runs of 400 bytes, merging 3 at a time needs at most 1600 bytes more
+        File dir = new File("target/temp-budget");
+        sortIntegersWithTempBudget(dir, 5600);
+        try (DataInputStream dis = new DataInputStream(new FileInputStream(OUTPUT))) {
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(i, dis.readInt());
+            }
+            assertEquals(-1, dis.read());
+        }
+        assertEquals(0, dir.list().length);
+    }
+
+    @Test
+    public void testMaxTempBytesTooSmallForMergeFailsWithEstimate() {
+        File dir = new File("target/temp-budget");
+        try {
+            sortIntegersWithTempBudget(dir, 5000);
+            Assert.fail();
+        } catch (UncheckedIOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("merging needs an estimated 5600 bytes"));
+        }
+        // runs cleaned up
+        assertEquals(0, dir.list().length);
+    }
+
+    @Test
+    public void testMaxTempBytesTooSmallForRunsFails() {
+        File dir = new File("target/temp-budget");
+        try {
+            sortIntegersWithTempBudget(dir, 1000);
+            Assert.fail();
+        } catch (UncheckedIOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("sorted runs of the input reached 1200 bytes"));
+        }
+        assertEquals(0, dir.list().length);
+    }
+
+    @Test
+    public void testResumeAfterFailureDuringMerge() throws IOException {
+        File dir = new File("target/job-merge");
+        deleteDirectory(dir);
+        int[] merges = new int[1];
+        try {
+            sortIntegersInJob(dir, shuffled(1000), msg -> {
+                if (msg.startsWith("merging") && ++merges[0] == 2) {
+                    throw new RuntimeException("boom");
+                }
+            });
+            Assert.fail();
+        } catch (RuntimeException e) {
+            assertEquals("boom", e.getMessage());
+        }
+        List<String> messages = Lists.newArrayList();
+        sortIntegersInJob(dir, shuffled(1000), messages::add);
+        assertTrue(messages.contains("resuming with 8 runs from job directory, split complete=true"));
+        // no run was sorted again
+        assertFalse(messages.stream().anyMatch(msg -> msg.startsWith("total=")));
+        assertTrue(messages.stream().anyMatch(msg -> msg.startsWith("sort of 1000 records")));
+        assertIntegersSorted(1000);
+        assertEquals(0, dir.list().length);
+    }
+
+    @Test
+    public void testResumeAfterFailureDuringSplit() throws IOException {
+        File dir = new File("target/job-split");
+        deleteDirectory(dir);
+        Iterator<Integer> failing = new Iterator<Integer>() {
+            int i;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public Integer next() {
+                if (i == 250) {
+                    throw new RuntimeException("boom");
+                }
+                return (i++ * 7919) % 1000;
+            }
+        };
+        try {
+            sortIntegersInJob(dir, failing, msg -> {
+            });
+            Assert.fail();
+        } catch (RuntimeException e) {
+            assertEquals("boom", e.getMessage());
+        }
+        List<String> messages = Lists.newArrayList();
+        sortIntegersInJob(dir, shuffled(1000), messages::add);
+        assertTrue(messages.contains("resuming with 2 runs from job directory, split complete=false"));
+        // only the 800 records not in the two runs were sorted
+        assertEquals(8, messages.stream().filter(msg -> msg.startsWith("total=")).count());
+        assertIntegersSorted(1000);
+        assertEquals(0, dir.list().length);
+    }
+
+    @Test
+    public void testResumeWithLargerTempBudgetKeepsRuns() throws IOException {
+        File dir = new File("target/job-budget");
+        deleteDirectory(dir);
+        try {
+            sortIntegersInJob(dir, shuffled(1000), msg -> {
+            }, 1000);
+            Assert.fail();
+        } catch (UncheckedIOException e) {
+            assertTrue(e.getCause().getMessage().contains("exceeds maxTempBytes"));
+        }
+        List<String> messages = Lists.newArrayList();
+        sortIntegersInJob(dir, shuffled(1000), messages::add);
+        assertTrue(messages.stream().anyMatch(msg -> msg.startsWith("resuming with ")));
+        // the runs written before the budget was exceeded were not sorted again
+        assertTrue(messages.stream().filter(msg -> msg.startsWith("total=")).count() < 10);
+        assertIntegersSorted(1000);
+        assertEquals(0, dir.list().length);
+    }
+
+    private static void sortIntegersInJob(File dir, Iterator<Integer> input, Consumer<String> logger) {
+        sortIntegersInJob(dir, input, logger, Long.MAX_VALUE);
+    }
+
+    private static void sortIntegersInJob(File dir, Iterator<Integer> input, Consumer<String> logger,
+            long maxTempBytes) {
+        Sorter //
+                .serializer(Serializer.dataSerializer(dis -> (Integer) dis.readInt(),
+                        (dos, v) -> dos.writeInt(v))) //
+                .comparator(Comparator.<Integer>naturalOrder()) //
+                .inputItems(input) //
+                .output(OUTPUT) //
+                .maxItemsPerFile(100) //
+                .maxFilesPerMerge(3) //
+                .jobDirectory(dir) //
+                .maxTempBytes(maxTempBytes) //
+                .logger(logger) //
+                .sort();
+    }
+
+    private static Iterator<Integer> shuffled(int n) {
+        // 7919 is prime so the result is a permutation of 0..n-1 when n is not a
+        // multiple of 7919
+        return IntStream.range(0, n).map(i -> (i * 7919) % n).boxed().iterator();
+    }
+
+    private static void assertIntegersSorted(int n) throws IOException {
+        try (DataInputStream dis = new DataInputStream(new FileInputStream(OUTPUT))) {
+            for (int i = 0; i < n; i++) {
+                assertEquals(i, dis.readInt());
+            }
+            assertEquals(-1, dis.read());
+        }
+    }
+
+    private static void deleteDirectory(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private static void sortIntegersWithTempBudget(File dir, long maxTempBytes) {
+        Sorter //
+                .serializer(Serializer.dataSerializer(dis -> (Integer) dis.readInt(),
+                        (dos, v) -> dos.writeInt(v))) //
+                .comparator(Comparator.<Integer>naturalOrder()) //
+                .inputItems(IntStream.range(0, 1000).map(i -> 999 - i).boxed().collect(Collectors.toList())) //
+                .output(OUTPUT) //
+                .maxItemsPerFile(100) //
+                .maxFilesPerMerge(3) //
+                .tempDirectory(dir) //
+                .maxTempBytes(maxTempBytes) //
+                .sort();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyTempDirectories() {
+        Sorter.linesUtf8() //
+                .input("a") //
+                .output(OUTPUT) //
+                .tempDirectories(Collections.emptyList());
+    }
+
     @Test
     public void testSupplier() throws IOException {
         Sorter //
@@ -221,6 +669,49 @@ public class SorterTest {
         }
     }
 
+    @Test
+    public void testSortToReaderMergesAsRead() throws IOException {
+        File dir = new File("target/stream-temp");
+        deleteDirectory(dir);
+        StringBuilder s = new StringBuilder();
+        for (Iterator<Integer> it = shuffled(100); it.hasNext();) {
+            s.append(String.format("%03d\n", it.next()));
+        }
+        try (Reader<String> r = Sorter //
+                .linesUtf8() //
+                .input(s.toString()) //
+                .outputAsStream() //
+                .maxItemsPerFile(10) //
+                .tempDirectory(dir) //
+                .sortToReader()) {
+            // the runs are still there as the last merge happens as values are read
+            assertEquals(10, dir.list().length);
+            for (int i = 0; i < 100; i++) {
+                assertEquals(String.format("%03d", i), r.read());
+            }
+            assertNull(r.read());
+            assertEquals(0, dir.list().length);
+        }
+    }
+
+    @Test
+    public void testSortToReaderClosedEarlyDeletesRuns() throws IOException {
+        File dir = new File("target/stream-temp");
+        deleteDirectory(dir);
+        Reader<String> r = Sorter //
+                .linesUtf8() //
+                .input("c\nf\nb\ne\na\nd") //
+                .outputAsStream() //
+                .maxItemsPerFile(2) //
+                .unique() //
+                .tempDirectory(dir) //
+                .sortToReader();
+        assertEquals("a", r.read());
+        assertEquals("b", r.read());
+        r.close();
+        assertEquals(0, dir.list().length);
+    }
+
     @Test
     public void testJavaSerializer() throws IOException {
         ByteArrayOutputStream bytes = new ByteArrayOutputStream();
@@ -264,6 +755,131 @@ public class SorterTest {
         assertNull(reader.read());
     }
 
+    @Test
+    public void testFixedSizeRecordsReusedDuringMergeUnique() throws IOException {
+        // no key layout so records are merged as objects read into reused arrays
+        Serializer<byte[]> serializer = Serializer.fixedSizeRecord(2);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (Iterator<Integer> it = shuffled(500); it.hasNext();) {
+            int v = it.next() / 2;
+            bytes.write(v >> 8);
+            bytes.write(v);
+        }
+        Sorter //
+                .serializer(serializer) //
+                .comparator((x, y) -> Integer.compare(((x[0] & 0xff) << 8) | (x[1] & 0xff),
+                        ((y[0] & 0xff) << 8) | (y[1] & 0xff))) //
+                .input(new ByteArrayInputStream(bytes.toByteArray())) //
+                .output(OUTPUT) //
+                .maxItemsPerFile(20) //
+                .maxFilesPerMerge(3) //
+                .unique() //
+                .sort();
+        List<byte[]> list = serializer.createReader(OUTPUT).stream().collect(Collectors.toList());
+        assertEquals(250, list.size());
+        for (int i = 0; i < list.size(); i++) {
+            assertEquals(i, ((list.get(i)[0] & 0xff) << 8) | (list.get(i)[1] & 0xff));
+        }
+    }
+
+    @Test
+    public void testFixedSizeRecordsWithKeyMergedAsBytes() throws IOException {
+        Serializer<byte[]> serializer = Serializer.fixedSizeRecord(8, 2, 4);
+        Comparator<byte[]> comparator = RecordLayout.fixedSize(8, 2, 4).comparator();
+        SecureRandom random = new SecureRandom();
+        List<byte[]> records = Lists.newArrayList();
+        for (int i = 0; i < 1000; i++) {
+            byte[] b = new byte[8];
+            random.nextBytes(b);
+            records.add(b);
+        }
+        Sorter //
+                .serializer(serializer) //
+                .comparator(comparator) //
+                .inputItems(records) //
+                .output(OUTPUT) //
+                .maxItemsPerFile(10) //
+                .maxFilesPerMerge(4) //
+                .sort();
+        List<byte[]> list = serializer.createReader(OUTPUT).stream().collect(Collectors.toList());
+        assertEquals(1000, list.size());
+        for (int i = 1; i < list.size(); i++) {
+            assertTrue(comparator.compare(list.get(i - 1), list.get(i)) <= 0);
+        }
+    }
+
+    @Test
+    public void testLengthPrefixedBytesMergedAsBytes() throws IOException {
+        Serializer<byte[]> serializer = Serializer.lengthPrefixedBytes();
+        Comparator<byte[]> comparator = RecordLayout.lengthPrefixed().comparator();
+        SecureRandom random = new SecureRandom();
+        List<byte[]> records = Lists.newArrayList();
+        for (int i = 0; i < 1000; i++) {
+            byte[] b = new byte[random.nextInt(6)];
+            random.nextBytes(b);
+            records.add(b);
+        }
+        Sorter //
+                .serializer(serializer) //
+                .comparator(comparator) //
+                .inputItems(records) //
+                .output(OUTPUT) //
+                .maxItemsPerFile(10) //
+                .maxFilesPerMerge(4) //
+                .sort();
+        List<byte[]> list = serializer.createReader(OUTPUT).stream().collect(Collectors.toList());
+        records.sort(comparator);
+        assertEquals(records.size(), list.size());
+        for (int i = 0; i < list.size(); i++) {
+            assertArrayEquals(records.get(i), list.get(i));
+        }
+        // unsigned order and a prefix sorts before longer arrays
+        assertTrue(comparator.compare(new byte[] { 1 }, new byte[] { (byte) 0x80 }) < 0);
+        assertTrue(comparator.compare(new byte[] { 1 }, new byte[] { 1, 0 }) < 0);
+    }
+
+    @Test
+    public void testLengthPrefixedRecordsMergedAsBytesUnique() throws IOException {
+        Serializer<String> serializer = new DataSerializer<String>() {
+
+            @Override
+            public String read(DataInputStream dis) throws IOException {
+                int length;
+                try {
+                    length = dis.readInt();
+                } catch (EOFException e) {
+                    return null;
+                }
+                byte[] bytes = new byte[length];
+                dis.readFully(bytes);
+                return new String(bytes, StandardCharsets.US_ASCII);
+            }
+
+            @Override
+            public void write(DataOutputStream dos, String value) throws IOException {
+                byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+                dos.writeInt(bytes.length);
+                dos.write(bytes);
+            }
+
+            @Override
+            public Optional<RecordLayout> recordLayout() {
+                return Optional.of(RecordLayout.lengthPrefixed());
+            }
+        };
+        List<String> list = Sorter //
+                .serializer(serializer) //
+                .naturalOrder() //
+                .inputItems("delta", "b", "alpha", "b", "charlie", "", "alpha", "bravo", "b") //
+                .outputAsStream() //
+                .unique() //
+                .maxItemsPerFile(2) //
+                .maxFilesPerMerge(3) //
+                .sort() //
+                .collect(Collectors.toList());
+        assertEquals(Arrays.asList("", "alpha", "b", "bravo", "charlie", "delta"), list);
+    }
+
     @Test(expected = UncheckedIOException.class)
     public void testInputFileDoesNotExist() {
         File input = new File("target/inputDoesNotExist");
@@ -601,6 +1217,138 @@ public class SorterTest {
         assertNull(r.read());
     }
 
+    @Test
+    public void testCsvWithSpillSerializerMatchesSortWithout() throws IOException {
+        StringBuilder s = new StringBuilder("name,number\n");
+        for (Iterator<Integer> it = shuffled(1000); it.hasNext();) {
+            int i = it.next();
+            s.append("\"n").append(i).append(", x\",").append(i).append("\n");
+        }
+        Serializer<CSVRecord> ser = Serializer
+                .csv(CSVFormat.Builder.create().setHeader().setSkipHeaderRecord(true).build(), StandardCharsets.UTF_8);
+        Comparator<CSVRecord> comparator = (x, y) -> Integer.compare(Integer.parseInt(x.get("number")),
+                Integer.parseInt(y.get("number")));
+        File expected = new File("target/expected-csv");
+        Sorter //
+                .serializer(ser) //
+                .comparator(comparator) //
+                .input(s.toString()) //
+                .output(expected) //
+                .maxItemsPerFile(30) //
+                .maxFilesPerMerge(3) //
+                .sort();
+        Sorter //
+                .serializer(ser) //
+                .comparator(comparator) //
+                .input(s.toString()) //
+                .output(OUTPUT) //
+                .maxItemsPerFile(30) //
+                .maxFilesPerMerge(3) //
+                .spillSerializer(Serializer.csvBinary()) //
+                .sort();
+        assertArrayEquals(Files.readAllBytes(expected.toPath()), Files.readAllBytes(OUTPUT.toPath()));
+        expected.delete();
+    }
+
+    @Test
+    public void testJsonWithSpillSerializer() throws IOException {
+        StringBuilder s = new StringBuilder("[");
+        for (Iterator<Integer> it = shuffled(500); it.hasNext();) {
+            int i = it.next();
+            if (s.length() > 1) {
+                s.append(",");
+            }
+            s.append("{\"name\":\"n").append(i).append("\",\"age\":").append(i).append(",\"tags\":[true,null,1.5]}");
+        }
+        s.append("]");
+        Serializer<ObjectNode> ser = Serializer.jsonArray();
+        Sorter.serializer(ser) //
+                .comparator((x, y) -> Integer.compare(x.get("age").asInt(), y.get("age").asInt())) //
+                .input(s.toString()) //
+                .output(OUTPUT) //
+                .maxItemsPerFile(20) //
+                .maxFilesPerMerge(4) //
+                .spillSerializer(Serializer.jsonBinary()) //
+                .sort();
+        List<ObjectNode> list = ser.createReader(OUTPUT).stream().collect(Collectors.toList());
+        assertEquals(500, list.size());
+        for (int i = 0; i < list.size(); i++) {
+            assertEquals("n" + i, list.get(i).get("name").asText());
+            assertEquals(i, list.get(i).get("age").asInt());
+            assertEquals("[true,null,1.5]", list.get(i).get("tags").toString());
+        }
+    }
+
+    @Test
+    public void testCsvRawMatchesCsv() throws IOException {
+        StringBuilder s = new StringBuilder("name,number\n");
+        for (Iterator<Integer> it = shuffled(1000); it.hasNext();) {
+            int i = it.next();
+            s.append("\"n").append(i).append(", x\",").append(i).append("\n");
+        }
+        CSVFormat format = CSVFormat.Builder.create().setHeader().setSkipHeaderRecord(true).build();
+        File expected = new File("target/expected-csv");
+        Sorter //
+                .serializer(Serializer.csv(format, StandardCharsets.UTF_8)) //
+                .comparator((x, y) -> Integer.compare(Integer.parseInt(x.get(1)), Integer.parseInt(y.get(1)))) //
+                .input(s.toString()) //
+                .output(expected) //
+                .maxItemsPerFile(30) //
+                .sort();
+        Sorter //
+                .serializer(Serializer.csvRaw(format, StandardCharsets.UTF_8, 1)) //
+                .comparator((x, y) -> Integer.compare(Integer.parseInt(x.key(0)), Integer.parseInt(y.key(0)))) //
+                .input(s.toString()) //
+                .output(OUTPUT) //
+                .maxItemsPerFile(30) //
+                .sort();
+        assertArrayEquals(Files.readAllBytes(expected.toPath()), Files.readAllBytes(OUTPUT.toPath()));
+        expected.delete();
+    }
+
+    @Test
+    public void testIntegersUseCompactSortedRuns() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(bytes);
+        for (Iterator<Integer> it = shuffled(1000); it.hasNext();) {
+            dos.writeInt(it.next());
+        }
+        // runs of 4 byte values would need 4000 bytes
+        Sorter.serializer(Serializer.integers()) //
+                .naturalOrder() //
+                .input(new ByteArrayInputStream(bytes.toByteArray())) //
+                .output(OUTPUT) //
+                .maxItemsPerFile(100) //
+                .maxTempBytes(2500) //
+                .sort();
+        DataInputStream dis = new DataInputStream(new FileInputStream(OUTPUT));
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, dis.readInt());
+        }
+        assertEquals(-1, dis.read());
+        dis.close();
+    }
+
+    @Test
+    public void testLinesWithFrontCodedSpill() throws IOException {
+        StringBuilder s = new StringBuilder();
+        for (Iterator<Integer> it = shuffled(1000); it.hasNext();) {
+            s.append("https://example.com/items/").append(it.next()).append("\n");
+        }
+        Sorter.linesUtf8() //
+                .input(s.toString()) //
+                .output(OUTPUT) //
+                .maxItemsPerFile(30) //
+                .maxFilesPerMerge(4) //
+                .spillSerializer(Serializer.frontCodedStrings()) //
+                .sort();
+        List<String> expected = IntStream.range(0, 1000) //
+                .mapToObj(i -> "https://example.com/items/" + i) //
+                .sorted() //
+                .collect(Collectors.toList());
+        assertEquals(expected, Files.readAllLines(OUTPUT.toPath()));
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testInvalidMaxMergeFiles() throws IOException {
         File input = new File("target/input");
@@ -691,6 +1439,19 @@ public class SorterTest {
         assertNull(r.read());
     }
 
+    @Test
+    public void testJsonLines() throws IOException {
+        String s = "{\"name\":\"fred\",\"age\": 23 }\n{\"name\":\"anne\",\"age\": 31 }\n{\"age\":40}\n";
+        Sorter.serializer(Serializer.jsonLines("/name")) //
+                .comparator(JsonLine.comparator()) //
+                .input(s) //
+                .output(OUTPUT) //
+                .maxItemsPerFile(1) //
+                .sort();
+        assertEquals(Arrays.asList("{\"age\":40}", "{\"name\":\"anne\",\"age\": 31 }", "{\"name\":\"fred\",\"age\": 23 }"),
+                Files.readAllLines(OUTPUT.toPath()));
+    }
+
     @Test(expected = IllegalStateException.class)
     public void testJsonNotArray() throws IOException {
         String s = "{\"name\":\"john\"}";
@@ -721,6 +1482,17 @@ public class SorterTest {
         }
     }
 
+    @Test
+    public void testJsonArrayWriterWritesUtf8Elements() throws IOException {
+        ObjectMapper m = new ObjectMapper();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Writer<ObjectNode> w = Serializer.jsonArray().createWriter(out)) {
+            w.write((ObjectNode) m.readTree("{\"name\":\"zoë\"}"));
+            w.write((ObjectNode) m.readTree("{\"a\":[1,{}]}"));
+        }
+        assertEquals("[\n{\"name\":\"zoë\"},\n{\"a\":[1,{}]}\n]", new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
     @Test
     public void testJsonArrayWriterFlush() throws IOException {
         boolean[] flushed = new boolean[1];
@@ -1,6 +1,9 @@
 package com.github.davidmoten.bigsorter;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.Closeable;
@@ -11,10 +14,13 @@ import java.io.OutputStream;
 import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
 
 import org.junit.Test;
 
@@ -77,6 +83,145 @@ public class UtilTest {
         assertEquals("22\n40\n", (new String(Files.readAllBytes(c.toPath()))));
     }
 
+    @Test
+    public void testSetOperationsManySortedFiles() throws IOException {
+        File a = write("target/a", "12\n23\n34\n34\n50");
+        File b = write("target/b", "12\n22\n34\n40");
+        File d = write("target/d", "12\n23\n40\n60");
+        List<File> inputs = Arrays.asList(a, b, d);
+        Comparator<String> comparator = Comparator.naturalOrder();
+        Serializer<String> ser = Serializer.linesUtf8();
+        File c = new File("target/c");
+        Util.findInAll(inputs, ser, comparator, c);
+        assertEquals("12\n", text(c));
+        Util.findUnion(inputs, ser, comparator, c);
+        assertEquals("12\n22\n23\n34\n40\n50\n60\n", text(c));
+        Util.findInExactlyOne(inputs, ser, comparator, c);
+        assertEquals("22\n50\n60\n", text(c));
+        Util.findOnlyInFirst(inputs, ser, comparator, c);
+        assertEquals("50\n", text(c));
+        Util.findInAtLeast(2, inputs, ser, comparator, c);
+        assertEquals("12\n23\n34\n40\n", text(c));
+        // two inputs without duplicates agree with the two input operations
+        Util.findInExactlyOne(Arrays.asList(b, d), ser, comparator, c);
+        String many = text(c);
+        Util.findDifferent(b, d, ser, comparator, c);
+        assertEquals(text(c), many);
+        // distinct entries unlike the two input operations which match duplicates
+        Util.findInAll(Arrays.asList(a, a), ser, comparator, c);
+        assertEquals("12\n23\n34\n50\n", text(c));
+        Util.findSame(a, a, ser, comparator, c);
+        assertEquals("12\n23\n34\n34\n50\n", text(c));
+    }
+
+    @Test
+    public void testJoinDifferentRecordTypesWithDuplicateKeys() throws IOException {
+        File a = write("target/a", "1,a\n2,b\n2,c\n4,d\n");
+        File b = new File("target/b");
+        try (Writer<Integer> w = Serializer.integers().createWriter(b)) {
+            for (int x : new int[] { 2, 2, 3, 4, 4, 5 }) {
+                w.write(x);
+            }
+        }
+        assertEquals(Arrays.asList("2,b|2", "2,b|2", "2,c|2", "2,c|2", "4,d|4", "4,d|4"), join(a, b, JoinType.INNER));
+        assertEquals(Arrays.asList("1,a|null", "2,b|2", "2,b|2", "2,c|2", "2,c|2", "4,d|4", "4,d|4"),
+                join(a, b, JoinType.LEFT));
+        assertEquals(Arrays.asList("2,b|2", "2,b|2", "2,c|2", "2,c|2", "null|3", "4,d|4", "4,d|4", "null|5"),
+                join(a, b, JoinType.RIGHT));
+        assertEquals(Arrays.asList("1,a|null", "2,b|2", "2,b|2", "2,c|2", "2,c|2", "null|3", "4,d|4", "4,d|4",
+                "null|5"), join(a, b, JoinType.FULL));
+    }
+
+    private static List<String> join(File a, File b, JoinType joinType) throws IOException {
+        List<String> list = new ArrayList<>();
+        Util.join(a, Serializer.linesUtf8(), line -> Integer.parseInt(line.split(",")[0]), //
+                b, Serializer.integers(), x -> x, //
+                Comparator.<Integer>naturalOrder(), joinType, (x, y) -> list.add(x + "|" + y));
+        return list;
+    }
+
+    @Test
+    public void testSetOperationsInParallelKeyRanges() throws IOException {
+        File a = new File("target/parallel-a");
+        File b = new File("target/parallel-b");
+        sortWithIndex(IntStream.range(0, 5000).map(i -> i * 3 % 4999), a);
+        sortWithIndex(IntStream.range(0, 3000).map(i -> i * 7 % 4000), b);
+        Serializer<Integer> ser = Serializer.integers();
+        Comparator<Integer> comparator = Comparator.naturalOrder();
+        File c = new File("target/parallel-c");
+        File d = new File("target/parallel-d");
+        Util.findSame(a, b, ser, comparator, c);
+        Util.findSame(a, b, ser, comparator, d, 4);
+        assertArrayEquals(Files.readAllBytes(c.toPath()), Files.readAllBytes(d.toPath()));
+        Util.findDifferent(a, b, ser, comparator, c);
+        Util.findDifferent(a, b, ser, comparator, d, 4);
+        assertArrayEquals(Files.readAllBytes(c.toPath()), Files.readAllBytes(d.toPath()));
+        Util.findComplement(b, a, ser, comparator, c);
+        Util.findComplement(b, a, ser, comparator, d, 3);
+        assertArrayEquals(Files.readAllBytes(c.toPath()), Files.readAllBytes(d.toPath()));
+    }
+
+    @Test
+    public void testParallelSetOperationOnEmptyIndexedFiles() throws IOException {
+        File a = new File("target/parallel-empty-a");
+        File b = new File("target/parallel-empty-b");
+        sortWithIndex(IntStream.empty(), a);
+        sortWithIndex(IntStream.empty(), b);
+        File c = new File("target/parallel-empty-c");
+        Util.findSame(a, b, Serializer.integers(), Comparator.naturalOrder(), c, 4);
+        assertEquals(0, c.length());
+    }
+
+    @Test
+    public void testSortWithoutIndexDeletesStaleIndex() throws IOException {
+        File a = new File("target/parallel-stale-a");
+        sortWithIndex(IntStream.range(0, 1000), a);
+        assertTrue(SortedIndex.indexFile(a).exists());
+        Sorter //
+                .serializer(Serializer.integers()) //
+                .naturalOrder() //
+                .inputItems(IntStream.range(500, 600).iterator()) //
+                .output(a) //
+                .sort();
+        assertFalse(SortedIndex.indexFile(a).exists());
+    }
+
+    private static void sortWithIndex(IntStream values, File output) {
+        Sorter //
+                .serializer(Serializer.integers()) //
+                .naturalOrder() //
+                .inputItems(values.iterator()) //
+                .output(output) //
+                .outputIndex(100) //
+                .sort();
+    }
+
+    @Test
+    public void testSetOperationsWithReusedRecords() throws IOException {
+        Serializer<byte[]> ser = Serializer.fixedSizeRecord(1);
+        File a = write("target/a", "acdf");
+        File b = write("target/b", "bcdeg");
+        Comparator<byte[]> comparator = (x, y) -> Byte.compare(x[0], y[0]);
+        File c = new File("target/c");
+        Util.findSame(a, b, ser, comparator, c);
+        assertEquals("cd", new String(Files.readAllBytes(c.toPath())));
+        Util.findDifferent(a, b, ser, comparator, c);
+        assertEquals("abefg", new String(Files.readAllBytes(c.toPath())));
+        Util.findComplement(a, b, ser, comparator, c);
+        assertEquals("af", new String(Files.readAllBytes(c.toPath())));
+    }
+
+    @Test
+    public void testFixedSizeReaderReusesRecord() throws IOException {
+        File a = write("target/a", "ab");
+        try (Reader<byte[]> r = Serializer.fixedSizeRecord(1).createReader(a)) {
+            byte[] x = r.read();
+            assertTrue(x == r.readInto(x));
+            assertEquals('b', x[0]);
+            assertNull(r.readInto(x));
+        }
+    }
+
     private static File write(String filename, String text) throws IOException {
         try (OutputStream out = new FileOutputStream(filename)) {
             out.write(text.getBytes(StandardCharsets.UTF_8));
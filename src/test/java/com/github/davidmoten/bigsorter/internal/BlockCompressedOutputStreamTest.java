@@ -0,0 +1,77 @@
+package com.github.davidmoten.bigsorter.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import com.github.davidmoten.bigsorter.Codec;
+
+public class BlockCompressedOutputStreamTest {
+
+    @Test
+    public void testRoundTripSynchronous() throws IOException {
+        checkRoundTrip(null);
+    }
+
+    @Test
+    public void testRoundTripOnExecutor() throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            checkRoundTrip(executor);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testConcatenatedStreamsAreReadAsOne() throws IOException {
+        byte[] a = data(1000);
+        byte[] b = data(777);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(compress(a, null));
+        bytes.write(compress(b, null));
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(a);
+        expected.write(b);
+        assertArrayEquals(expected.toByteArray(), MappedFileInputStreamTest
+                .readAll(new BlockCompressedInputStream(new ByteArrayInputStream(bytes.toByteArray()), Codec.lz())));
+    }
+
+    private static void checkRoundTrip(ExecutorService executor) throws IOException {
+        byte[] data = data(100000);
+        byte[] compressed = compress(data, executor);
+        assertArrayEquals(data, MappedFileInputStreamTest
+                .readAll(new BlockCompressedInputStream(new ByteArrayInputStream(compressed), Codec.lz())));
+    }
+
+    private static byte[] compress(byte[] data, ExecutorService executor) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new BlockCompressedOutputStream(bytes, Codec.lz(), 1024, executor, 4)) {
+            // mix single byte and array writes
+            out.write(data[0]);
+            out.write(data, 1, data.length / 2);
+            out.flush();
+            out.write(data, 1 + data.length / 2, data.length - 1 - data.length / 2);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] data(int n) {
+        Random random = new Random(n);
+        byte[] b = new byte[n];
+        for (int i = 0; i < n; i++) {
+            // compressible with some random content so both block types appear
+            b[i] = (byte) (i % 2000 < 1000 ? i % 10 : random.nextInt());
+        }
+        return b;
+    }
+
+}
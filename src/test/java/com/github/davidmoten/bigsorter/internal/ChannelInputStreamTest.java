@@ -0,0 +1,61 @@
+package com.github.davidmoten.bigsorter.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class ChannelInputStreamTest {
+
+    @Test
+    public void testReadWithSmallBuffer() throws IOException {
+        byte[] bytes = MappedFileInputStreamTest.bytes(100);
+        File file = MappedFileInputStreamTest.write(bytes);
+        try (InputStream in = new ChannelInputStream(file, 3)) {
+            assertArrayEquals(bytes, MappedFileInputStreamTest.readAll(in));
+        }
+    }
+
+    @Test
+    public void testSingleByteReadsAndSkip() throws IOException {
+        File file = MappedFileInputStreamTest.write(MappedFileInputStreamTest.bytes(100));
+        try (InputStream in = new ChannelInputStream(file, 8)) {
+            assertEquals(0, in.read());
+            assertEquals(7, in.available());
+            assertEquals(2, in.skip(2));
+            assertEquals(3, in.read());
+            assertEquals(20, in.skip(20));
+            assertEquals(24, in.read());
+            assertEquals(75, in.skip(1000));
+            assertEquals(-1, in.read());
+            assertEquals(0, in.read(new byte[2], 0, 0));
+        }
+    }
+
+    @Test
+    public void testRegionDoesNotCloseChannel() throws IOException {
+        byte[] bytes = MappedFileInputStreamTest.bytes(100);
+        File file = MappedFileInputStreamTest.write(bytes);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            try (InputStream in = new ChannelInputStream(channel, 10, 50, 7, false)) {
+                assertArrayEquals(Arrays.copyOfRange(bytes, 10, 60), MappedFileInputStreamTest.readAll(in));
+            }
+            try (InputStream in = new ChannelInputStream(channel, 90, 50, 7, false)) {
+                assertEquals(5, in.skip(5));
+                assertEquals(95, in.read());
+                assertEquals(4, in.skip(100));
+                assertEquals(-1, in.read());
+            }
+            assertTrue(channel.isOpen());
+        }
+    }
+
+}
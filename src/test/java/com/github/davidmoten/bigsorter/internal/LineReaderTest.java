@@ -0,0 +1,112 @@
+package com.github.davidmoten.bigsorter.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LineReaderTest {
+
+    @Test
+    public void testDelimiters() throws IOException {
+        assertEquals(expected("a\nb\r\nc\rd"), read("a\nb\r\nc\rd", 16));
+        assertEquals(expected("a\n\n\r\n\r\r"), read("a\n\n\r\n\r\r", 16));
+        assertEquals(expected(""), read("", 16));
+        assertEquals(expected("\n"), read("\n", 16));
+    }
+
+    @Test
+    public void testCarriageReturnAtEndOfBuffer() throws IOException {
+        // the \r is the 16th byte so the \n is only seen after the next read
+        assertEquals(expected("abcdefghijklmno\r\nb"), read("abcdefghijklmno\r\nb", 16));
+    }
+
+    @Test
+    public void testNonAscii() throws IOException {
+        String s = "héllo wörld\n世界\r\nplain ascii line\n😀";
+        assertEquals(expected(s), read(s, 16));
+    }
+
+    @Test
+    public void testRandomAgainstBufferedReader() throws IOException {
+        Random r = new Random(12345);
+        char[] chars = { 'a', 'b', 'z', '0', ' ', '\n', '\r', 'é', '世' };
+        for (int n = 0; n < 300; n++) {
+            StringBuilder s = new StringBuilder();
+            int length = r.nextInt(200);
+            for (int i = 0; i < length; i++) {
+                s.append(chars[r.nextInt(chars.length)]);
+            }
+            for (int bufferSize : new int[] { 16, 17, 33, 1000 }) {
+                assertEquals(expected(s.toString()), read(s.toString(), bufferSize));
+            }
+        }
+    }
+
+    @Test
+    public void testLongLineGrowsBuffer() throws IOException {
+        StringBuilder s = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            s.append((char) ('a' + i % 26));
+        }
+        s.append("\nend");
+        assertEquals(expected(s.toString()), read(s.toString(), 16));
+    }
+
+    @Test
+    public void testWriterRoundTrip() throws IOException {
+        for (Charset charset : new Charset[] { StandardCharsets.UTF_8, StandardCharsets.ISO_8859_1 }) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            String nonAscii = charset.equals(StandardCharsets.UTF_8) ? "世界" : "café";
+            StringBuilder longLine = new StringBuilder();
+            for (int i = 0; i < 100; i++) {
+                longLine.append("x");
+            }
+            try (LineWriter w = new LineWriter(bytes, charset, "\r\n", 16)) {
+                w.write("abc");
+                w.write(nonAscii);
+                w.write("");
+                w.write(longLine.toString());
+                w.write("last");
+            }
+            assertEquals("abc\r\n" + nonAscii + "\r\n\r\n" + longLine + "\r\nlast\r\n",
+                    new String(bytes.toByteArray(), charset));
+        }
+    }
+
+    private static List<String> expected(String s) throws IOException {
+        List<String> list = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(
+                new InputStreamReader(new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8)),
+                        StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                list.add(line);
+            }
+        }
+        return list;
+    }
+
+    private static List<String> read(String s, int bufferSize) throws IOException {
+        List<String> list = new ArrayList<>();
+        try (LineReader r = new LineReader(new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8)),
+                StandardCharsets.UTF_8, bufferSize)) {
+            String line;
+            while ((line = r.read()) != null) {
+                list.add(line);
+            }
+        }
+        return list;
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.github.davidmoten.bigsorter.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+
+import org.junit.Test;
+
+public class MappedFileInputStreamTest {
+
+    @Test
+    public void testReadAcrossWindows() throws IOException {
+        byte[] bytes = bytes(100);
+        File file = write(bytes);
+        try (InputStream in = new MappedFileInputStream(file, 7)) {
+            assertArrayEquals(bytes, readAll(in));
+        }
+    }
+
+    @Test
+    public void testReadFullyAcrossWindows() throws IOException {
+        byte[] bytes = bytes(100);
+        File file = write(bytes);
+        try (DataInputStream in = new DataInputStream(new MappedFileInputStream(file, 7))) {
+            byte[] b = new byte[100];
+            in.readFully(b);
+            assertArrayEquals(bytes, b);
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    public void testSkipAndAvailable() throws IOException {
+        File file = write(bytes(100));
+        try (InputStream in = new MappedFileInputStream(file, 7)) {
+            assertEquals(100, in.available());
+            assertEquals(0, in.read());
+            assertEquals(10, in.skip(10));
+            assertEquals(11, in.read());
+            assertEquals(88, in.available());
+            assertEquals(88, in.skip(1000));
+            assertEquals(-1, in.read());
+            assertEquals(0, in.skip(-1));
+        }
+    }
+
+    @Test
+    public void testEmptyFile() throws IOException {
+        File file = write(new byte[0]);
+        try (InputStream in = new MappedFileInputStream(file)) {
+            assertEquals(-1, in.read());
+            assertEquals(-1, in.read(new byte[4]));
+            assertEquals(0, in.read(new byte[4], 0, 0));
+        }
+    }
+
+    static byte[] bytes(int n) {
+        byte[] bytes = new byte[n];
+        for (int i = 0; i < n; i++) {
+            bytes[i] = (byte) i;
+        }
+        return bytes;
+    }
+
+    static File write(byte[] bytes) throws IOException {
+        File file = File.createTempFile("test", "", new File("target"));
+        file.deleteOnExit();
+        Files.write(file.toPath(), bytes);
+        return file;
+    }
+
+    static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[5];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+}